@@ -0,0 +1,146 @@
+package com.sd.lawyer.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量写入结果
+ * 无序批量写入时单个文档失败（如主键重复）不影响其他文档，失败的文档及原因记录在failures中
+ */
+public class BulkInsertResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 提交的文档数
+     */
+    private long submittedCount;
+    /**
+     * 成功写入的文档数
+     */
+    private long insertedCount;
+    /**
+     * 失败的文档
+     */
+    private List<DocumentFailure> failures = new ArrayList<>();
+
+    public long getSubmittedCount() {
+        return submittedCount;
+    }
+
+    public void setSubmittedCount(long submittedCount) {
+        this.submittedCount = submittedCount;
+    }
+
+    public long getInsertedCount() {
+        return insertedCount;
+    }
+
+    public void setInsertedCount(long insertedCount) {
+        this.insertedCount = insertedCount;
+    }
+
+    public List<DocumentFailure> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(List<DocumentFailure> failures) {
+        this.failures = failures;
+    }
+
+    /**
+     * 是否全部成功
+     *
+     * @return true or false
+     */
+    public boolean isSuccess() {
+        return failures == null || failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "BulkInsertResult{" +
+                "submittedCount=" + submittedCount +
+                ", insertedCount=" + insertedCount +
+                ", failures=" + (failures == null ? 0 : failures.size()) +
+                '}';
+    }
+
+    /**
+     * 失败的文档
+     */
+    public static class DocumentFailure implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 文档在提交列表中的位置，从0开始
+         */
+        private long index;
+        /**
+         * 文档主键
+         */
+        private Object id;
+        /**
+         * 错误码，如11000表示主键重复；整块提交失败时为-1
+         */
+        private int code;
+        /**
+         * 失败原因
+         */
+        private String msg;
+
+        public DocumentFailure() {
+        }
+
+        public DocumentFailure(long index, Object id, int code, String msg) {
+            this.index = index;
+            this.id = id;
+            this.code = code;
+            this.msg = msg;
+        }
+
+        public long getIndex() {
+            return index;
+        }
+
+        public void setIndex(long index) {
+            this.index = index;
+        }
+
+        public Object getId() {
+            return id;
+        }
+
+        public void setId(Object id) {
+            this.id = id;
+        }
+
+        public int getCode() {
+            return code;
+        }
+
+        public void setCode(int code) {
+            this.code = code;
+        }
+
+        public String getMsg() {
+            return msg;
+        }
+
+        public void setMsg(String msg) {
+            this.msg = msg;
+        }
+
+        @Override
+        public String toString() {
+            return "DocumentFailure{" +
+                    "index=" + index +
+                    ", id=" + id +
+                    ", code=" + code +
+                    ", msg='" + msg + '\'' +
+                    '}';
+        }
+    }
+}
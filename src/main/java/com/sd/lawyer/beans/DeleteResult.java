@@ -0,0 +1,140 @@
+package com.sd.lawyer.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量删除结果
+ * 按块执行的删除中，某些块失败不影响其他块，失败的块及原因记录在failures中
+ */
+public class DeleteResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 实际删除的记录数
+     */
+    private long deletedCount;
+    /**
+     * 删除前读取的文档（仅在要求返回被删除文档时有值）
+     */
+    private List<T> deleted;
+    /**
+     * 失败的块
+     */
+    private List<ChunkFailure> failures = new ArrayList<>();
+
+    public long getDeletedCount() {
+        return deletedCount;
+    }
+
+    public void setDeletedCount(long deletedCount) {
+        this.deletedCount = deletedCount;
+    }
+
+    public List<T> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<T> deleted) {
+        this.deleted = deleted;
+    }
+
+    public List<ChunkFailure> getFailures() {
+        return failures;
+    }
+
+    public void setFailures(List<ChunkFailure> failures) {
+        this.failures = failures;
+    }
+
+    /**
+     * 是否全部成功
+     *
+     * @return true or false
+     */
+    public boolean isSuccess() {
+        return failures == null || failures.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "DeleteResult{" +
+                "deletedCount=" + deletedCount +
+                ", failures=" + failures +
+                '}';
+    }
+
+    /**
+     * 失败的块
+     */
+    public static class ChunkFailure implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        /**
+         * 块序号，从0开始
+         */
+        private int chunk;
+        /**
+         * 块中的id
+         */
+        private List<Object> ids;
+        /**
+         * 失败原因
+         */
+        private String msg;
+        /**
+         * 异常
+         */
+        private transient Throwable cause;
+
+        public ChunkFailure() {
+        }
+
+        public ChunkFailure(int chunk, List<Object> ids, Throwable cause) {
+            this.chunk = chunk;
+            this.ids = ids;
+            this.msg = cause.getMessage();
+            this.cause = cause;
+        }
+
+        public int getChunk() {
+            return chunk;
+        }
+
+        public void setChunk(int chunk) {
+            this.chunk = chunk;
+        }
+
+        public List<Object> getIds() {
+            return ids;
+        }
+
+        public void setIds(List<Object> ids) {
+            this.ids = ids;
+        }
+
+        public String getMsg() {
+            return msg;
+        }
+
+        public void setMsg(String msg) {
+            this.msg = msg;
+        }
+
+        public Throwable getCause() {
+            return cause;
+        }
+
+        @Override
+        public String toString() {
+            return "ChunkFailure{" +
+                    "chunk=" + chunk +
+                    ", size=" + (ids == null ? 0 : ids.size()) +
+                    ", msg='" + msg + '\'' +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.sd.lawyer.beans;
+
+import java.io.Serializable;
+
+/**
+ * 去重查询的字段值及出现次数
+ */
+public class DistinctCount implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 字段值
+     */
+    private Object value;
+    /**
+     * 包含该值的记录数
+     */
+    private long count;
+
+    public DistinctCount() {
+    }
+
+    public DistinctCount(Object value, long count) {
+        this.value = value;
+        this.count = count;
+    }
+
+    public Object getValue() {
+        return value;
+    }
+
+    public void setValue(Object value) {
+        this.value = value;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public void setCount(long count) {
+        this.count = count;
+    }
+
+    @Override
+    public String toString() {
+        return "DistinctCount{" +
+                "value=" + value +
+                ", count=" + count +
+                '}';
+    }
+}
@@ -0,0 +1,56 @@
+package com.sd.lawyer.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按主键批量查询结果
+ * 实体按请求的id顺序排列，不存在的id对应null，并记录在missingIds中
+ */
+public class FindResult<T> implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 按请求顺序排列的实体，不存在的id对应null
+     */
+    private List<T> list = new ArrayList<>();
+    /**
+     * 不存在的id（去重，按请求顺序）
+     */
+    private List<Object> missingIds = new ArrayList<>();
+
+    public List<T> getList() {
+        return list;
+    }
+
+    public void setList(List<T> list) {
+        this.list = list;
+    }
+
+    public List<Object> getMissingIds() {
+        return missingIds;
+    }
+
+    public void setMissingIds(List<Object> missingIds) {
+        this.missingIds = missingIds;
+    }
+
+    /**
+     * 是否全部找到
+     *
+     * @return true or false
+     */
+    public boolean isComplete() {
+        return missingIds == null || missingIds.isEmpty();
+    }
+
+    @Override
+    public String toString() {
+        return "FindResult{" +
+                "size=" + (list == null ? 0 : list.size()) +
+                ", missingIds=" + missingIds +
+                '}';
+    }
+}
@@ -50,6 +50,26 @@ public class Page<T> {
      * 排序逻辑：增序、降序
      */
     private String sort = "";
+    /**
+     * 是否统计数据总数，无限滚动等场景可关闭，仅通过hasNext判断是否还有数据
+     */
+    private boolean countTotal = true;
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasNext;
+    /**
+     * 游标分页：本次请求携带的游标，为空表示第一页
+     */
+    private String cursor;
+    /**
+     * 游标分页：下一页游标，为空表示没有下一页
+     */
+    private String nextCursor;
+    /**
+     * 游标分页：上一页游标，为空表示没有上一页
+     */
+    private String prevCursor;
 
     public Page() {
     }
@@ -124,6 +144,46 @@ public class Page<T> {
         this.sort = sort;
     }
 
+    public boolean isCountTotal() {
+        return countTotal;
+    }
+
+    public void setCountTotal(boolean countTotal) {
+        this.countTotal = countTotal;
+    }
+
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public String getCursor() {
+        return cursor;
+    }
+
+    public void setCursor(String cursor) {
+        this.cursor = cursor;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public void setPrevCursor(String prevCursor) {
+        this.prevCursor = prevCursor;
+    }
+
     public void setPageContent(String pageContent) {
         this.pageContent = pageContent;
     }
@@ -294,6 +354,9 @@ public class Page<T> {
                 ", showCount=" + showCount +
                 ", totalPage=" + totalPage +
                 ", totalCount=" + totalCount +
+                ", hasNext=" + hasNext +
+                ", nextCursor='" + nextCursor + '\'' +
+                ", prevCursor='" + prevCursor + '\'' +
                 ", pageContent='" + pageContent + '\'' +
                 '}';
     }
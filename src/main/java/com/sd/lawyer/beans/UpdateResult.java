@@ -0,0 +1,67 @@
+package com.sd.lawyer.beans;
+
+import java.io.Serializable;
+
+/**
+ * 原子更新结果
+ * 记录匹配的文档数，upsert插入新文档时记录新文档的主键
+ */
+public class UpdateResult implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 匹配的文档数（upsert插入新文档时为1）
+     */
+    private long matchedCount;
+    /**
+     * 是否更新了已有文档
+     */
+    private boolean updateOfExisting;
+    /**
+     * upsert插入的新文档主键，没有插入时为null
+     */
+    private Object upsertedId;
+
+    public UpdateResult() {
+    }
+
+    public UpdateResult(long matchedCount, boolean updateOfExisting, Object upsertedId) {
+        this.matchedCount = matchedCount;
+        this.updateOfExisting = updateOfExisting;
+        this.upsertedId = upsertedId;
+    }
+
+    public long getMatchedCount() {
+        return matchedCount;
+    }
+
+    public void setMatchedCount(long matchedCount) {
+        this.matchedCount = matchedCount;
+    }
+
+    public boolean isUpdateOfExisting() {
+        return updateOfExisting;
+    }
+
+    public void setUpdateOfExisting(boolean updateOfExisting) {
+        this.updateOfExisting = updateOfExisting;
+    }
+
+    public Object getUpsertedId() {
+        return upsertedId;
+    }
+
+    public void setUpsertedId(Object upsertedId) {
+        this.upsertedId = upsertedId;
+    }
+
+    @Override
+    public String toString() {
+        return "UpdateResult{" +
+                "matchedCount=" + matchedCount +
+                ", updateOfExisting=" + updateOfExisting +
+                ", upsertedId=" + upsertedId +
+                '}';
+    }
+}
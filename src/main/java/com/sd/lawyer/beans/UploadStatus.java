@@ -0,0 +1,107 @@
+package com.sd.lawyer.beans;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 断点续传上传状态
+ * 客户端按received中的已接收范围跳过已上传的分块，只补传缺少的分块
+ */
+public class UploadStatus implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 上传ID（也是完成后的文件ID）
+     */
+    private Object uploadId;
+    /**
+     * 文件总字节数
+     */
+    private long length;
+    /**
+     * 分块大小（字节），除最后一块外每块都必须是这个大小
+     */
+    private int chunkSize;
+    /**
+     * 分块总数
+     */
+    private int totalChunks;
+    /**
+     * 已接收的分块数
+     */
+    private int receivedChunks;
+    /**
+     * 已接收的字节范围，每项为{起始位置, 结束位置}（均含），按起始位置升序
+     */
+    private List<long[]> received = new ArrayList<>();
+
+    public Object getUploadId() {
+        return uploadId;
+    }
+
+    public void setUploadId(Object uploadId) {
+        this.uploadId = uploadId;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    public void setLength(long length) {
+        this.length = length;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public int getTotalChunks() {
+        return totalChunks;
+    }
+
+    public void setTotalChunks(int totalChunks) {
+        this.totalChunks = totalChunks;
+    }
+
+    public int getReceivedChunks() {
+        return receivedChunks;
+    }
+
+    public void setReceivedChunks(int receivedChunks) {
+        this.receivedChunks = receivedChunks;
+    }
+
+    public List<long[]> getReceived() {
+        return received;
+    }
+
+    public void setReceived(List<long[]> received) {
+        this.received = received;
+    }
+
+    /**
+     * 是否已接收全部分块
+     *
+     * @return true or false
+     */
+    public boolean isComplete() {
+        return receivedChunks >= totalChunks;
+    }
+
+    @Override
+    public String toString() {
+        return "UploadStatus{" +
+                "uploadId=" + uploadId +
+                ", length=" + length +
+                ", chunkSize=" + chunkSize +
+                ", totalChunks=" + totalChunks +
+                ", receivedChunks=" + receivedChunks +
+                '}';
+    }
+}
@@ -0,0 +1,509 @@
+package com.sd.lawyer.dao;
+
+import com.sd.lawyer.beans.BulkInsertResult;
+import com.sd.lawyer.beans.DeleteResult;
+import com.sd.lawyer.beans.DistinctCount;
+import com.sd.lawyer.beans.FindResult;
+import com.sd.lawyer.beans.Page;
+import com.sd.lawyer.beans.UpdateResult;
+import com.sd.lawyer.util.PageModel;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 通用基本操作方法异步接口
+ * ClassName: AsyncMongoDao
+ * Description:与{@link MongoDao}的方法一一对应，返回CompletableFuture，查询在独立的有界线程池中执行，<br>
+ * 不占用请求线程；Controller可返回DeferredResult，或同时发起多个互不依赖的查询后用allOf合并。<br>
+ * 线程池队列已满时返回的future以RejectedExecutionException异常完成（快速失败，不阻塞调用方）。<br>
+ * 流式查询（stream、iterate）与游标绑定，不提供异步版本
+ */
+public interface AsyncMongoDao<T> {
+
+    /**
+     * 在线程池中执行对同步DAO的任意调用，用于子类DAO中自定义的方法
+     *
+     * @param call 调用
+     * @return 调用结果
+     */
+    public <R> CompletableFuture<R> execute(Function<? super MongoDao<T>, R> call);
+
+    /**
+     * 保存实体
+     *
+     * @see MongoDao#save(Object)
+     */
+    public CompletableFuture<T> save(T entity);
+
+    /**
+     * 批量保存实体
+     *
+     * @see MongoDao#batchSave(List)
+     */
+    public CompletableFuture<List<T>> batchSave(List<T> entity);
+
+    /**
+     * 批量写入实体
+     *
+     * @see MongoDao#batchInsert(Iterator)
+     */
+    public CompletableFuture<BulkInsertResult> batchInsert(Iterator<? extends T> entities);
+
+    /**
+     * 更新文档信息
+     *
+     * @see MongoDao#update(Object)
+     */
+    public CompletableFuture<T> update(T entity);
+
+    /**
+     * 延迟更新文档信息
+     *
+     * @see MongoDao#updateLater(Object)
+     */
+    public CompletableFuture<T> updateLater(T entity);
+
+    /**
+     * 延迟执行更新
+     *
+     * @see MongoDao#updateLater(Serializable, Update)
+     */
+    public CompletableFuture<Void> updateLater(Serializable id, Update update);
+
+    /**
+     * 立即写入延迟写入缓冲区中的全部更新
+     *
+     * @see MongoDao#flushWrites()
+     */
+    public CompletableFuture<Integer> flushWrites();
+
+    /**
+     * 原子递增字段
+     *
+     * @see MongoDao#increment(Serializable, String, Number)
+     */
+    public CompletableFuture<T> increment(Serializable id, String field, Number delta);
+
+    /**
+     * 向数组字段末尾追加元素
+     *
+     * @see MongoDao#push(Serializable, String, Object[])
+     */
+    public CompletableFuture<UpdateResult> push(Serializable id, String field, Object... values);
+
+    /**
+     * 向数组字段追加不重复的元素
+     *
+     * @see MongoDao#addToSet(Serializable, String, Object[])
+     */
+    public CompletableFuture<UpdateResult> addToSet(Serializable id, String field, Object... values);
+
+    /**
+     * 从数组字段中删除等于指定值的全部元素
+     *
+     * @see MongoDao#pull(Serializable, String, Object)
+     */
+    public CompletableFuture<UpdateResult> pull(Serializable id, String field, Object value);
+
+    /**
+     * 按主键原子更新一个文档
+     *
+     * @see MongoDao#updateById(Serializable, Update)
+     */
+    public CompletableFuture<UpdateResult> updateById(Serializable id, Update update);
+
+    /**
+     * 原子更新第一个匹配的文档
+     *
+     * @see MongoDao#updateFirst(Query, Update)
+     */
+    public CompletableFuture<UpdateResult> updateFirst(Query query, Update update);
+
+    /**
+     * 原子更新全部匹配的文档
+     *
+     * @see MongoDao#updateMulti(Query, Update)
+     */
+    public CompletableFuture<UpdateResult> updateMulti(Query query, Update update);
+
+    /**
+     * 更新或插入文档
+     *
+     * @see MongoDao#upsert(Query, Update)
+     */
+    public CompletableFuture<UpdateResult> upsert(Query query, Update update);
+
+    /**
+     * 按主键原子更新一个文档并返回更新前或更新后的实体
+     *
+     * @see MongoDao#findAndModify(Serializable, Update, boolean)
+     */
+    public CompletableFuture<T> findAndModify(Serializable id, Update update, boolean returnNew);
+
+    /**
+     * 原子更新第一个匹配的文档并返回更新前或更新后的实体
+     *
+     * @see MongoDao#findAndModify(Query, Update, boolean, boolean)
+     */
+    public CompletableFuture<T> findAndModify(Query query, Update update, boolean returnNew, boolean upsert);
+
+    /**
+     * 删除实体
+     *
+     * @see MongoDao#delete(Serializable)
+     */
+    public CompletableFuture<T> delete(Serializable id);
+
+    /**
+     * 删除实体[数组]
+     *
+     * @see MongoDao#delete(Serializable[])
+     */
+    public CompletableFuture<List<T>> delete(Serializable... ids);
+
+    /**
+     * 批量删除实体
+     *
+     * @see MongoDao#deleteBatch(Collection, boolean)
+     */
+    public CompletableFuture<DeleteResult<T>> deleteBatch(Collection<? extends Serializable> ids, boolean returnDeleted);
+
+    /**
+     * 根据主键id查询
+     *
+     * @see MongoDao#findById(Serializable)
+     */
+    public CompletableFuture<T> findById(Serializable id);
+
+    /**
+     * 根据主键id查询，只返回投影指定的字段
+     *
+     * @see MongoDao#findById(Serializable, Projection)
+     */
+    public CompletableFuture<T> findById(Serializable id, Projection projection);
+
+    /**
+     * 根据主键id批量查询
+     *
+     * @see MongoDao#findByIds(Collection)
+     */
+    public CompletableFuture<FindResult<T>> findByIds(Collection<? extends Serializable> ids);
+
+    /**
+     * 查询所有记录
+     *
+     * @see MongoDao#findAll()
+     */
+    public CompletableFuture<List<T>> findAll();
+
+    /**
+     * 查询所有记录并排序
+     *
+     * @see MongoDao#findAll(String)
+     */
+    public CompletableFuture<List<T>> findAll(String order);
+
+    /**
+     * 根据单一参数查询记录
+     *
+     * @see MongoDao#findByProp(String, Object)
+     */
+    public CompletableFuture<List<T>> findByProp(String propName, Object propValue);
+
+    /**
+     * 根据单一参数查询记录并排序
+     *
+     * @see MongoDao#findByProp(String, Object, String)
+     */
+    public CompletableFuture<List<T>> findByProp(String propName, Object propValue, String order);
+
+    /**
+     * 根据单一参数查询记录并排序，只返回投影指定的字段
+     *
+     * @see MongoDao#findByProp(String, Object, String, Projection)
+     */
+    public CompletableFuture<List<T>> findByProp(String propName, Object propValue, String order, Projection projection);
+
+    /**
+     * 根据多个参数查询记录
+     *
+     * @see MongoDao#findByProps(String[], Object[])
+     */
+    public CompletableFuture<List<T>> findByProps(String[] propName, Object[] propValue);
+
+    /**
+     * 根据多个参数查询记录 并排序
+     *
+     * @see MongoDao#findByProps(String[], Object[], String)
+     */
+    public CompletableFuture<List<T>> findByProps(String[] propName, Object[] propValue, String order);
+
+    /**
+     * 根据多个参数查询记录 并排序，只返回投影指定的字段
+     *
+     * @see MongoDao#findByProps(String[], Object[], String, Projection)
+     */
+    public CompletableFuture<List<T>> findByProps(String[] propName, Object[] propValue, String order, Projection projection);
+
+    /**
+     * 根据多个参数查询第一条记录
+     *
+     * @see MongoDao#findFirstByProps(String[], Object[])
+     */
+    public CompletableFuture<T> findFirstByProps(String[] propName, Object[] propValue);
+
+    /**
+     * 根据多个参数查询第一条记录
+     *
+     * @see MongoDao#findFirstByProps(String[], Object[], String)
+     */
+    public CompletableFuture<T> findFirstByProps(String[] propName, Object[] propValue, String order);
+
+    /**
+     * 根据多个参数按逻辑关系（and、or）查询记录
+     *
+     * @see MongoDao#findByPropsLogic(String[], Object[], String)
+     */
+    public CompletableFuture<List<T>> findByPropsLogic(String[] propName, Object[] propValue, String logic);
+
+    /**
+     * 根据多个参数按逻辑关系（and、or）查询记录
+     *
+     * @see MongoDao#findByPropsLogic(String[], Object[], String, String)
+     */
+    public CompletableFuture<List<T>> findByPropsLogic(String[] propName, Object[] propValue, String logic, String order);
+
+    /**
+     * 多条件筛选查询满足条件的结果集
+     *
+     * @see MongoDao#findByQuery(Query)
+     */
+    public CompletableFuture<List<T>> findByQuery(Query query);
+
+    /**
+     * 多条件筛选查询满足条件的结果集
+     *
+     * @see MongoDao#findByQuery(Query, String)
+     */
+    public CompletableFuture<List<T>> findByQuery(Query query, String order);
+
+    /**
+     * 多条件筛选查询满足条件的结果集，只返回投影指定的字段
+     *
+     * @see MongoDao#findByQuery(Query, String, Projection)
+     */
+    public CompletableFuture<List<T>> findByQuery(Query query, String order, Projection projection);
+
+    /**
+     * 多条件筛选查询满足条件的结果集，只查询DTO类中的字段并映射为DTO
+     *
+     * @see MongoDao#findByQueryAs(Query, String, Class)
+     */
+    public <D> CompletableFuture<List<D>> findByQueryAs(Query query, String order, Class<D> type);
+
+    /**
+     * 逐条处理满足条件的结果集，处理完毕或出错时自动关闭游标，action在线程池的线程中执行
+     *
+     * @see MongoDao#forEachByQuery(Query, String, Consumer)
+     */
+    public CompletableFuture<Long> forEachByQuery(Query query, String order, Consumer<? super T> action);
+
+    /**
+     * 根据单一参数查询唯一结果
+     *
+     * @see MongoDao#uniqueByProp(String, Object)
+     */
+    public CompletableFuture<T> uniqueByProp(String propName, Object propValue);
+
+    /**
+     * 根据多个参数查询唯一结果
+     *
+     * @see MongoDao#uniqueByProps(String[], Object[])
+     */
+    public CompletableFuture<T> uniqueByProps(String[] propName, Object[] propValue);
+
+    /**
+     * 根据条件查询总记录数
+     *
+     * @see MongoDao#countByCondition(String[], Object[])
+     */
+    public CompletableFuture<Integer> countByCondition(String[] params, Object[] values);
+
+    /**
+     * 按查询模板查询记录
+     *
+     * @see MongoDao#findByTemplate(QueryTemplate, Object[])
+     */
+    public CompletableFuture<List<T>> findByTemplate(QueryTemplate template, Object... values);
+
+    /**
+     * 按查询模板查询第一条记录
+     *
+     * @see MongoDao#findFirstByTemplate(QueryTemplate, Object[])
+     */
+    public CompletableFuture<T> findFirstByTemplate(QueryTemplate template, Object... values);
+
+    /**
+     * 按查询模板查询总记录数
+     *
+     * @see MongoDao#countByTemplate(QueryTemplate, Object[])
+     */
+    public CompletableFuture<Long> countByTemplate(QueryTemplate template, Object... values);
+
+    /**
+     * 按查询模板分页查询结果集合
+     *
+     * @see MongoDao#pageByTemplate(int, int, QueryTemplate, Object[])
+     */
+    public CompletableFuture<PageModel<T>> pageByTemplate(int pageNo, int pageSize, QueryTemplate template, Object... values);
+
+    /**
+     * 去重查询满足条件的字段结果集
+     *
+     * @see MongoDao#distinctByQuery(String, Query)
+     */
+    public CompletableFuture<List> distinctByQuery(String distinctField, Query query);
+
+    /**
+     * 去重查询满足条件的字段结果集
+     *
+     * @see MongoDao#distinctByQuery(String, Query, String)
+     */
+    public CompletableFuture<List> distinctByQuery(String distinctField, Query query, String order);
+
+    /**
+     * 分页去重查询满足条件的字段结果集
+     *
+     * @see MongoDao#distinctByQuery(String, Query, String, int, int)
+     */
+    public CompletableFuture<List<Object>> distinctByQuery(String distinctField, Query query, String order, int skip, int limit);
+
+    /**
+     * 分页去重查询满足条件的字段结果集，并统计每个值的记录数
+     *
+     * @see MongoDao#distinctWithCount(String, Query, String, int, int)
+     */
+    public CompletableFuture<List<DistinctCount>> distinctWithCount(String distinctField, Query query, String order, int skip, int limit);
+
+    /**
+     * 聚合查询
+     *
+     * @see MongoDao#aggregate(Aggregation, Class)
+     */
+    public <O> CompletableFuture<List<O>> aggregate(Aggregation aggregation, Class<O> outputType);
+
+    /**
+     * 分页查询所有结果集
+     *
+     * @see MongoDao#pageAll(Page)
+     */
+    public CompletableFuture<Page<T>> pageAll(Page page);
+
+    /**
+     * 分页查询所有结果集
+     *
+     * @see MongoDao#pageAll(Page, String)
+     */
+    public CompletableFuture<Page<T>> pageAll(Page page, String order);
+
+    /**
+     * 分页查询满足条件的结果集
+     *
+     * @see MongoDao#pageByQuery(Page, Query)
+     */
+    public CompletableFuture<Page<T>> pageByQuery(Page page, Query query);
+
+    /**
+     * 分页查询满足条件的结果集
+     *
+     * @see MongoDao#pageByQuery(Page, Query, String)
+     */
+    public CompletableFuture<Page<T>> pageByQuery(Page page, Query query, String order);
+
+    /**
+     * 分页查询所有结果集合
+     *
+     * @see MongoDao#pageAll(int, int)
+     */
+    public CompletableFuture<PageModel<T>> pageAll(int pageNo, int pageSize);
+
+    /**
+     * 分页查询所有结果集合 并排序
+     *
+     * @see MongoDao#pageAll(int, int, String)
+     */
+    public CompletableFuture<PageModel<T>> pageAll(int pageNo, int pageSize, String order);
+
+    /**
+     * 根据参数分页查询结果集合
+     *
+     * @see MongoDao#pageByProp(int, int, String, Object)
+     */
+    public CompletableFuture<PageModel<T>> pageByProp(int pageNo, int pageSize, String param, Object value);
+
+    /**
+     * 根据参数分页查询结果集合并排序
+     *
+     * @see MongoDao#pageByProp(int, int, String, Object, String)
+     */
+    public CompletableFuture<PageModel<T>> pageByProp(int pageNo, int pageSize, String param, Object value, String order);
+
+    /**
+     * 根据参数分页查询结果集合
+     *
+     * @see MongoDao#pageByProps(int, int, String[], Object[])
+     */
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values);
+
+    /**
+     * 根据参数分页查询结果集合 并排序
+     *
+     * @see MongoDao#pageByProps(int, int, String[], Object[], String)
+     */
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order);
+
+    /**
+     * 根据参数分页查询结果集合 并排序
+     *
+     * @see MongoDao#pageByProps(int, int, String[], Object[], String, boolean)
+     */
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, boolean countTotal);
+
+    /**
+     * 根据参数分页查询结果集合 并排序，只返回投影指定的字段
+     *
+     * @see MongoDao#pageByProps(int, int, String[], Object[], String, Projection)
+     */
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, Projection projection);
+
+    /**
+     * 根据参数分页查询结果集合 并排序，只查询DTO类中的字段并映射为DTO
+     *
+     * @see MongoDao#pageByPropsAs(int, int, String[], Object[], String, Class)
+     */
+    public <D> CompletableFuture<PageModel<D>> pageByPropsAs(int pageNo, int pageSize, String[] params, Object[] values, String order, Class<D> type);
+
+    /**
+     * 游标（键集）分页查询满足条件的结果集
+     *
+     * @see MongoDao#pageByCursor(Page, Query, String)
+     */
+    public CompletableFuture<Page<T>> pageByCursor(Page page, Query query, String order);
+
+    /**
+     * 根据参数游标（键集）分页查询结果集合 并排序
+     *
+     * @see MongoDao#pageByCursor(int, int, String, String[], Object[], String)
+     */
+    public CompletableFuture<PageModel<T>> pageByCursor(int pageNo, int pageSize, String cursor, String[] params, Object[] values, String order);
+
+}
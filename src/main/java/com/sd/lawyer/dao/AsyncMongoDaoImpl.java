@@ -0,0 +1,418 @@
+package com.sd.lawyer.dao;
+
+import com.sd.lawyer.beans.BulkInsertResult;
+import com.sd.lawyer.beans.DeleteResult;
+import com.sd.lawyer.beans.DistinctCount;
+import com.sd.lawyer.beans.FindResult;
+import com.sd.lawyer.beans.Page;
+import com.sd.lawyer.beans.UpdateResult;
+import com.sd.lawyer.util.PageModel;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * 通用基本操作方法异步实现类
+ * ClassName: AsyncMongoDaoImpl
+ * Description:当前使用的是同步驱动，异步方法把对同步DAO的调用提交到有界线程池执行，<br>
+ * 默认使用{@link DaoExecutors#async()}，也可传入自定义线程池。<br>
+ * 任务使用提交线程的读己之写记录（{@link ReadYourWrites}），任务中的写入同样记录给提交线程，任务结束后恢复执行线程原来的记录。<br>
+ * 用法：
+ * <pre>
+ * AsyncMongoDao&lt;Lawyer&gt; asyncDao = new AsyncMongoDaoImpl&lt;Lawyer&gt;(lawyerDao);
+ * CompletableFuture&lt;Lawyer&gt; lawyer = asyncDao.findById(id);
+ * CompletableFuture&lt;PageModel&lt;Case&gt;&gt; cases = asyncCaseDao.pageByProp(1, 10, "lawyerId", id);
+ * CompletableFuture.allOf(lawyer, cases).thenRun(...);
+ * </pre>
+ */
+public class AsyncMongoDaoImpl<T> implements AsyncMongoDao<T> {
+
+    /**
+     * 同步DAO
+     */
+    private final MongoDao<T> dao;
+    /**
+     * 执行查询的线程池
+     */
+    private final Executor executor;
+
+    public AsyncMongoDaoImpl(MongoDao<T> dao) {
+        this(dao, DaoExecutors.async());
+    }
+
+    public AsyncMongoDaoImpl(MongoDao<T> dao, Executor executor) {
+        this.dao = dao;
+        this.executor = executor;
+    }
+
+    @Override
+    public <R> CompletableFuture<R> execute(final Function<? super MongoDao<T>, R> call) {
+        Map<String, Long> writes = ReadYourWrites.capture();
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                // 线程池也可能在提交线程中直接执行，结束时恢复执行线程原来的记录
+                Map<String, Long> previous = ReadYourWrites.attach(writes);
+                try {
+                    return call.apply(dao);
+                } finally {
+                    ReadYourWrites.attach(previous);
+                }
+            }, executor);
+        } catch (RejectedExecutionException e) {
+            // 队列已满，快速失败
+            CompletableFuture<R> future = new CompletableFuture<R>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    @Override
+    public CompletableFuture<T> save(T entity) {
+        return execute(dao -> dao.save(entity));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> batchSave(List<T> entity) {
+        return execute(dao -> dao.batchSave(entity));
+    }
+
+    @Override
+    public CompletableFuture<BulkInsertResult> batchInsert(Iterator<? extends T> entities) {
+        return execute(dao -> dao.batchInsert(entities));
+    }
+
+    @Override
+    public CompletableFuture<T> update(T entity) {
+        return execute(dao -> dao.update(entity));
+    }
+
+    @Override
+    public CompletableFuture<T> updateLater(T entity) {
+        return execute(dao -> dao.updateLater(entity));
+    }
+
+    @Override
+    public CompletableFuture<Void> updateLater(Serializable id, Update update) {
+        return execute(dao -> {
+            dao.updateLater(id, update);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Integer> flushWrites() {
+        return execute(MongoDao::flushWrites);
+    }
+
+    @Override
+    public CompletableFuture<T> increment(Serializable id, String field, Number delta) {
+        return execute(dao -> dao.increment(id, field, delta));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> push(Serializable id, String field, Object... values) {
+        return execute(dao -> dao.push(id, field, values));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> addToSet(Serializable id, String field, Object... values) {
+        return execute(dao -> dao.addToSet(id, field, values));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> pull(Serializable id, String field, Object value) {
+        return execute(dao -> dao.pull(id, field, value));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> updateById(Serializable id, Update update) {
+        return execute(dao -> dao.updateById(id, update));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> updateFirst(Query query, Update update) {
+        return execute(dao -> dao.updateFirst(query, update));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> updateMulti(Query query, Update update) {
+        return execute(dao -> dao.updateMulti(query, update));
+    }
+
+    @Override
+    public CompletableFuture<UpdateResult> upsert(Query query, Update update) {
+        return execute(dao -> dao.upsert(query, update));
+    }
+
+    @Override
+    public CompletableFuture<T> findAndModify(Serializable id, Update update, boolean returnNew) {
+        return execute(dao -> dao.findAndModify(id, update, returnNew));
+    }
+
+    @Override
+    public CompletableFuture<T> findAndModify(Query query, Update update, boolean returnNew, boolean upsert) {
+        return execute(dao -> dao.findAndModify(query, update, returnNew, upsert));
+    }
+
+    @Override
+    public CompletableFuture<T> delete(Serializable id) {
+        return execute(dao -> dao.delete(id));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> delete(Serializable... ids) {
+        return execute(dao -> dao.delete(ids));
+    }
+
+    @Override
+    public CompletableFuture<DeleteResult<T>> deleteBatch(Collection<? extends Serializable> ids, boolean returnDeleted) {
+        return execute(dao -> dao.deleteBatch(ids, returnDeleted));
+    }
+
+    @Override
+    public CompletableFuture<T> findById(Serializable id) {
+        return execute(dao -> dao.findById(id));
+    }
+
+    @Override
+    public CompletableFuture<T> findById(Serializable id, Projection projection) {
+        return execute(dao -> dao.findById(id, projection));
+    }
+
+    @Override
+    public CompletableFuture<FindResult<T>> findByIds(Collection<? extends Serializable> ids) {
+        return execute(dao -> dao.findByIds(ids));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll() {
+        return execute(dao -> dao.findAll());
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findAll(String order) {
+        return execute(dao -> dao.findAll(order));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByProp(String propName, Object propValue) {
+        return execute(dao -> dao.findByProp(propName, propValue));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByProp(String propName, Object propValue, String order) {
+        return execute(dao -> dao.findByProp(propName, propValue, order));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByProp(String propName, Object propValue, String order, Projection projection) {
+        return execute(dao -> dao.findByProp(propName, propValue, order, projection));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByProps(String[] propName, Object[] propValue) {
+        return execute(dao -> dao.findByProps(propName, propValue));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByProps(String[] propName, Object[] propValue, String order) {
+        return execute(dao -> dao.findByProps(propName, propValue, order));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByProps(String[] propName, Object[] propValue, String order, Projection projection) {
+        return execute(dao -> dao.findByProps(propName, propValue, order, projection));
+    }
+
+    @Override
+    public CompletableFuture<T> findFirstByProps(String[] propName, Object[] propValue) {
+        return execute(dao -> dao.findFirstByProps(propName, propValue));
+    }
+
+    @Override
+    public CompletableFuture<T> findFirstByProps(String[] propName, Object[] propValue, String order) {
+        return execute(dao -> dao.findFirstByProps(propName, propValue, order));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByPropsLogic(String[] propName, Object[] propValue, String logic) {
+        return execute(dao -> dao.findByPropsLogic(propName, propValue, logic));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByPropsLogic(String[] propName, Object[] propValue, String logic, String order) {
+        return execute(dao -> dao.findByPropsLogic(propName, propValue, logic, order));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByQuery(Query query) {
+        return execute(dao -> dao.findByQuery(query));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByQuery(Query query, String order) {
+        return execute(dao -> dao.findByQuery(query, order));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByQuery(Query query, String order, Projection projection) {
+        return execute(dao -> dao.findByQuery(query, order, projection));
+    }
+
+    @Override
+    public <D> CompletableFuture<List<D>> findByQueryAs(Query query, String order, Class<D> type) {
+        return execute(dao -> dao.findByQueryAs(query, order, type));
+    }
+
+    @Override
+    public CompletableFuture<Long> forEachByQuery(Query query, String order, Consumer<? super T> action) {
+        return execute(dao -> dao.forEachByQuery(query, order, action));
+    }
+
+    @Override
+    public CompletableFuture<T> uniqueByProp(String propName, Object propValue) {
+        return execute(dao -> dao.uniqueByProp(propName, propValue));
+    }
+
+    @Override
+    public CompletableFuture<T> uniqueByProps(String[] propName, Object[] propValue) {
+        return execute(dao -> dao.uniqueByProps(propName, propValue));
+    }
+
+    @Override
+    public CompletableFuture<Integer> countByCondition(String[] params, Object[] values) {
+        return execute(dao -> dao.countByCondition(params, values));
+    }
+
+    @Override
+    public CompletableFuture<List<T>> findByTemplate(QueryTemplate template, Object... values) {
+        return execute(dao -> dao.findByTemplate(template, values));
+    }
+
+    @Override
+    public CompletableFuture<T> findFirstByTemplate(QueryTemplate template, Object... values) {
+        return execute(dao -> dao.findFirstByTemplate(template, values));
+    }
+
+    @Override
+    public CompletableFuture<Long> countByTemplate(QueryTemplate template, Object... values) {
+        return execute(dao -> dao.countByTemplate(template, values));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByTemplate(int pageNo, int pageSize, QueryTemplate template, Object... values) {
+        return execute(dao -> dao.pageByTemplate(pageNo, pageSize, template, values));
+    }
+
+    @Override
+    public CompletableFuture<List> distinctByQuery(String distinctField, Query query) {
+        return execute(dao -> dao.distinctByQuery(distinctField, query));
+    }
+
+    @Override
+    public CompletableFuture<List> distinctByQuery(String distinctField, Query query, String order) {
+        return execute(dao -> dao.distinctByQuery(distinctField, query, order));
+    }
+
+    @Override
+    public CompletableFuture<List<Object>> distinctByQuery(String distinctField, Query query, String order, int skip, int limit) {
+        return execute(dao -> dao.distinctByQuery(distinctField, query, order, skip, limit));
+    }
+
+    @Override
+    public CompletableFuture<List<DistinctCount>> distinctWithCount(String distinctField, Query query, String order, int skip, int limit) {
+        return execute(dao -> dao.distinctWithCount(distinctField, query, order, skip, limit));
+    }
+
+    @Override
+    public <O> CompletableFuture<List<O>> aggregate(Aggregation aggregation, Class<O> outputType) {
+        return execute(dao -> dao.aggregate(aggregation, outputType));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> pageAll(Page page) {
+        return execute(dao -> dao.pageAll(page));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> pageAll(Page page, String order) {
+        return execute(dao -> dao.pageAll(page, order));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> pageByQuery(Page page, Query query) {
+        return execute(dao -> dao.pageByQuery(page, query));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> pageByQuery(Page page, Query query, String order) {
+        return execute(dao -> dao.pageByQuery(page, query, order));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageAll(int pageNo, int pageSize) {
+        return execute(dao -> dao.pageAll(pageNo, pageSize));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageAll(int pageNo, int pageSize, String order) {
+        return execute(dao -> dao.pageAll(pageNo, pageSize, order));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByProp(int pageNo, int pageSize, String param, Object value) {
+        return execute(dao -> dao.pageByProp(pageNo, pageSize, param, value));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByProp(int pageNo, int pageSize, String param, Object value, String order) {
+        return execute(dao -> dao.pageByProp(pageNo, pageSize, param, value, order));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values) {
+        return execute(dao -> dao.pageByProps(pageNo, pageSize, params, values));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order) {
+        return execute(dao -> dao.pageByProps(pageNo, pageSize, params, values, order));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, boolean countTotal) {
+        return execute(dao -> dao.pageByProps(pageNo, pageSize, params, values, order, countTotal));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, Projection projection) {
+        return execute(dao -> dao.pageByProps(pageNo, pageSize, params, values, order, projection));
+    }
+
+    @Override
+    public <D> CompletableFuture<PageModel<D>> pageByPropsAs(int pageNo, int pageSize, String[] params, Object[] values, String order, Class<D> type) {
+        return execute(dao -> dao.pageByPropsAs(pageNo, pageSize, params, values, order, type));
+    }
+
+    @Override
+    public CompletableFuture<Page<T>> pageByCursor(Page page, Query query, String order) {
+        return execute(dao -> dao.pageByCursor(page, query, order));
+    }
+
+    @Override
+    public CompletableFuture<PageModel<T>> pageByCursor(int pageNo, int pageSize, String cursor, String[] params, Object[] values, String order) {
+        return execute(dao -> dao.pageByCursor(pageNo, pageSize, cursor, params, values, order));
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.sd.lawyer.dao;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+/**
+ * 按主键批量加载器
+ * ClassName: BatchLoader
+ * Description:解决循环调用findById的N+1问题：load只登记id并返回future，<br>
+ * dispatch时把登记的id合并为一次（按块）$in查询，再按id完成各个future。<br>
+ * 同一加载器内相同id只查询一次并返回同一实体，加载器应在一次请求内使用，不要跨请求共享。<br>
+ * 用法：
+ * <pre>
+ * BatchLoader&lt;Lawyer&gt; loader = lawyerDao.newBatchLoader();
+ * for (Case c : cases) {
+ *     loader.load(c.getLawyerId()).thenAccept(c::setLawyer);
+ * }
+ * loader.dispatch();
+ * </pre>
+ */
+public class BatchLoader<T> {
+
+    /**
+     * 批量查询，返回与id一一对应的实体，不存在时为null
+     */
+    private final Function<List<Serializable>, List<T>> batchFunction;
+
+    /**
+     * 已登记的id（含已加载的）
+     */
+    private final Map<String, CompletableFuture<T>> futures = new HashMap<String, CompletableFuture<T>>();
+
+    /**
+     * 等待加载的id
+     */
+    private final Map<String, Serializable> pending = new LinkedHashMap<String, Serializable>();
+
+    public BatchLoader(Function<List<Serializable>, List<T>> batchFunction) {
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * 登记要加载的id，dispatch后future完成，id不存在时结果为null
+     *
+     * @param id 主键
+     * @return 实体
+     */
+    public synchronized CompletableFuture<T> load(Serializable id) {
+        String key = id.toString();
+        CompletableFuture<T> future = futures.get(key);
+        if (future == null) {
+            future = new CompletableFuture<T>();
+            futures.put(key, future);
+            pending.put(key, id);
+        }
+        return future;
+    }
+
+    /**
+     * 登记要加载的多个id
+     *
+     * @param ids 主键
+     * @return 与id一一对应的实体
+     */
+    public synchronized List<CompletableFuture<T>> loadMany(Collection<? extends Serializable> ids) {
+        List<CompletableFuture<T>> list = new ArrayList<CompletableFuture<T>>(ids.size());
+        for (Serializable id : ids) {
+            list.add(load(id));
+        }
+        return list;
+    }
+
+    /**
+     * 查询所有等待加载的id并完成对应的future，查询失败时这些future以异常完成
+     *
+     * @return 本次查询的id数
+     */
+    public int dispatch() {
+        List<Serializable> ids;
+        List<CompletableFuture<T>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) {
+                return 0;
+            }
+            ids = new ArrayList<Serializable>(pending.values());
+            batch = new ArrayList<CompletableFuture<T>>(ids.size());
+            for (String key : pending.keySet()) {
+                batch.add(futures.get(key));
+            }
+            pending.clear();
+        }
+        try {
+            List<T> entities = batchFunction.apply(ids);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).complete(entities.get(i));
+            }
+        } catch (RuntimeException e) {
+            for (CompletableFuture<T> future : batch) {
+                future.completeExceptionally(e);
+            }
+        }
+        return ids.size();
+    }
+
+    /**
+     * 清空已加载的实体，之后相同id会重新查询
+     */
+    public synchronized void clear() {
+        futures.keySet().retainAll(pending.keySet());
+    }
+
+}
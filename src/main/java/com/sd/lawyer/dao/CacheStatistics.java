@@ -0,0 +1,72 @@
+package com.sd.lawyer.dao;
+
+import java.io.Serializable;
+
+/**
+ * 缓存统计信息
+ */
+public class CacheStatistics implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 当前缓存条目数（估算值）
+     */
+    private final long size;
+    /**
+     * 命中次数
+     */
+    private final long hitCount;
+    /**
+     * 未命中次数
+     */
+    private final long missCount;
+    /**
+     * 淘汰次数（容量或过期）
+     */
+    private final long evictionCount;
+
+    public CacheStatistics(long size, long hitCount, long missCount, long evictionCount) {
+        this.size = size;
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * 命中率
+     *
+     * @return 0~1，没有请求时为1
+     */
+    public double getHitRate() {
+        long requestCount = hitCount + missCount;
+        return requestCount == 0 ? 1.0 : (double) hitCount / requestCount;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheStatistics{" +
+                "size=" + size +
+                ", hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", hitRate=" + getHitRate() +
+                '}';
+    }
+}
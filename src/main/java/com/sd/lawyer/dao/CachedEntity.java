@@ -0,0 +1,31 @@
+package com.sd.lawyer.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启实体缓存
+ * Description:标注在实体类上，findById优先从进程内缓存读取，<br>
+ * 通过同一DAO的save、update、delete、batchSave写入时自动失效。<br>
+ * 适用于读多写少的数据（如律师资料、用户信息），其他进程直接修改数据库时只能等待过期。<br>
+ * 注意：从缓存读取的实体不会触发MongoTemplate的AfterLoadEvent、AfterConvertEvent
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachedEntity {
+
+    /**
+     * 最多缓存的实体数
+     */
+    long maximumSize() default 10000;
+
+    /**
+     * 写入缓存后多少秒过期，不大于0表示不过期
+     */
+    long expireAfterWriteSeconds() default 600;
+
+}
@@ -0,0 +1,35 @@
+package com.sd.lawyer.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启查询结果缓存
+ * Description:标注在实体类上，findAll、findByProp、distinctByQuery的结果按规范化的条件、排序、投影缓存，<br>
+ * 缓存键包含集合写入版本号，通过DAO写入集合后旧结果自动失效。<br>
+ * 适用于读多写少的字典、分类等列表数据，其他进程直接修改数据库时只能等待过期
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface CachedQueries {
+
+    /**
+     * 最多缓存的查询数
+     */
+    long maximumSize() default 1000;
+
+    /**
+     * 可缓存的最大结果条数，超过时不缓存
+     */
+    int maxResultSize() default 1000;
+
+    /**
+     * 写入缓存后多少秒过期，不大于0表示不过期
+     */
+    long expireAfterWriteSeconds() default 300;
+
+}
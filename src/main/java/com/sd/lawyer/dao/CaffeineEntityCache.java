@@ -0,0 +1,54 @@
+package com.sd.lawyer.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mongodb.DBObject;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 基于Caffeine（W-TinyLFU淘汰策略）的实体缓存
+ */
+public class CaffeineEntityCache implements EntityCache {
+
+    private final Cache<Object, DBObject> cache;
+
+    /**
+     * @param maximumSize             最多缓存的条目数
+     * @param expireAfterWriteSeconds 写入后多少秒过期，不大于0表示不过期
+     */
+    public CaffeineEntityCache(long maximumSize, long expireAfterWriteSeconds) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maximumSize).recordStats();
+        if (expireAfterWriteSeconds > 0) {
+            builder.expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+    }
+
+    @Override
+    public DBObject get(Object id) {
+        return cache.getIfPresent(id);
+    }
+
+    @Override
+    public void put(Object id, DBObject document) {
+        cache.put(id, document);
+    }
+
+    @Override
+    public void invalidate(Object id) {
+        cache.invalidate(id);
+    }
+
+    @Override
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    @Override
+    public CacheStatistics stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+}
@@ -0,0 +1,261 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 实体变更跟踪器
+ * ClassName: ChangeTracker
+ * Description:以实体对象本身（按引用，弱引用不影响回收）为键保存属性快照，<br>
+ * 快照保存属性转换为Mongo类型后的深拷贝（集合、内嵌对象、Date、数组均复制），无法转换的值视为已变化。<br>
+ * update时按equals与快照比较，只生成变化字段的$set/$unset，并统计跳过的字段数
+ */
+public class ChangeTracker<T> {
+
+    /**
+     * 无法比较的值，总是视为已变化
+     */
+    private static final Object UNKNOWN = new Object();
+
+    private final EntityMetadata<T> metadata;
+    private final MongoConverter converter;
+
+    /**
+     * 实体快照
+     */
+    private final ConcurrentMap<IdentityKey, Object[]> snapshots = new ConcurrentHashMap<IdentityKey, Object[]>();
+    /**
+     * 已回收实体的引用队列
+     */
+    private final ReferenceQueue<Object> queue = new ReferenceQueue<Object>();
+
+    /**
+     * 统计：按变化字段更新的次数
+     */
+    private final AtomicLong partialUpdates = new AtomicLong();
+    /**
+     * 统计：没有变化而跳过的更新次数
+     */
+    private final AtomicLong skippedUpdates = new AtomicLong();
+    /**
+     * 统计：未写入的字段数
+     */
+    private final AtomicLong skippedFields = new AtomicLong();
+
+    public ChangeTracker(EntityMetadata<T> metadata, MongoConverter converter) {
+        this.metadata = metadata;
+        this.converter = converter;
+    }
+
+    /**
+     * 记录实体快照
+     *
+     * @param entity 实体
+     * @return 实体本身
+     */
+    public T snapshot(T entity) {
+        if (entity == null) {
+            return null;
+        }
+        expunge();
+        List<EntityMetadata.Property> properties = metadata.getProperties();
+        Object[] values = new Object[properties.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = copy(convert(properties.get(i).get(entity)));
+        }
+        snapshots.put(new IdentityKey(entity, queue), values);
+        return entity;
+    }
+
+    /**
+     * 记录实体快照
+     *
+     * @param list 实体集合
+     * @return 实体集合本身
+     */
+    public List<T> snapshot(List<T> list) {
+        if (list != null) {
+            for (T entity : list) {
+                snapshot(entity);
+            }
+        }
+        return list;
+    }
+
+    /**
+     * 与快照比较生成更新参数
+     *
+     * @param entity 实体
+     * @return 更新参数，实体没有快照时返回null，没有变化时返回空的Update
+     */
+    public Update diff(T entity) {
+        Object[] snapshot = snapshots.get(new IdentityKey(entity, null));
+        if (snapshot == null) {
+            return null;
+        }
+        Update update = new Update();
+        int skippedCount = 0;
+        List<EntityMetadata.Property> properties = metadata.getProperties();
+        for (int i = 0; i < snapshot.length; i++) {
+            EntityMetadata.Property property = properties.get(i);
+            Object value = property.get(entity);
+            Object current = convert(value);
+            if (current != UNKNOWN && snapshot[i] != UNKNOWN && Objects.deepEquals(snapshot[i], current)) {
+                skippedCount++;
+            } else if (value == null) {
+                update.unset(property.getName());
+            } else {
+                update.set(property.getName(), value);
+            }
+        }
+
+        skippedFields.addAndGet(skippedCount);
+        if (isEmpty(update)) {
+            skippedUpdates.incrementAndGet();
+        } else {
+            partialUpdates.incrementAndGet();
+        }
+        return update;
+    }
+
+    public long getPartialUpdates() {
+        return partialUpdates.get();
+    }
+
+    public long getSkippedUpdates() {
+        return skippedUpdates.get();
+    }
+
+    public long getSkippedFields() {
+        return skippedFields.get();
+    }
+
+    /**
+     * 更新参数是否为空
+     *
+     * @param update 更新参数
+     * @return true or false
+     */
+    public static boolean isEmpty(Update update) {
+        return update.getUpdateObject().keySet().isEmpty();
+    }
+
+    /**
+     * 清理已被回收实体的快照
+     */
+    private void expunge() {
+        Reference<?> reference;
+        while ((reference = queue.poll()) != null) {
+            snapshots.remove(reference);
+        }
+    }
+
+    /**
+     * 转换为Mongo类型（与写入时一致），无法转换时返回UNKNOWN
+     */
+    private Object convert(Object value) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            return converter.convertToMongoType(value);
+        } catch (RuntimeException e) {
+            return UNKNOWN;
+        }
+    }
+
+    /**
+     * 深拷贝转换后的值，避免实体后续修改集合、内嵌对象时同时改动快照
+     */
+    private static Object copy(Object value) {
+        if (value instanceof BasicDBList) {
+            BasicDBList copy = new BasicDBList();
+            for (Object item : (BasicDBList) value) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        if (value instanceof DBObject) {
+            DBObject source = (DBObject) value;
+            BasicDBObject copy = new BasicDBObject();
+            for (String key : source.keySet()) {
+                copy.put(key, copy(source.get(key)));
+            }
+            return copy;
+        }
+        if (value instanceof Collection) {
+            List<Object> copy = new ArrayList<Object>();
+            for (Object item : (Collection<?>) value) {
+                copy.add(copy(item));
+            }
+            return copy;
+        }
+        if (value instanceof Map) {
+            Map<Object, Object> copy = new LinkedHashMap<Object, Object>();
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>) value).entrySet()) {
+                copy.put(entry.getKey(), copy(entry.getValue()));
+            }
+            return copy;
+        }
+        if (value instanceof Date) {
+            return new Date(((Date) value).getTime());
+        }
+        if (value != null && value.getClass().isArray()) {
+            int length = Array.getLength(value);
+            Object copy = Array.newInstance(value.getClass().getComponentType(), length);
+            for (int i = 0; i < length; i++) {
+                Array.set(copy, i, copy(Array.get(value, i)));
+            }
+            return copy;
+        }
+        return value;
+    }
+
+    /**
+     * 按引用比较的弱引用键，实体可能重写equals/hashCode，因此不能使用WeakHashMap
+     */
+    private static final class IdentityKey extends WeakReference<Object> {
+        private final int hash;
+
+        IdentityKey(Object referent, ReferenceQueue<Object> queue) {
+            super(referent, queue);
+            this.hash = System.identityHashCode(referent);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof IdentityKey)) {
+                return false;
+            }
+            Object referent = get();
+            return referent != null && referent == ((IdentityKey) o).get();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+}
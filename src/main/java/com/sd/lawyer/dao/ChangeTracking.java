@@ -0,0 +1,18 @@
+package com.sd.lawyer.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启变更跟踪
+ * Description:标注在实体类上，通过DAO查询得到的实体会记录快照，<br>
+ * update时只$set/$unset发生变化的字段，没有变化时不访问数据库
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ChangeTracking {
+}
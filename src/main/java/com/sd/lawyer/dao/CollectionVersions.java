@@ -0,0 +1,53 @@
+package com.sd.lawyer.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 集合写入版本号
+ * ClassName: CollectionVersions
+ * Description:DAO的每个写操作都会递增所写集合的版本号，查询结果缓存的键中包含版本号，<br>
+ * 集合被写入后旧版本的缓存不会再被命中，无需逐条失效（旧条目由容量淘汰）。<br>
+ * 版本号按集合名称在进程内共享，同一集合的多个DAO互相可见
+ */
+public final class CollectionVersions {
+
+    private static final ConcurrentMap<String, AtomicLong> VERSIONS = new ConcurrentHashMap<String, AtomicLong>();
+
+    private CollectionVersions() {
+    }
+
+    /**
+     * 获取集合当前版本号
+     *
+     * @param collectionName 集合名称
+     * @return 版本号
+     */
+    public static long current(String collectionName) {
+        return counter(collectionName).get();
+    }
+
+    /**
+     * 递增集合版本号，集合被写入后调用
+     *
+     * @param collectionName 集合名称
+     * @return 新的版本号
+     */
+    public static long bump(String collectionName) {
+        return counter(collectionName).incrementAndGet();
+    }
+
+    private static AtomicLong counter(String collectionName) {
+        AtomicLong counter = VERSIONS.get(collectionName);
+        if (counter == null) {
+            AtomicLong created = new AtomicLong();
+            counter = VERSIONS.putIfAbsent(collectionName, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.sd.lawyer.dao;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * DAO内部使用的线程池
+ * ClassName: DaoExecutors
+ * Description:批量删除、批量写入等按块并行的操作共用一个线程池，<br>
+ * 每次调用的并发块数由调用方通过信号量另行限制，线程为守护线程，空闲时自动回收；<br>
+ * 异步DAO使用另一个线程数、队列长度都有上限的线程池，队列满时拒绝任务
+ */
+public class DaoExecutors {
+
+    /**
+     * 批量操作线程池
+     */
+    private static volatile ExecutorService bulkExecutor;
+
+    /**
+     * 异步DAO线程池
+     */
+    private static volatile ExecutorService asyncExecutor;
+
+    /**
+     * 异步DAO线程池的队列长度
+     */
+    private static final int ASYNC_QUEUE_CAPACITY = 1000;
+
+    /**
+     * 私有构造
+     */
+    private DaoExecutors() {
+    }
+
+    /**
+     * 获取批量操作线程池
+     *
+     * @return 线程池
+     */
+    public static ExecutorService bulk() {
+        ExecutorService executor = bulkExecutor;
+        if (executor == null) {
+            synchronized (DaoExecutors.class) {
+                executor = bulkExecutor;
+                if (executor == null) {
+                    int size = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
+                    ThreadPoolExecutor pool = new ThreadPoolExecutor(size, size, 60, TimeUnit.SECONDS,
+                            new LinkedBlockingQueue<Runnable>(), daemonThreadFactory("mongo-bulk-"));
+                    pool.allowCoreThreadTimeOut(true);
+                    executor = pool;
+                    bulkExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 获取异步DAO线程池，线程数为CPU核数的4倍（至少8个），队列最多1000个任务，超过时抛出RejectedExecutionException
+     *
+     * @return 线程池
+     */
+    public static ExecutorService async() {
+        ExecutorService executor = asyncExecutor;
+        if (executor == null) {
+            synchronized (DaoExecutors.class) {
+                executor = asyncExecutor;
+                if (executor == null) {
+                    executor = newBoundedExecutor("mongo-async-",
+                            Math.max(8, Runtime.getRuntime().availableProcessors() * 4), ASYNC_QUEUE_CAPACITY);
+                    asyncExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * 创建线程数、队列长度都有上限的线程池，队列满时抛出RejectedExecutionException
+     *
+     * @param prefix        线程名前缀
+     * @param threads       线程数
+     * @param queueCapacity 队列长度
+     * @return 线程池
+     */
+    public static ExecutorService newBoundedExecutor(String prefix, int threads, int queueCapacity) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(queueCapacity), daemonThreadFactory(prefix),
+                new ThreadPoolExecutor.AbortPolicy());
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * 创建守护线程工厂
+     *
+     * @param prefix 线程名前缀
+     * @return 线程工厂
+     */
+    public static ThreadFactory daemonThreadFactory(final String prefix) {
+        final AtomicInteger counter = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, prefix + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+
+}
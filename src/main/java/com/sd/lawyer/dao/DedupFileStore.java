@@ -0,0 +1,296 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import com.mongodb.gridfs.GridFS;
+import com.mongodb.gridfs.GridFSDBFile;
+import com.mongodb.gridfs.GridFSInputFile;
+import com.sd.lawyer.util.EmptyUtils;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 按内容去重的GridFS文件存储
+ * ClassName: DedupFileStore
+ * Description:上传时边写入GridFS边计算SHA-256，相同内容的文件只保留一份（blob，fs.files中metadata.sha256相同），<br>
+ * 每次上传在fs.aliases中生成一条别名记录（文件名、类型、元数据），blob的metadata.refCount记录引用它的别名数。<br>
+ * 内容重复时删除刚写入的分块并引用已有的blob（节省存储，写入IO仍按分块发生）；<br>
+ * 删除别名只减少引用数，引用数为0的blob由后台任务回收。<br>
+ * 并发上传相同内容时以主键最小的blob为准，引用数的增加与回收都是带条件的原子操作，不会引用已回收的blob
+ */
+public class DedupFileStore {
+
+    private static Logger logger = LoggerFactory.getLogger(DedupFileStore.class);
+
+    /**
+     * 别名集合
+     */
+    public static final String ALIASES_COLLECTION = GridFS.DEFAULT_BUCKET + ".aliases";
+
+    static final String SHA256_FIELD = "metadata.sha256";
+    static final String REF_COUNT_FIELD = "metadata.refCount";
+
+    private final GridFS gridFS;
+    private final DBCollection files;
+    private final DBCollection aliases;
+    private final int chunkSize;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder uploads = new LongAdder();
+    private final LongAdder duplicates = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+    private final LongAdder collected = new LongAdder();
+
+    /**
+     * @param db                数据库
+     * @param chunkSize         分块大小（字节）
+     * @param gcIntervalSeconds 回收无引用blob的间隔（秒），不大于0时不启动后台回收
+     */
+    public DedupFileStore(DB db, int chunkSize, long gcIntervalSeconds) {
+        this.gridFS = new GridFS(db);
+        this.files = db.getCollection(GridFS.DEFAULT_BUCKET + ".files");
+        this.aliases = db.getCollection(ALIASES_COLLECTION);
+        this.chunkSize = chunkSize;
+        this.files.createIndex(new BasicDBObject(SHA256_FIELD, 1));
+        this.files.createIndex(new BasicDBObject(REF_COUNT_FIELD, 1), new BasicDBObject("sparse", true));
+        if (gcIntervalSeconds > 0) {
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(DaoExecutors.daemonThreadFactory("gridfs-dedup-gc-"));
+            this.scheduler.scheduleWithFixedDelay(this::collectQuietly, gcIntervalSeconds, gcIntervalSeconds, TimeUnit.SECONDS);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * 保存文件，内容与已有文件相同时只记录别名
+     *
+     * @param input       输入流，保存完成后关闭
+     * @param fileName    文件名
+     * @param contentType 文件类型，可为null
+     * @param metadata    元数据，可为null
+     * @return 别名ID，用于读取及删除
+     */
+    public Object save(InputStream input, String fileName, String contentType, Map<String, ?> metadata) {
+        uploads.increment();
+        MessageDigest digest = DigestUtils.getSha256Digest();
+        GridFSInputFile blob = gridFS.createFile(new DigestInputStream(input, digest), fileName, true);
+        if (EmptyUtils.isNotEmpty(contentType)) {
+            blob.setContentType(contentType);
+        }
+        // 先以引用数1写入，摘要在写完分块后才能得到
+        blob.setMetaData(new BasicDBObject("refCount", 1));
+        try {
+            blob.save(chunkSize);
+        } catch (RuntimeException e) {
+            try {
+                input.close();
+            } catch (IOException ignored) {//NOSONAR
+                // 关闭失败不影响原异常
+            }
+            throw e;
+        }
+        String sha256 = Hex.encodeHexString(digest.digest());
+        ObjectId blobId = (ObjectId) blob.getId();
+        files.update(new BasicDBObject("_id", blobId), new BasicDBObject("$set", new BasicDBObject(SHA256_FIELD, sha256)));
+
+        ObjectId target = deduplicate(blobId, sha256, blob.getLength());
+
+        BasicDBObject alias = new BasicDBObject("_id", new ObjectId())
+                .append("blobId", target)
+                .append("filename", fileName)
+                .append("contentType", contentType)
+                .append("length", blob.getLength())
+                .append("sha256", sha256)
+                .append("uploadDate", new Date());
+        if (metadata != null && !metadata.isEmpty()) {
+            alias.append("metadata", new BasicDBObject(metadata));
+        }
+        try {
+            aliases.insert(alias);
+        } catch (RuntimeException e) {
+            release(target);
+            throw e;
+        }
+        return alias.get("_id");
+    }
+
+    /**
+     * 查找内容相同的已有blob，存在时引用它并删除刚写入的blob
+     *
+     * @return 别名引用的blob主键
+     */
+    private ObjectId deduplicate(ObjectId blobId, String sha256, long length) {
+        DBObject existing = null;
+        try (DBCursor cursor = files.find(new BasicDBObject(SHA256_FIELD, sha256).append("length", length),
+                new BasicDBObject("_id", 1)).sort(new BasicDBObject("_id", 1)).limit(1)) {
+            if (cursor.hasNext()) {
+                existing = cursor.next();
+            }
+        }
+        if (existing == null || blobId.equals(existing.get("_id"))) {
+            return blobId;
+        }
+        ObjectId existingId = (ObjectId) existing.get("_id");
+        // 已有blob可能恰好被回收，更新不到时保留刚写入的blob
+        WriteResult result = files.update(new BasicDBObject("_id", existingId),
+                new BasicDBObject("$inc", new BasicDBObject(REF_COUNT_FIELD, 1)));
+        if (result.getN() == 0) {
+            return blobId;
+        }
+        gridFS.remove(blobId);
+        duplicates.increment();
+        bytesSaved.add(length);
+        return existingId;
+    }
+
+    /**
+     * 按别名读取文件，返回的文件对象中文件名、类型为别名的值
+     *
+     * @param aliasId 别名ID
+     * @return 文件 或 null
+     */
+    public GridFSDBFile find(Object aliasId) {
+        DBObject alias = aliases.findOne(new BasicDBObject("_id", toObjectId(aliasId)));
+        if (alias == null) {
+            return null;
+        }
+        GridFSDBFile file = gridFS.findOne(new BasicDBObject("_id", alias.get("blobId")));
+        if (file != null) {
+            // 只修改内存中的对象，不保存
+            file.put("filename", alias.get("filename"));
+            if (alias.get("contentType") != null) {
+                file.put("contentType", alias.get("contentType"));
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 删除别名，blob的引用数减1，引用数为0的blob由回收任务删除
+     *
+     * @param aliasId 别名ID
+     * @return 是否删除了别名
+     */
+    public boolean delete(Object aliasId) {
+        DBObject alias = aliases.findAndRemove(new BasicDBObject("_id", toObjectId(aliasId)));
+        if (alias == null) {
+            return false;
+        }
+        release((ObjectId) alias.get("blobId"));
+        return true;
+    }
+
+    private void release(ObjectId blobId) {
+        files.update(new BasicDBObject("_id", blobId), new BasicDBObject("$inc", new BasicDBObject(REF_COUNT_FIELD, -1)));
+    }
+
+    /**
+     * 回收引用数为0的blob：先带条件删除文件记录（此时引用数仍为0才删除），再删除分块
+     *
+     * @return 回收的blob数
+     */
+    public int collectOrphans() {
+        List<Object> orphans = new ArrayList<Object>();
+        try (DBCursor cursor = files.find(new BasicDBObject(REF_COUNT_FIELD, new BasicDBObject("$lte", 0)),
+                new BasicDBObject("_id", 1))) {
+            while (cursor.hasNext()) {
+                orphans.add(cursor.next().get("_id"));
+            }
+        }
+        int count = 0;
+        DBCollection chunks = files.getDB().getCollection(GridFS.DEFAULT_BUCKET + ".chunks");
+        for (Object id : orphans) {
+            WriteResult result = files.remove(new BasicDBObject("_id", id)
+                    .append(REF_COUNT_FIELD, new BasicDBObject("$lte", 0)));
+            if (result.getN() > 0) {
+                chunks.remove(new BasicDBObject("files_id", id));
+                count++;
+            }
+        }
+        collected.add(count);
+        return count;
+    }
+
+    private void collectQuietly() {
+        try {
+            int count = collectOrphans();
+            if (count > 0) {
+                logger.info("回收无引用的GridFS文件" + count + "个");
+            }
+        } catch (RuntimeException e) {
+            logger.error("回收无引用的GridFS文件失败", e);
+        }
+    }
+
+    /**
+     * 停止后台回收
+     */
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private static Object toObjectId(Object id) {
+        return id instanceof String && ObjectId.isValid((String) id) ? new ObjectId((String) id) : id;
+    }
+
+    /**
+     * 上传次数
+     */
+    public long getUploads() {
+        return uploads.sum();
+    }
+
+    /**
+     * 内容重复（只记录别名）的上传次数
+     */
+    public long getDuplicates() {
+        return duplicates.sum();
+    }
+
+    /**
+     * 去重节省的存储字节数
+     */
+    public long getBytesSaved() {
+        return bytesSaved.sum();
+    }
+
+    /**
+     * 回收的blob数
+     */
+    public long getCollected() {
+        return collected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "DedupFileStore{" +
+                "uploads=" + getUploads() +
+                ", duplicates=" + getDuplicates() +
+                ", bytesSaved=" + getBytesSaved() +
+                ", collected=" + getCollected() +
+                '}';
+    }
+
+}
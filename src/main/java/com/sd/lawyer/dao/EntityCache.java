@@ -0,0 +1,49 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.DBObject;
+
+/**
+ * 实体缓存
+ * ClassName: EntityCache
+ * Description:以主键为键缓存数据库中的原始文档，每次命中时重新转换为实体，<br>
+ * 调用方修改返回的实体不会影响缓存内容。默认实现为{@link CaffeineEntityCache}，<br>
+ * 可在DAO中重写createEntityCache替换为其他实现
+ */
+public interface EntityCache {
+
+    /**
+     * 读取缓存
+     *
+     * @param id 主键
+     * @return 文档 或 null
+     */
+    DBObject get(Object id);
+
+    /**
+     * 写入缓存
+     *
+     * @param id       主键
+     * @param document 文档
+     */
+    void put(Object id, DBObject document);
+
+    /**
+     * 使指定主键的缓存失效
+     *
+     * @param id 主键
+     */
+    void invalidate(Object id);
+
+    /**
+     * 使全部缓存失效
+     */
+    void invalidateAll();
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息
+     */
+    CacheStatistics stats();
+
+}
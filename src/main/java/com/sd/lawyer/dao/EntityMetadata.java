@@ -0,0 +1,309 @@
+package com.sd.lawyer.dao;
+
+import com.sd.lawyer.util.ReflectionUtils;
+import org.apache.commons.lang.StringUtils;
+import org.bson.types.ObjectId;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+
+/**
+ * 实体元数据
+ * ClassName: EntityMetadata
+ * Description:在DAO初始化时对实体类解析一次，记录集合名称、主键属性及需要持久化的属性，<br>
+ * 属性读取使用LambdaMetafactory生成的访问器，update等写操作的热路径上不再有反射查找。<br>
+ * 实例不可变，可在多线程间共享，通过{@link EntityMetadataRegistry}获取
+ */
+public final class EntityMetadata<T> {
+
+    /**
+     * 实体类
+     */
+    private final Class<T> entityClass;
+    /**
+     * 集合名称
+     */
+    private final String collectionName;
+    /**
+     * 主键属性，实体没有@Id注解字段时为null
+     */
+    private final Property idProperty;
+    /**
+     * 需要持久化的属性（不含主键及@Transient字段）
+     */
+    private final List<Property> properties;
+
+    private EntityMetadata(Class<T> entityClass, String collectionName, Property idProperty, List<Property> properties) {
+        this.entityClass = entityClass;
+        this.collectionName = collectionName;
+        this.idProperty = idProperty;
+        this.properties = Collections.unmodifiableList(properties);
+    }
+
+    /**
+     * 解析实体类
+     *
+     * @param entityClass    实体类
+     * @param collectionName 集合名称
+     * @return 实体元数据
+     */
+    static <T> EntityMetadata<T> build(Class<T> entityClass, String collectionName) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        Property idProperty = null;
+        Map<String, Property> properties = new LinkedHashMap<String, Property>();
+        // 子类字段优先，父类中同名字段忽略
+        for (Class<?> clazz = entityClass; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (Modifier.isStatic(field.getModifiers()) || properties.containsKey(field.getName())
+                        || field.isAnnotationPresent(Transient.class)) {
+                    continue;
+                }
+                if (field.isAnnotationPresent(Id.class)) {
+                    if (idProperty == null) {
+                        idProperty = new Property(field.getName(), field.getType(), fieldAccessor(lookup, field),
+                                Modifier.isFinal(field.getModifiers()) ? null : fieldMutator(lookup, field));
+                    }
+                    continue;
+                }
+                Method getter = findGetter(entityClass, field);
+                if (getter != null) {
+                    properties.put(field.getName(), new Property(field.getName(), field.getType(), getterAccessor(lookup, getter), null));
+                }
+            }
+        }
+        return new EntityMetadata<T>(entityClass, collectionName, idProperty, new ArrayList<Property>(properties.values()));
+    }
+
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+
+    public String getCollectionName() {
+        return collectionName;
+    }
+
+    public Property getIdProperty() {
+        return idProperty;
+    }
+
+    public List<Property> getProperties() {
+        return properties;
+    }
+
+    /**
+     * 读取实体的主键值，字符串形式的ObjectId会转换为ObjectId
+     *
+     * @param entity 实体
+     * @return 主键值 或 null
+     */
+    public Object getIdValue(T entity) {
+        if (idProperty == null) {
+            return null;
+        }
+        Object id = idProperty.get(entity);
+        if (id instanceof String && ObjectId.isValid((String) id)) {
+            return new ObjectId((String) id);
+        }
+        return id;
+    }
+
+    /**
+     * 为没有主键的实体生成ObjectId主键并回填，主键类型不是String、ObjectId、BigInteger时不处理
+     *
+     * @param entity 实体
+     * @return 主键值（已有主键时返回原值），无法生成时返回null
+     */
+    public Object assignIdIfAbsent(T entity) {
+        if (idProperty == null) {
+            return null;
+        }
+        Object id = idProperty.get(entity);
+        if (id != null || idProperty.mutator == null) {
+            return id;
+        }
+        ObjectId objectId = new ObjectId();
+        Class<?> type = idProperty.getType();
+        if (type == String.class) {
+            id = objectId.toString();
+        } else if (type == ObjectId.class) {
+            id = objectId;
+        } else if (type == BigInteger.class) {
+            id = new BigInteger(objectId.toString(), 16);
+        } else {
+            return null;
+        }
+        idProperty.set(entity, id);
+        return id;
+    }
+
+    /**
+     * 查找字段对应的public getter（getXxx或isXxx）
+     */
+    private static Method findGetter(Class<?> entityClass, Field field) {
+        String suffix = StringUtils.capitalize(field.getName());
+        for (String prefix : new String[]{"get", "is"}) {
+            try {
+                Method method = entityClass.getMethod(prefix + suffix);
+                if (method.getReturnType() != void.class && !Modifier.isStatic(method.getModifiers())) {
+                    return method;
+                }
+            } catch (NoSuchMethodException e) {//NOSONAR
+                // 没有该前缀的getter,继续查找
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 为getter生成访问器，优先使用LambdaMetafactory生成的函数，无法生成时退回MethodHandle
+     */
+    private static Function<Object, Object> getterAccessor(MethodHandles.Lookup lookup, Method getter) {
+        try {
+            MethodHandle handle = lookup.unreflect(getter);
+            try {
+                CallSite site = LambdaMetafactory.metafactory(lookup, "apply",
+                        MethodType.methodType(Function.class),
+                        MethodType.methodType(Object.class, Object.class),
+                        handle,
+                        handle.type().wrap());
+                @SuppressWarnings("unchecked")
+                Function<Object, Object> function = (Function<Object, Object>) site.getTarget().invokeExact();
+                return function;
+            } catch (Throwable e) {
+                return handleAccessor(handle);
+            }
+        } catch (IllegalAccessException e) {
+            throw ReflectionUtils.convertReflectionExceptionToUnchecked(e);
+        }
+    }
+
+    /**
+     * 为字段生成访问器（主键字段不要求有getter）
+     */
+    private static Function<Object, Object> fieldAccessor(MethodHandles.Lookup lookup, Field field) {
+        field.setAccessible(true);
+        try {
+            return handleAccessor(lookup.unreflectGetter(field));
+        } catch (IllegalAccessException e) {
+            throw ReflectionUtils.convertReflectionExceptionToUnchecked(e);
+        }
+    }
+
+    /**
+     * 为字段生成赋值器，用于回填主键
+     */
+    private static BiConsumer<Object, Object> fieldMutator(MethodHandles.Lookup lookup, Field field) {
+        field.setAccessible(true);
+        try {
+            final MethodHandle handle = lookup.unreflectSetter(field)
+                    .asType(MethodType.methodType(void.class, Object.class, Object.class));
+            return new BiConsumer<Object, Object>() {
+                @Override
+                public void accept(Object target, Object value) {
+                    try {
+                        handle.invokeExact(target, value);
+                    } catch (RuntimeException e) {
+                        throw e;
+                    } catch (Throwable e) {
+                        throw new RuntimeException("Reflection Exception.", e);
+                    }
+                }
+            };
+        } catch (IllegalAccessException e) {
+            throw ReflectionUtils.convertReflectionExceptionToUnchecked(e);
+        }
+    }
+
+    private static Function<Object, Object> handleAccessor(MethodHandle handle) {
+        final MethodHandle generic = handle.asType(MethodType.methodType(Object.class, Object.class));
+        return new Function<Object, Object>() {
+            @Override
+            public Object apply(Object target) {
+                try {
+                    return generic.invokeExact(target);
+                } catch (RuntimeException e) {
+                    throw e;
+                } catch (Throwable e) {
+                    throw new RuntimeException("Reflection Exception.", e);
+                }
+            }
+        };
+    }
+
+    /**
+     * 实体属性
+     */
+    public static final class Property {
+        /**
+         * 属性名称
+         */
+        private final String name;
+        /**
+         * 属性类型
+         */
+        private final Class<?> type;
+        /**
+         * 属性访问器
+         */
+        private final Function<Object, Object> accessor;
+        /**
+         * 属性赋值器，目前仅主键属性有
+         */
+        private final BiConsumer<Object, Object> mutator;
+
+        private Property(String name, Class<?> type, Function<Object, Object> accessor, BiConsumer<Object, Object> mutator) {
+            this.name = name;
+            this.type = type;
+            this.accessor = accessor;
+            this.mutator = mutator;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public Class<?> getType() {
+            return type;
+        }
+
+        /**
+         * 读取属性值
+         *
+         * @param entity 实体
+         * @return 属性值
+         */
+        public Object get(Object entity) {
+            return accessor.apply(entity);
+        }
+
+        /**
+         * 设置属性值
+         *
+         * @param entity 实体
+         * @param value  属性值
+         */
+        public void set(Object entity, Object value) {
+            if (mutator == null) {
+                throw new UnsupportedOperationException("属性[" + name + "]不支持赋值");
+            }
+            mutator.accept(entity, value);
+        }
+    }
+
+}
@@ -0,0 +1,55 @@
+package com.sd.lawyer.dao;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 实体元数据注册表
+ * ClassName: EntityMetadataRegistry
+ * Description:每个实体类只解析一次，由各DAO在初始化时注册，之后所有DAO调用共享同一份元数据
+ */
+public class EntityMetadataRegistry {
+
+    /**
+     * 已注册的实体元数据
+     */
+    private static final ConcurrentMap<Class<?>, EntityMetadata<?>> METADATA = new ConcurrentHashMap<Class<?>, EntityMetadata<?>>();
+
+    /**
+     * 私有构造
+     */
+    private EntityMetadataRegistry() {
+    }
+
+    /**
+     * 获取实体元数据，未注册时解析并注册
+     *
+     * @param entityClass    实体类
+     * @param collectionName 集合名称
+     * @return 实体元数据
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMetadata<T> register(Class<T> entityClass, String collectionName) {
+        EntityMetadata<?> metadata = METADATA.get(entityClass);
+        if (metadata == null) {
+            EntityMetadata<T> built = EntityMetadata.build(entityClass, collectionName);
+            metadata = METADATA.putIfAbsent(entityClass, built);
+            if (metadata == null) {
+                metadata = built;
+            }
+        }
+        return (EntityMetadata<T>) metadata;
+    }
+
+    /**
+     * 获取已注册的实体元数据
+     *
+     * @param entityClass 实体类
+     * @return 实体元数据 或 null
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> EntityMetadata<T> get(Class<T> entityClass) {
+        return (EntityMetadata<T>) METADATA.get(entityClass);
+    }
+
+}
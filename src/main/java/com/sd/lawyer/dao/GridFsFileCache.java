@@ -0,0 +1,465 @@
+package com.sd.lawyer.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.mongodb.gridfs.GridFSDBFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Date;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Stream;
+
+/**
+ * GridFS文件本地缓存
+ * ClassName: GridFsFileCache
+ * Description:两级缓存：小文件整体放在堆外内存（direct ByteBuffer），较大的文件保存在本地磁盘并以内存映射方式读取，<br>
+ * 两级均按总字节数限制容量，由Caffeine按访问频率及时间（W-TinyLFU）淘汰。<br>
+ * 条目按引用计数管理，淘汰后等正在进行的读取结束即释放堆外内存、解除映射并删除磁盘文件，不等待GC，<br>
+ * 因此实际占用不超过容量加上正在读取的已淘汰条目（JVM不支持主动释放时退回由GC回收，需按容量设置-XX:MaxDirectMemorySize）。<br>
+ * 每次读取都与GridFS中的MD5、上传时间比较，不一致时作废；未命中时由调用方直接从GridFS读取，<br>
+ * 同时在后台把整个文件加载到缓存，同一文件同时只加载一次，首次请求的延迟不受影响
+ */
+public class GridFsFileCache {
+
+    private static Logger logger = LoggerFactory.getLogger(GridFsFileCache.class);
+
+    /**
+     * 主动释放direct、mapped缓冲区的方法，JVM不支持时为null（由GC回收）
+     */
+    private static final BufferReleaser RELEASER = BufferReleaser.create();
+
+    /**
+     * 从GridFS读取文件的全部内容
+     */
+    @FunctionalInterface
+    public interface Loader {
+        void load(GridFSDBFile file, OutputStream out) throws IOException;
+    }
+
+    private final Cache<Object, Entry> memory;
+    private final Cache<Object, Entry> disk;
+    private final long memoryFileMaxBytes;
+    private final long diskFileMaxBytes;
+    private final Path directory;
+    private final Loader loader;
+    private final Executor executor;
+
+    /**
+     * 正在加载的文件
+     */
+    private final Set<Object> loading = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder memoryHits = new LongAdder();
+    private final LongAdder diskHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder stale = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+    private final LongAdder loadFailures = new LongAdder();
+    private final LongAdder bytesServed = new LongAdder();
+
+    /**
+     * @param memoryMaxBytes     堆外内存层的总字节数
+     * @param memoryFileMaxBytes 不超过该大小的文件放在内存层
+     * @param diskMaxBytes       磁盘层的总字节数，不大于0表示不使用磁盘层
+     * @param diskFileMaxBytes   超过该大小的文件不缓存
+     * @param directory          磁盘层目录，启动时清空其中的缓存文件
+     * @param loader             从GridFS读取文件
+     * @param executor           后台加载线程池
+     */
+    public GridFsFileCache(long memoryMaxBytes, long memoryFileMaxBytes, long diskMaxBytes, long diskFileMaxBytes,
+                           Path directory, Loader loader, Executor executor) throws IOException {
+        this.memoryFileMaxBytes = memoryMaxBytes > 0 ? memoryFileMaxBytes : 0;
+        // 单个映射缓冲区最大2GB
+        this.diskFileMaxBytes = diskMaxBytes > 0 ? Math.min(diskFileMaxBytes, Integer.MAX_VALUE) : 0;
+        this.directory = directory;
+        this.loader = loader;
+        this.executor = executor;
+        this.memory = Caffeine.newBuilder()
+                .maximumWeight(Math.max(memoryMaxBytes, 0))
+                .weigher((Object key, Entry entry) -> weight(entry.length))
+                .removalListener(GridFsFileCache::onRemoval)
+                .executor(Runnable::run)
+                .build();
+        this.disk = Caffeine.newBuilder()
+                .maximumWeight(Math.max(diskMaxBytes, 0))
+                .weigher((Object key, Entry entry) -> weight(entry.length))
+                .removalListener(GridFsFileCache::onRemoval)
+                .executor(Runnable::run)
+                .build();
+        if (this.diskFileMaxBytes > 0) {
+            Files.createDirectories(directory);
+            try (Stream<Path> files = Files.list(directory)) {
+                files.filter(path -> path.getFileName().toString().endsWith(Entry.SUFFIX)).forEach(Entry::deleteQuietly);
+            }
+        }
+    }
+
+    /**
+     * 条目移出缓存（淘汰、替换、作废）时释放缓存持有的引用
+     */
+    private static void onRemoval(Object key, Entry entry, RemovalCause cause) {
+        if (entry != null) {
+            entry.release();
+        }
+    }
+
+    private static int weight(long length) {
+        return (int) Math.min(Math.max(length, 1), Integer.MAX_VALUE);
+    }
+
+    /**
+     * 从缓存写出文件的指定范围，未命中时在后台加载文件并返回false，由调用方从GridFS读取
+     *
+     * @param file  文件（用于校验MD5、上传时间）
+     * @param start 起始位置（含）
+     * @param end   结束位置（含）
+     * @param out   输出流
+     * @return 是否由缓存写出
+     * @throws IOException 写入输出流失败
+     */
+    public boolean write(GridFSDBFile file, long start, long end, OutputStream out) throws IOException {
+        long length = file.getLength();
+        if (length > Math.max(memoryFileMaxBytes, diskFileMaxBytes)) {
+            return false;
+        }
+        Object key = file.getId();
+        boolean inMemory = length <= memoryFileMaxBytes;
+        Cache<Object, Entry> tier = inMemory ? memory : disk;
+        Entry entry = tier.getIfPresent(key);
+        if (entry != null && !entry.matches(file)) {
+            stale.increment();
+            tier.invalidate(key);
+            entry = null;
+        }
+        // 读取期间持有引用，条目同时被淘汰时等本次读取结束再释放缓冲区
+        if (entry == null || !entry.retain()) {
+            misses.increment();
+            scheduleLoad(file, inMemory);
+            return false;
+        }
+        try {
+            (inMemory ? memoryHits : diskHits).increment();
+            writeTo(entry.buffer, start, end, out);
+            bytesServed.add(end - start + 1);
+            return true;
+        } finally {
+            entry.release();
+        }
+    }
+
+    /**
+     * 将缓冲区的指定范围写入输出流，每次复制一小段，不修改共享缓冲区的位置
+     */
+    private static void writeTo(ByteBuffer buffer, long start, long end, OutputStream out) throws IOException {
+        ByteBuffer view = buffer.duplicate();
+        view.limit((int) end + 1).position((int) start);
+        byte[] copy = new byte[Math.min(view.remaining(), 64 * 1024)];
+        while (view.hasRemaining()) {
+            int n = Math.min(copy.length, view.remaining());
+            view.get(copy, 0, n);
+            out.write(copy, 0, n);
+        }
+    }
+
+    private void scheduleLoad(GridFSDBFile file, boolean inMemory) {
+        Object key = file.getId();
+        if (!loading.add(key)) {
+            return;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    load(file, inMemory);
+                } catch (IOException | RuntimeException e) {
+                    loadFailures.increment();
+                    logger.warn("加载GridFS文件[" + key + "]到本地缓存失败", e);
+                } finally {
+                    loading.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 加载任务已满，本次不缓存
+            loading.remove(key);
+        }
+    }
+
+    private void load(GridFSDBFile file, boolean inMemory) throws IOException {
+        long length = file.getLength();
+        if (inMemory) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) length);
+            try {
+                loader.load(file, new OutputStream() {
+                    @Override
+                    public void write(int b) {
+                        buffer.put((byte) b);
+                    }
+
+                    @Override
+                    public void write(byte[] b, int off, int len) {
+                        buffer.put(b, off, len);
+                    }
+                });
+            } catch (IOException | RuntimeException e) {
+                free(buffer);
+                throw e;
+            }
+            buffer.flip();
+            memory.put(file.getId(), new Entry(file, buffer, null));
+        } else {
+            // 每次加载使用新文件，替换旧条目时删除旧文件不会影响新文件
+            Path path = Files.createTempFile(directory, Entry.filePrefix(file.getId()), Entry.SUFFIX);
+            try {
+                try (OutputStream out = Files.newOutputStream(path)) {
+                    loader.load(file, out);
+                }
+                MappedByteBuffer buffer;
+                try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                    buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                }
+                disk.put(file.getId(), new Entry(file, buffer, path));
+            } catch (IOException | RuntimeException e) {
+                Entry.deleteQuietly(path);
+                throw e;
+            }
+        }
+        loads.increment();
+    }
+
+    /**
+     * 立即释放direct、mapped缓冲区，JVM不支持时留给GC回收
+     */
+    private static void free(ByteBuffer buffer) {
+        if (RELEASER != null && buffer.isDirect()) {
+            RELEASER.release(buffer);
+        }
+    }
+
+    /**
+     * 使指定文件的缓存失效
+     *
+     * @param id 文件ID
+     */
+    public void invalidate(Object id) {
+        memory.invalidate(id);
+        disk.invalidate(id);
+    }
+
+    /**
+     * 清空缓存
+     */
+    public void invalidateAll() {
+        memory.invalidateAll();
+        disk.invalidateAll();
+    }
+
+    public long getMemoryHits() {
+        return memoryHits.sum();
+    }
+
+    public long getDiskHits() {
+        return diskHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * 因MD5或上传时间不一致而作废的次数
+     */
+    public long getStale() {
+        return stale.sum();
+    }
+
+    public long getLoads() {
+        return loads.sum();
+    }
+
+    public long getLoadFailures() {
+        return loadFailures.sum();
+    }
+
+    /**
+     * 由缓存写出的字节数
+     */
+    public long getBytesServed() {
+        return bytesServed.sum();
+    }
+
+    /**
+     * 内存层当前占用的字节数
+     */
+    public long getMemoryBytes() {
+        return memory.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    /**
+     * 磁盘层当前占用的字节数
+     */
+    public long getDiskBytes() {
+        return disk.policy().eviction().map(eviction -> eviction.weightedSize().orElse(0L)).orElse(0L);
+    }
+
+    @Override
+    public String toString() {
+        return "GridFsFileCache{" +
+                "memoryHits=" + getMemoryHits() +
+                ", diskHits=" + getDiskHits() +
+                ", misses=" + getMisses() +
+                ", stale=" + getStale() +
+                ", loads=" + getLoads() +
+                ", loadFailures=" + getLoadFailures() +
+                ", bytesServed=" + getBytesServed() +
+                ", memoryBytes=" + getMemoryBytes() +
+                ", diskBytes=" + getDiskBytes() +
+                '}';
+    }
+
+    /**
+     * 缓存的文件内容
+     */
+    private static final class Entry {
+
+        private static final String SUFFIX = ".cache";
+
+        private final String md5;
+        private final Date uploadDate;
+        private final long length;
+        /**
+         * 文件内容，读取时使用duplicate，不修改位置
+         */
+        private final ByteBuffer buffer;
+        /**
+         * 磁盘层的文件，内存层为null
+         */
+        private final Path path;
+        /**
+         * 引用计数：缓存持有1个，每个正在进行的读取持有1个，归零时释放缓冲区
+         */
+        private final AtomicInteger references = new AtomicInteger(1);
+
+        private Entry(GridFSDBFile file, ByteBuffer buffer, Path path) {
+            this.md5 = file.getMD5();
+            this.uploadDate = file.getUploadDate();
+            this.length = file.getLength();
+            this.buffer = buffer;
+            this.path = path;
+        }
+
+        private boolean matches(GridFSDBFile file) {
+            return length == file.getLength() && Objects.equals(md5, file.getMD5())
+                    && Objects.equals(uploadDate, file.getUploadDate());
+        }
+
+        /**
+         * 增加引用，条目已释放时返回false
+         */
+        private boolean retain() {
+            for (;;) {
+                int count = references.get();
+                if (count <= 0) {
+                    return false;
+                }
+                if (references.compareAndSet(count, count + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        /**
+         * 减少引用，归零时释放缓冲区并删除磁盘文件
+         */
+        private void release() {
+            if (references.decrementAndGet() == 0) {
+                free(buffer);
+                if (path != null) {
+                    deleteQuietly(path);
+                }
+            }
+        }
+
+        private static String filePrefix(Object id) {
+            return String.valueOf(id).replaceAll("[^A-Za-z0-9_-]", "_") + "-";
+        }
+
+        private static void deleteQuietly(Path path) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException e) {//NOSONAR
+                // 删除失败（如Windows下文件仍被映射）时留到下次启动清理
+            }
+        }
+    }
+
+    /**
+     * 主动释放direct、mapped缓冲区：Java 9及以上使用Unsafe.invokeCleaner，Java 8使用DirectBuffer.cleaner()
+     */
+    private static final class BufferReleaser {
+
+        private final Object unsafe;
+        private final Method invokeCleaner;
+        private final Method cleaner;
+        private final Method clean;
+
+        private BufferReleaser(Object unsafe, Method invokeCleaner, Method cleaner, Method clean) {
+            this.unsafe = unsafe;
+            this.invokeCleaner = invokeCleaner;
+            this.cleaner = cleaner;
+            this.clean = clean;
+        }
+
+        private static BufferReleaser create() {
+            try {
+                Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+                Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+                Field field = unsafeClass.getDeclaredField("theUnsafe");
+                field.setAccessible(true);
+                return new BufferReleaser(field.get(null), invokeCleaner, null, null);
+            } catch (ReflectiveOperationException | RuntimeException e) {//NOSONAR
+                // Java 8没有invokeCleaner
+            }
+            try {
+                Method cleaner = Class.forName("sun.nio.ch.DirectBuffer").getMethod("cleaner");
+                Method clean = Class.forName("sun.misc.Cleaner").getMethod("clean");
+                return new BufferReleaser(null, null, cleaner, clean);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.warn("当前JVM不支持主动释放堆外缓冲区，GridFS文件缓存的内存由GC回收");
+                return null;
+            }
+        }
+
+        private void release(ByteBuffer buffer) {
+            try {
+                if (invokeCleaner != null) {
+                    invokeCleaner.invoke(unsafe, buffer);
+                } else {
+                    Object bufferCleaner = cleaner.invoke(buffer);
+                    if (bufferCleaner != null) {
+                        clean.invoke(bufferCleaner);
+                    }
+                }
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                logger.warn("释放堆外缓冲区失败，留给GC回收：" + e);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,236 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.sd.lawyer.util.EmptyUtils;
+import org.apache.commons.codec.binary.Base64;
+import org.bson.BSONObject;
+import org.bson.BasicBSONDecoder;
+import org.bson.BasicBSONEncoder;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * 键集分页（seek）游标
+ * ClassName: KeysetCursor
+ * Description:记录某一行的排序字段值及_id，翻页时将排序规则转换为范围条件，<br>
+ * 使第N页与第1页的查询代价相同，避免skip逐条跳过文档。<br>
+ * 游标以BSON编码后再做URL安全的Base64处理，对客户端而言是不透明的字符串。<br>
+ * 注意：排序字段的值为null时范围比较不可靠，请尽量选择非空字段排序
+ */
+public class KeysetCursor {
+
+    /**
+     * 主键字段
+     */
+    public static final String ID_FIELD = "_id";
+
+    /**
+     * 编码键：排序字段
+     */
+    private static final String KEY_FIELDS = "f";
+    /**
+     * 编码键：排序字段值
+     */
+    private static final String KEY_VALUES = "v";
+    /**
+     * 编码键：翻页方向
+     */
+    private static final String KEY_FORWARD = "n";
+
+    /**
+     * 排序字段（已追加_id）
+     */
+    private final List<String> fields;
+    /**
+     * 与排序字段一一对应的值
+     */
+    private final List<Object> values;
+    /**
+     * true：向后翻页（下一页），false：向前翻页（上一页）
+     */
+    private final boolean forward;
+
+    private KeysetCursor(List<String> fields, List<Object> values, boolean forward) {
+        this.fields = fields;
+        this.values = values;
+        this.forward = forward;
+    }
+
+    public boolean isForward() {
+        return forward;
+    }
+
+    /**
+     * 为排序规则追加_id作为唯一的次级排序，保证游标位置确定
+     *
+     * @param orders 排序规则，可为空
+     * @return 以_id结尾的排序规则
+     */
+    public static List<Order> withIdTiebreaker(List<Order> orders) {
+        List<Order> list = new ArrayList<Order>();
+        Direction direction = Direction.ASC;
+        if (EmptyUtils.isNotEmpty(orders)) {
+            for (Order order : orders) {
+                if (ID_FIELD.equals(order.getProperty())) {
+                    list.add(order);
+                    return list;
+                }
+                list.add(order);
+                direction = order.getDirection();
+            }
+        }
+        list.add(new Order(direction, ID_FIELD));
+        return list;
+    }
+
+    /**
+     * 将排序规则整体反向，用于向前翻页
+     *
+     * @param orders 排序规则
+     * @return 反向后的排序规则
+     */
+    public static List<Order> reverse(List<Order> orders) {
+        List<Order> list = new ArrayList<Order>(orders.size());
+        for (Order order : orders) {
+            list.add(new Order(order.isAscending() ? Direction.DESC : Direction.ASC, order.getProperty()));
+        }
+        return list;
+    }
+
+    /**
+     * 根据文档生成游标字符串
+     *
+     * @param orders  排序规则（已追加_id，字段名为数据库字段名）
+     * @param row     文档
+     * @param forward 翻页方向
+     * @return 游标字符串
+     */
+    public static String encode(List<Order> orders, DBObject row, boolean forward) {
+        BasicDBList fieldList = new BasicDBList();
+        BasicDBList valueList = new BasicDBList();
+        for (Order order : orders) {
+            fieldList.add(order.getProperty());
+            valueList.add(valueOf(row, order.getProperty()));
+        }
+        BasicDBObject token = new BasicDBObject(KEY_FIELDS, fieldList)
+                .append(KEY_VALUES, valueList)
+                .append(KEY_FORWARD, forward);
+        return Base64.encodeBase64URLSafeString(new BasicBSONEncoder().encode(token));
+    }
+
+    /**
+     * 解析游标字符串
+     *
+     * @param token  游标字符串，为空表示第一页
+     * @param orders 当前的排序规则（已追加_id），需与生成游标时一致
+     * @return 游标对象 或 null
+     * @throws IllegalArgumentException 游标格式错误或与排序参数不匹配
+     */
+    public static KeysetCursor decode(String token, List<Order> orders) {
+        if (EmptyUtils.isEmpty(token)) {
+            return null;
+        }
+        BSONObject object;
+        try {
+            object = new BasicBSONDecoder().readObject(Base64.decodeBase64(token));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("分页游标解析出错", e);
+        }
+        Object fieldList = object.get(KEY_FIELDS);
+        Object valueList = object.get(KEY_VALUES);
+        if (!(fieldList instanceof List) || !(valueList instanceof List)) {
+            throw new IllegalArgumentException("分页游标格式错误");
+        }
+        List<String> fields = new ArrayList<String>();
+        List<Object> values = new ArrayList<Object>((List<?>) valueList);
+        for (Object value : values) {
+            checkValue(value);
+        }
+        for (Object field : (List<?>) fieldList) {
+            if (!(field instanceof String)) {
+                throw new IllegalArgumentException("分页游标格式错误");
+            }
+            fields.add((String) field);
+        }
+        if (fields.size() != orders.size() || values.size() != fields.size()) {
+            throw new IllegalArgumentException("分页游标与排序参数不匹配");
+        }
+        for (int i = 0; i < orders.size(); i++) {
+            if (!orders.get(i).getProperty().equals(fields.get(i))) {
+                throw new IllegalArgumentException("分页游标与排序参数不匹配");
+            }
+        }
+        return new KeysetCursor(fields, values, Boolean.TRUE.equals(object.get(KEY_FORWARD)));
+    }
+
+    /**
+     * 游标中的值会原样拼入查询条件，拒绝操作符（$开头的键）及正则，避免客户端伪造游标注入查询条件
+     *
+     * @param value 排序字段值
+     * @throws IllegalArgumentException 值中包含操作符或正则
+     */
+    private static void checkValue(Object value) {
+        if (value instanceof Pattern) {
+            throw new IllegalArgumentException("分页游标格式错误");
+        }
+        if (value instanceof BSONObject) {
+            BSONObject object = (BSONObject) value;
+            for (String key : object.keySet()) {
+                if (key.startsWith("$")) {
+                    throw new IllegalArgumentException("分页游标格式错误");
+                }
+                checkValue(object.get(key));
+            }
+        } else if (value instanceof List) {
+            for (Object item : (List<?>) value) {
+                checkValue(item);
+            }
+        }
+    }
+
+    /**
+     * 将排序规则转换为“位于游标之后”的范围条件，形如：<br>
+     * {$or: [{a: {$gt: va}}, {a: va, b: {$gt: vb}}, {a: va, b: vb, _id: {$gt: id}}]}
+     *
+     * @param orders 实际执行的排序规则（向前翻页时为反向后的规则）
+     * @return 条件对象
+     */
+    public DBObject toCriteria(List<Order> orders) {
+        BasicDBList or = new BasicDBList();
+        for (int i = 0; i < orders.size(); i++) {
+            BasicDBObject branch = new BasicDBObject();
+            for (int j = 0; j < i; j++) {
+                branch.append(fields.get(j), values.get(j));
+            }
+            String operator = orders.get(i).isAscending() ? "$gt" : "$lt";
+            branch.append(fields.get(i), new BasicDBObject(operator, values.get(i)));
+            or.add(branch);
+        }
+        return new BasicDBObject("$or", or);
+    }
+
+    /**
+     * 按字段路径（支持a.b形式）读取文档中的值
+     *
+     * @param row  文档
+     * @param path 字段路径
+     * @return 字段值 或 null
+     */
+    public static Object valueOf(DBObject row, String path) {
+        Object value = row;
+        for (String key : path.split("\\.")) {
+            if (!(value instanceof DBObject)) {
+                return null;
+            }
+            value = ((DBObject) value).get(key);
+        }
+        return value;
+    }
+
+}
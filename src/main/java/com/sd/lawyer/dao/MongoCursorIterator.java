@@ -0,0 +1,88 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
+import org.springframework.data.util.CloseableIterator;
+
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * 服务端游标迭代器
+ * ClassName: MongoCursorIterator
+ * Description:按批次从服务端游标（查询或聚合）读取文档并逐条转换为实体，内存占用与结果集大小无关，<br>
+ * 读取完毕时自动关闭游标，提前结束时必须调用close（或使用try-with-resources）释放服务端游标
+ */
+public class MongoCursorIterator<T> implements CloseableIterator<T> {
+
+    /**
+     * 服务端游标
+     */
+    private final Cursor cursor;
+    /**
+     * 文档转换为实体
+     */
+    private final Function<DBObject, T> reader;
+    /**
+     * 是否已关闭
+     */
+    private boolean closed;
+
+    public MongoCursorIterator(Cursor cursor, Function<DBObject, T> reader) {
+        this.cursor = cursor;
+        this.reader = reader;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (cursor.hasNext()) {
+                return true;
+            }
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+        close();
+        return false;
+    }
+
+    @Override
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return reader.apply(cursor.next());
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            cursor.close();
+        }
+    }
+
+    /**
+     * 转换为Stream，关闭Stream时关闭游标
+     *
+     * @return 顺序流
+     */
+    public Stream<T> stream() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(this, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(this::close);
+    }
+
+}
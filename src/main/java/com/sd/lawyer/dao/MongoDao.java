@@ -1,11 +1,23 @@
 package com.sd.lawyer.dao;
 
+import com.sd.lawyer.beans.BulkInsertResult;
+import com.sd.lawyer.beans.DeleteResult;
+import com.sd.lawyer.beans.DistinctCount;
+import com.sd.lawyer.beans.FindResult;
 import com.sd.lawyer.beans.Page;
+import com.sd.lawyer.beans.UpdateResult;
 import com.sd.lawyer.util.PageModel;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.data.util.CloseableIterator;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * 通用基本操作方法接口
@@ -26,8 +38,25 @@ public interface MongoDao<T> {
      */
     public T save(T entity);
 
+    /**
+     * 批量保存实体
+     * 备注：按块无序写入，单个文档失败不影响其他文档，全部写完后如有失败则抛出异常；需要失败明细时使用batchInsert
+     *
+     * @param entity 实体集合
+     * @return
+     */
     List<T> batchSave(List<T> entity);
 
+    /**
+     * 批量写入实体<br>
+     * 按块从迭代器中读取实体，以无序批量写入的方式并行提交，同时提交的块数有上限，<br>
+     * 超过时暂停读取（背压），因此导入大量数据时不需要把全部实体放在内存中
+     *
+     * @param entities 实体迭代器
+     * @return 写入结果，包含每个失败文档的位置、主键及原因（不会为null）
+     */
+    public BulkInsertResult batchInsert(Iterator<? extends T> entities);
+
     /**
      * 更新文档信息
      *
@@ -36,6 +65,129 @@ public interface MongoDao<T> {
      */
     public T update(T entity);
 
+    /**
+     * 延迟更新文档信息：实体标注@WriteBehind时放入延迟写入缓冲区，与同一主键的其他更新合并后批量写入，<br>
+     * 进程异常退出时尚未写入的更新会丢失；未标注时与update相同
+     *
+     * @param entity 实体类
+     * @return 实体本身
+     */
+    public T updateLater(T entity);
+
+    /**
+     * 延迟执行更新：实体标注@WriteBehind时放入延迟写入缓冲区，与同一主键的其他更新合并后批量写入，<br>
+     * 适用于浏览次数（$inc）、最后访问时间（$set/$max）等高频更新；未标注时立即执行
+     *
+     * @param id     主键
+     * @param update 更新，只支持$set、$unset、$inc、$max、$min
+     */
+    public void updateLater(Serializable id, Update update);
+
+    /**
+     * 立即写入延迟写入缓冲区中的全部更新
+     *
+     * @return 写入的主键数，未开启延迟写入时返回0
+     */
+    public int flushWrites();
+
+    /**
+     * 原子递增字段（$inc），不存在的字段从0开始
+     *
+     * @param id    实体ID
+     * @param field 属性名称
+     * @param delta 增量，可为负数
+     * @return 更新后的实体 或 null（文档不存在）
+     */
+    public T increment(Serializable id, String field, Number delta);
+
+    /**
+     * 向数组字段末尾追加元素（$push $each），不存在的字段创建为数组
+     *
+     * @param id     实体ID
+     * @param field  属性名称
+     * @param values 元素
+     * @return 更新结果
+     */
+    public UpdateResult push(Serializable id, String field, Object... values);
+
+    /**
+     * 向数组字段追加不重复的元素（$addToSet $each）
+     *
+     * @param id     实体ID
+     * @param field  属性名称
+     * @param values 元素
+     * @return 更新结果
+     */
+    public UpdateResult addToSet(Serializable id, String field, Object... values);
+
+    /**
+     * 从数组字段中删除等于指定值的全部元素（$pull）
+     *
+     * @param id    实体ID
+     * @param field 属性名称
+     * @param value 元素
+     * @return 更新结果
+     */
+    public UpdateResult pull(Serializable id, String field, Object value);
+
+    /**
+     * 按主键原子更新一个文档，只修改update中的字段
+     *
+     * @param id     实体ID
+     * @param update 更新
+     * @return 更新结果
+     */
+    public UpdateResult updateById(Serializable id, Update update);
+
+    /**
+     * 原子更新第一个匹配的文档
+     *
+     * @param query  查询条件
+     * @param update 更新
+     * @return 更新结果
+     */
+    public UpdateResult updateFirst(Query query, Update update);
+
+    /**
+     * 原子更新全部匹配的文档
+     *
+     * @param query  查询条件
+     * @param update 更新
+     * @return 更新结果
+     */
+    public UpdateResult updateMulti(Query query, Update update);
+
+    /**
+     * 更新第一个匹配的文档，没有匹配时按查询条件中的等值字段及update插入新文档，<br>
+     * 只在插入时写入的字段使用update.setOnInsert
+     *
+     * @param query  查询条件
+     * @param update 更新
+     * @return 更新结果，插入时包含新文档主键
+     */
+    public UpdateResult upsert(Query query, Update update);
+
+    /**
+     * 按主键原子更新一个文档并返回更新前或更新后的实体
+     *
+     * @param id        实体ID
+     * @param update    更新
+     * @param returnNew true返回更新后的实体，false返回更新前的实体
+     * @return 实体 或 null（文档不存在）
+     */
+    public T findAndModify(Serializable id, Update update, boolean returnNew);
+
+    /**
+     * 原子更新第一个匹配的文档（按查询的排序）并返回更新前或更新后的实体
+     *
+     * @param query     查询条件
+     * @param update    更新
+     * @param returnNew true返回更新后的实体，false返回更新前的实体
+     * @param upsert    没有匹配时是否插入新文档
+     * @return 实体 或 null（没有匹配的文档，或插入新文档且returnNew为false）
+     */
+    public T findAndModify(Query query, Update update, boolean returnNew, boolean upsert);
+
     /**
      * 更新文档信息
      *
@@ -51,6 +203,16 @@ public interface MongoDao<T> {
      */
     public List<T> delete(Serializable... ids);
 
+    /**
+     * 批量删除实体<br>
+     * id按块使用$in删除，块数较多时并行执行，单个块失败不影响其他块
+     *
+     * @param ids           实体ID集合
+     * @param returnDeleted 是否返回被删除的文档（删除前按块预读一次），为false时只返回删除数量
+     * @return 删除结果，包含删除数量及失败的块（不会为null）
+     */
+    public DeleteResult<T> deleteBatch(Collection<? extends Serializable> ids, boolean returnDeleted);
+
     /**
      * 根据主键id查询
      *
@@ -59,6 +221,32 @@ public interface MongoDao<T> {
      */
     public T findById(Serializable id);
 
+    /**
+     * 根据主键id查询，只返回投影指定的字段
+     *
+     * @param id         实体的主键ID
+     * @param projection 投影
+     * @return
+     */
+    public T findById(Serializable id, Projection projection);
+
+    /**
+     * 根据主键id批量查询<br>
+     * id按块使用$in查询，结果按id的顺序排列，不存在的id对应null并记录在missingIds中
+     *
+     * @param ids 实体ID集合
+     * @return 查询结果（不会为null）
+     */
+    public FindResult<T> findByIds(Collection<? extends Serializable> ids);
+
+    /**
+     * 创建按主键批量加载器<br>
+     * 在一次请求内登记需要的id，dispatch时合并为一次$in查询，用于替代循环调用findById
+     *
+     * @return 批量加载器
+     */
+    public BatchLoader<T> newBatchLoader();
+
     /**
      * 查询所有记录<br>
      * [不分页]
@@ -100,6 +288,19 @@ public interface MongoDao<T> {
      */
     public List<T> findByProp(String propName, Object propValue, String order);
 
+    /**
+     * 根据单一参数查询记录并排序，只返回投影指定的字段<br>
+     * [不分页]
+     *
+     * @param propName   属性名称，对应实体类字段名
+     * @param propValue  属性值
+     * @param order      排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                   为空则不排序，不指定排序方式则默认升序排序
+     * @param projection 投影
+     * @return 结果集合 或 null
+     */
+    public List<T> findByProp(String propName, Object propValue, String order, Projection projection);
+
     /**
      * 根据多个参数查询记录
      * [不分页]
@@ -122,6 +323,19 @@ public interface MongoDao<T> {
      */
     public List<T> findByProps(String[] propName, Object[] propValue, String order);
 
+    /**
+     * 根据多个参数查询记录 并排序，只返回投影指定的字段
+     * [不分页]
+     *
+     * @param propName   参数数组
+     * @param propValue  参数值数组
+     * @param order      排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                   为空则不排序，不指定排序方式则默认升序排序
+     * @param projection 投影
+     * @return 结果集合 或 null
+     */
+    public List<T> findByProps(String[] propName, Object[] propValue, String order, Projection projection);
+
     /**
      * 根据多个参数查询第一条记录
      * [不分页]
@@ -183,6 +397,98 @@ public interface MongoDao<T> {
      */
     public List<T> findByQuery(Query query, String order);
 
+    /**
+     * 多条件筛选查询满足条件的结果集，只返回投影指定的字段
+     *
+     * @param query      条件对象
+     * @param order      排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                   为空则不排序，不指定排序方式则默认升序排序
+     * @param projection 投影
+     * @return
+     */
+    public List<T> findByQuery(Query query, String order, Projection projection);
+
+    /**
+     * 多条件筛选查询满足条件的结果集，只查询DTO类中的字段并映射为DTO
+     *
+     * @param query 条件对象
+     * @param order 排序字段，例如：id或id asc、或id asc,name desc<br>
+     *              为空则不排序，不指定排序方式则默认升序排序
+     * @param type  DTO类（字段名需与实体属性名一致）或投影接口（getter与实体属性对应）
+     * @return DTO集合
+     */
+    public <D> List<D> findByQueryAs(Query query, String order, Class<D> type);
+
+    /**
+     * 以流的方式查询所有记录并排序<br>
+     * [不分页，服务端游标按批次读取，内存占用与结果集大小无关]<br>
+     * 使用完毕必须关闭流（推荐try-with-resources），否则服务端游标要等超时才释放
+     *
+     * @param order 排序字段，例如：id或id asc、或id asc,name desc<br>
+     *              为空则不排序，不指定排序方式则默认升序排序
+     * @return 结果流
+     */
+    public Stream<T> streamAll(String order);
+
+    /**
+     * 以流的方式根据多个参数查询记录 并排序<br>
+     * [不分页，服务端游标按批次读取]，使用完毕必须关闭流
+     *
+     * @param propName  参数数组
+     * @param propValue 参数值数组
+     * @param order     排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                  为空则不排序，不指定排序方式则默认升序排序
+     * @return 结果流
+     */
+    public Stream<T> streamByProps(String[] propName, Object[] propValue, String order);
+
+    /**
+     * 以流的方式根据多个参数及逻辑运算符查询记录 并排序<br>
+     * [不分页，服务端游标按批次读取]，使用完毕必须关闭流
+     *
+     * @param propName  参数数组
+     * @param propValue 参数值数组
+     * @param logic     逻辑运算符：[and]、[or]、...
+     * @param order     排序
+     * @return 结果流
+     */
+    public Stream<T> streamByPropsLogic(String[] propName, Object[] propValue, String logic, String order);
+
+    /**
+     * 以流的方式多条件筛选查询满足条件的结果集<br>
+     * [不分页，服务端游标按批次读取]，使用完毕必须关闭流
+     *
+     * @param query 条件对象
+     * @param order 排序字段，例如：id或id asc、或id asc,name desc<br>
+     *              为空则不排序，不指定排序方式则默认升序排序
+     * @return 结果流
+     */
+    public Stream<T> streamByQuery(Query query, String order);
+
+    /**
+     * 以迭代器的方式多条件筛选查询满足条件的结果集<br>
+     * [不分页，服务端游标按批次读取]，读取完毕自动关闭，提前结束时必须调用close
+     *
+     * @param query     条件对象
+     * @param order     排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                  为空则不排序，不指定排序方式则默认升序排序
+     * @param batchSize 每批从服务端读取的文档数，不大于0时使用默认值
+     * @return 结果迭代器
+     */
+    public CloseableIterator<T> iterateByQuery(Query query, String order, int batchSize);
+
+    /**
+     * 逐条处理满足条件的结果集，处理完毕或出错时自动关闭游标<br>
+     * [不分页，服务端游标按批次读取]
+     *
+     * @param query  条件对象
+     * @param order  排序字段，例如：id或id asc、或id asc,name desc<br>
+     *               为空则不排序，不指定排序方式则默认升序排序
+     * @param action 处理每条记录的回调
+     * @return 处理的记录数
+     */
+    public long forEachByQuery(Query query, String order, Consumer<? super T> action);
+
     /**
      * 根据单一参数查询唯一结果<br>
      *
@@ -210,6 +516,44 @@ public interface MongoDao<T> {
      */
     public int countByCondition(String[] params, Object[] values);
 
+    /**
+     * 按查询模板查询记录
+     *
+     * @param template 查询模板
+     * @param values   按模板条件顺序排列的参数值
+     * @return 结果集合
+     */
+    public List<T> findByTemplate(QueryTemplate template, Object... values);
+
+    /**
+     * 按查询模板查询第一条记录
+     *
+     * @param template 查询模板
+     * @param values   按模板条件顺序排列的参数值
+     * @return 实体 或 null
+     */
+    public T findFirstByTemplate(QueryTemplate template, Object... values);
+
+    /**
+     * 按查询模板查询总记录数
+     *
+     * @param template 查询模板
+     * @param values   按模板条件顺序排列的参数值
+     * @return 总记录数
+     */
+    public long countByTemplate(QueryTemplate template, Object... values);
+
+    /**
+     * 按查询模板分页查询结果集合
+     *
+     * @param pageNo   当前页码
+     * @param pageSize 页容量
+     * @param template 查询模板
+     * @param values   按模板条件顺序排列的参数值
+     * @return 分页模型对象
+     */
+    public PageModel<T> pageByTemplate(int pageNo, int pageSize, QueryTemplate template, Object... values);
+
     /**
      * 去重查询满足条件的字段结果集
      *
@@ -220,16 +564,73 @@ public interface MongoDao<T> {
     public List distinctByQuery(String distinctField, Query query);
 
     /**
-     * 去重查询满足条件的字段结果集
+     * 去重查询满足条件的字段结果集<br>
+     * 使用聚合$group及游标实现，结果集大小不受单个文档16MB的限制；数组字段按元素去重
      *
      * @param distinctField 去重查询字段
      * @param query         条件对象
-     * @param order         排序字段，例如：id或id asc、或id asc,name desc<br>
-     *                      为空则不排序，不指定排序方式则默认升序排序
+     * @param order         排序，例如：name或name desc（按字段值排序），为空则不排序
      * @return
      */
     public List distinctByQuery(String distinctField, Query query, String order);
 
+    /**
+     * 分页去重查询满足条件的字段结果集
+     *
+     * @param distinctField 去重查询字段
+     * @param query         条件对象
+     * @param order         排序，例如：name或name desc（按字段值排序）、count desc（按出现次数排序），为空则不排序，其他排序字段忽略
+     * @param skip          跳过的值个数
+     * @param limit         返回的值个数，不大于0表示不限制
+     * @return 字段值集合
+     */
+    public List<Object> distinctByQuery(String distinctField, Query query, String order, int skip, int limit);
+
+    /**
+     * 分页去重查询满足条件的字段结果集，并统计每个值的记录数
+     *
+     * @param distinctField 去重查询字段
+     * @param query         条件对象
+     * @param order         排序，例如：name或name desc（按字段值排序）、count desc（按出现次数排序），为空则不排序
+     * @param skip          跳过的值个数
+     * @param limit         返回的值个数，不大于0表示不限制
+     * @return 字段值及记录数集合
+     */
+    public List<DistinctCount> distinctWithCount(String distinctField, Query query, String order, int skip, int limit);
+
+    /**
+     * 以流的方式去重查询满足条件的字段结果集<br>
+     * [服务端游标按批次读取]，使用完毕必须关闭流
+     *
+     * @param distinctField 去重查询字段
+     * @param query         条件对象
+     * @param order         排序，例如：name或name desc（按字段值排序）、count desc（按出现次数排序），为空则不排序
+     * @return 字段值流
+     */
+    public Stream<Object> streamDistinct(String distinctField, Query query, String order);
+
+    /**
+     * 聚合查询<br>
+     * 管道使用{@link org.springframework.data.mongodb.core.aggregation.Aggregation}构建（match、group、project、sort、
+     * limit、unwind、lookup、facet等），字段名按实体映射；服务端以游标返回结果并允许使用磁盘排序、分组，
+     * 结果映射为指定类型（DBObject表示不转换）
+     *
+     * @param aggregation 聚合管道
+     * @param outputType  结果类型
+     * @return 结果集合
+     */
+    public <O> List<O> aggregate(Aggregation aggregation, Class<O> outputType);
+
+    /**
+     * 以流的方式聚合查询<br>
+     * [服务端游标按批次读取]，使用完毕必须关闭流
+     *
+     * @param aggregation 聚合管道
+     * @param outputType  结果类型
+     * @return 结果流
+     */
+    public <O> Stream<O> aggregateStream(Aggregation aggregation, Class<O> outputType);
+
     /**
      * 分页查询所有结果集
      *
@@ -342,6 +743,79 @@ public interface MongoDao<T> {
      */
     public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order);
 
+    /**
+     * 根据参数分页查询结果集合 并排序<br>
+     * [分页]
+     *
+     * @param pageNo     当前页码
+     * @param pageSize   页容量
+     * @param params     参数数组
+     * @param values     参数值数组
+     * @param order      排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                   为空则不排序，不指定排序方式则默认升序排序
+     * @param countTotal 是否统计总记录数，为false时只通过hasNext判断是否还有下一页
+     * @return 分页模型对象（不会为null）
+     */
+    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, boolean countTotal);
+
+    /**
+     * 根据参数分页查询结果集合 并排序，只返回投影指定的字段<br>
+     * [分页]
+     *
+     * @param pageNo     当前页码
+     * @param pageSize   页容量
+     * @param params     参数数组
+     * @param values     参数值数组
+     * @param order      排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                   为空则不排序，不指定排序方式则默认升序排序
+     * @param projection 投影
+     * @return 分页模型对象（不会为null）
+     */
+    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, Projection projection);
+
+    /**
+     * 根据参数分页查询结果集合 并排序，只查询DTO类中的字段并映射为DTO<br>
+     * [分页]
+     *
+     * @param pageNo   当前页码
+     * @param pageSize 页容量
+     * @param params   参数数组
+     * @param values   参数值数组
+     * @param order    排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                 为空则不排序，不指定排序方式则默认升序排序
+     * @param type     DTO类（字段名需与实体属性名一致）或投影接口（getter与实体属性对应）
+     * @return 分页模型对象（不会为null）
+     */
+    public <D> PageModel<D> pageByPropsAs(int pageNo, int pageSize, String[] params, Object[] values, String order, Class<D> type);
+
+    /**
+     * 游标（键集）分页查询满足条件的结果集<br>
+     * 根据page中的cursor定位，不使用skip，第N页与第1页的查询代价相同；<br>
+     * 总数仅在首次查询（cursor为空）时统计，结果中的nextCursor、prevCursor用于继续翻页
+     *
+     * @param page  分页对象
+     * @param query 条件对象
+     * @param order 排序字段，例如：id或id asc、或id asc,name desc<br>
+     *              为空则按_id升序，翻页过程中不可更改
+     * @return
+     */
+    public Page<T> pageByCursor(Page page, Query query, String order);
+
+    /**
+     * 根据参数游标（键集）分页查询结果集合 并排序<br>
+     * [分页]
+     *
+     * @param pageNo   当前页码，仅用于展示
+     * @param pageSize 页容量
+     * @param cursor   上一次查询返回的nextCursor或prevCursor，为空表示第一页
+     * @param params   参数数组
+     * @param values   参数值数组
+     * @param order    排序字段，例如：id或id asc、或id asc,name desc<br>
+     *                 为空则按_id升序，翻页过程中不可更改
+     * @return 分页模型对象（不会为null）
+     */
+    public PageModel<T> pageByCursor(int pageNo, int pageSize, String cursor, String[] params, Object[] values, String order);
+
 
 }
 
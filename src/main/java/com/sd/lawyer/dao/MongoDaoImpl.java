@@ -1,36 +1,90 @@
 package com.sd.lawyer.dao;
 
+import com.mongodb.AggregationOptions;
 import com.mongodb.BasicDBList;
 import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.Cursor;
+import com.mongodb.Bytes;
 import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.ReadPreference;
+import com.mongodb.TagSet;
 import com.mongodb.gridfs.GridFS;
 import com.mongodb.gridfs.GridFSDBFile;
 import com.mongodb.gridfs.GridFSInputFile;
+import com.mongodb.WriteResult;
+import com.sd.lawyer.beans.BulkInsertResult;
+import com.sd.lawyer.beans.DeleteResult;
+import com.sd.lawyer.beans.DistinctCount;
+import com.sd.lawyer.beans.FindResult;
 import com.sd.lawyer.beans.Page;
+import com.sd.lawyer.beans.UpdateResult;
+import com.sd.lawyer.beans.UploadStatus;
 import com.sd.lawyer.util.EmptyUtils;
 import com.sd.lawyer.util.PageModel;
 import com.sd.lawyer.util.ReflectionUtils;
 import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.annotation.Id;
-import org.springframework.data.annotation.Transient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.domain.Sort.Direction;
 import org.springframework.data.domain.Sort.Order;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypeBasedAggregationOperationContext;
+import org.springframework.data.mongodb.core.aggregation.TypedAggregation;
+import org.springframework.data.mongodb.core.convert.QueryMapper;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentEntity;
+import org.springframework.data.mongodb.core.mapping.MongoPersistentProperty;
 import org.springframework.data.mongodb.core.query.BasicQuery;
 import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.web.multipart.MultipartFile;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Serializable;
-import java.lang.reflect.Field;
-import java.lang.reflect.Method;
-import java.lang.reflect.Modifier;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
 
 import static org.springframework.data.mongodb.core.query.Criteria.where;
 
@@ -43,312 +97,2183 @@ import static org.springframework.data.mongodb.core.query.Criteria.where;
  */
 public class MongoDaoImpl<T> implements MongoDao<T> {
 
+    private static Logger logger = LoggerFactory.getLogger(MongoDaoImpl.class);
+
 //    protected abstract Class<T> getEntityClass();
 
     /**
-     * 获得泛型类T
+     * 去重查询中记录数的字段名
+     */
+    protected static final String DISTINCT_COUNT_FIELD = "count";
+
+    /**
+     * 排序字符串的解析结果，排序字符串可能来自请求参数，缓存数量有上限
+     */
+    private static final ConcurrentMap<String, List<Order>> ORDER_CACHE = new ConcurrentHashMap<String, List<Order>>();
+
+    /**
+     * 最多缓存的排序字符串数
+     */
+    private static final int ORDER_CACHE_SIZE = 1024;
+
+    /**
+     * 泛型类T，首次使用时解析
+     */
+    private volatile Class<T> entityClass;
+
+    /**
+     * 实体元数据，初始化时解析
+     */
+    private volatile EntityMetadata<T> metadata;
+
+    /**
+     * 变更跟踪器，实体标注@ChangeTracking时创建
+     */
+    private volatile ChangeTracker<T> changeTracker;
+
+    /**
+     * 实体缓存，实体标注@CachedEntity时创建
+     */
+    private volatile EntityCache entityCache;
+
+    /**
+     * 实体缓存失效次数，读取的文档放入缓存后据此判断读取期间是否有并发写入
+     */
+    private final AtomicLong entityEvictions = new AtomicLong();
+
+    /**
+     * 查询结果缓存，实体标注@CachedQueries时创建
+     */
+    private volatile QueryResultCache queryCache;
+
+    /**
+     * 相同读请求合并
+     */
+    private volatile SingleFlight singleFlight;
+
+    /**
+     * 查询结果条数保护
+     */
+    private volatile ResultSizeGuard resultSizeGuard;
+
+    /**
+     * 各读操作的读偏好，初始化时解析
+     */
+    private volatile Map<ReadOperation, ReadPreference> readPreferences;
+
+    /**
+     * 延迟写入缓冲区，实体标注@WriteBehind时创建
+     */
+    private volatile WriteBehindBuffer writeBehindBuffer;
+
+    /**
+     * 按内容去重的文件存储，首次使用时创建
+     */
+    private volatile DedupFileStore dedupFileStore;
+
+    /**
+     * GridFS对象，创建时会检查索引，只创建一次
+     */
+    private volatile GridFS gridFS;
+
+    /**
+     * 共享的GridFS文件本地缓存，首次下载时获取
+     */
+    private volatile GridFsFileCache fileCache;
+
+    /**
+     * 数据库名.存储桶名 → GridFS文件本地缓存，同一存储桶的DAO共享，避免容量按DAO数量成倍增加
+     */
+    private static final ConcurrentMap<String, GridFsFileCache> SHARED_FILE_CACHES = new ConcurrentHashMap<String, GridFsFileCache>();
+
+    /**
+     * 数据库名.存储桶名 → 按内容去重的文件存储，同一存储桶的DAO共享，避免每个DAO各自创建索引及后台回收线程
+     */
+    private static final ConcurrentMap<String, DedupFileStore> SHARED_DEDUP_STORES = new ConcurrentHashMap<String, DedupFileStore>();
+
+    /**
+     * 断点续传上传，首次使用时创建
+     */
+    private volatile ResumableUploadStore uploadStore;
+
+    /**
+     * 集合各索引的键（用于判断排序能否使用索引），定期重新读取
+     */
+    private volatile List<DBObject> indexKeys;
+
+    /**
+     * 索引的键的读取时间
+     */
+    private volatile long indexKeysLoadedAt;
+
+    /**
+     * 索引的键的刷新间隔（毫秒）
+     */
+    private static final long INDEX_KEYS_TTL_MS = 60000;
+
+    /**
+     * 获得泛型类T
+     */
+    protected Class<T> getEntityClass() {
+        Class<T> clazz = entityClass;
+        if (clazz == null) {
+            clazz = ReflectionUtils.getSuperClassGenricType(getClass());
+            entityClass = clazz;
+        }
+        return clazz;
+    }
+
+    /**
+     * 获得实体元数据
+     */
+    protected EntityMetadata<T> getMetadata() {
+        EntityMetadata<T> meta = metadata;
+        if (meta == null) {
+            meta = EntityMetadataRegistry.register(getEntityClass(), mongoTemplate.getCollectionName(getEntityClass()));
+            metadata = meta;
+        }
+        return meta;
+    }
+
+    /**
+     * 获得变更跟踪器（可读取跳过的更新数、字段数等统计），实体未标注@ChangeTracking时返回null
+     */
+    public ChangeTracker<T> getChangeTracker() {
+        ChangeTracker<T> tracker = changeTracker;
+        if (tracker == null && getEntityClass().isAnnotationPresent(ChangeTracking.class)) {
+            synchronized (this) {
+                tracker = changeTracker;
+                if (tracker == null) {
+                    tracker = new ChangeTracker<T>(getMetadata(), mongoTemplate.getConverter());
+                    changeTracker = tracker;
+                }
+            }
+        }
+        return tracker;
+    }
+
+    /**
+     * 获得实体缓存（可读取命中率、淘汰次数等统计），实体未标注@CachedEntity时返回null
+     */
+    public EntityCache getEntityCache() {
+        EntityCache cache = entityCache;
+        if (cache == null) {
+            CachedEntity config = getEntityClass().getAnnotation(CachedEntity.class);
+            if (config != null) {
+                synchronized (this) {
+                    cache = entityCache;
+                    if (cache == null) {
+                        cache = createEntityCache(config);
+                        entityCache = cache;
+                    }
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 创建实体缓存，需要其他缓存实现时重写本方法
+     *
+     * @param config 缓存配置
+     * @return 实体缓存
+     */
+    protected EntityCache createEntityCache(CachedEntity config) {
+        return new CaffeineEntityCache(config.maximumSize(), config.expireAfterWriteSeconds());
+    }
+
+    /**
+     * 使指定主键的实体缓存失效（开启实体缓存时）
+     *
+     * @param id 主键
+     */
+    protected void evict(Object id) {
+        EntityCache cache = getEntityCache();
+        if (cache != null && id != null) {
+            // 先计数再失效，与cacheLoaded配合保证并发读取不会留下旧文档
+            entityEvictions.incrementAndGet();
+            cache.invalidate(toIdValue(id));
+        }
+    }
+
+    /**
+     * 使全部实体缓存失效（开启实体缓存时），用于无法确定被修改文档主键的写操作
+     */
+    protected void evictAll() {
+        EntityCache cache = getEntityCache();
+        if (cache != null) {
+            entityEvictions.incrementAndGet();
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * 将从数据库读取的文档放入实体缓存；读取期间有缓存失效（并发写入）时放入后立即移除，<br>
+     * 避免写入前读到的旧文档在失效之后才放入缓存
+     *
+     * @param cache     实体缓存
+     * @param id        主键
+     * @param document  文档
+     * @param evictions 读取前的失效次数（entityEvictions）
+     */
+    private void cacheLoaded(EntityCache cache, Object id, DBObject document, long evictions) {
+        cache.put(id, document);
+        if (entityEvictions.get() != evictions) {
+            cache.invalidate(id);
+        }
+    }
+
+    /**
+     * 主键值转换为文档中的形式，字符串形式的ObjectId转换为ObjectId
+     *
+     * @param id 主键
+     * @return 主键值
+     */
+    protected Object toIdValue(Object id) {
+        return id instanceof String && ObjectId.isValid((String) id) ? new ObjectId((String) id) : id;
+    }
+
+    /**
+     * 获得查询结果缓存（可读取命中率等统计），实体未标注@CachedQueries时返回null
+     */
+    public QueryResultCache getQueryCache() {
+        QueryResultCache cache = queryCache;
+        if (cache == null) {
+            CachedQueries config = getEntityClass().getAnnotation(CachedQueries.class);
+            if (config != null) {
+                synchronized (this) {
+                    cache = queryCache;
+                    if (cache == null) {
+                        cache = new QueryResultCache(config.maximumSize(), config.maxResultSize(), config.expireAfterWriteSeconds());
+                        queryCache = cache;
+                    }
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * 获得读请求合并器（可读取合并次数等统计），未开启时返回null
+     */
+    public SingleFlight getSingleFlight() {
+        SingleFlight flight = singleFlight;
+        if (flight == null && singleFlightEnabled) {
+            synchronized (this) {
+                flight = singleFlight;
+                if (flight == null) {
+                    flight = new SingleFlight(singleFlightTimeoutMs);
+                    singleFlight = flight;
+                }
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * 获得延迟写入缓冲区（可读取合并率、写入耗时等统计），实体未标注@WriteBehind时返回null
+     */
+    public WriteBehindBuffer getWriteBehindBuffer() {
+        WriteBehindBuffer buffer = writeBehindBuffer;
+        if (buffer == null) {
+            WriteBehind config = getEntityClass().getAnnotation(WriteBehind.class);
+            if (config != null) {
+                synchronized (this) {
+                    buffer = writeBehindBuffer;
+                    if (buffer == null) {
+                        buffer = new WriteBehindBuffer(getMetadata().getCollectionName(), config.maxPending(),
+                                config.flushSize(), config.flushIntervalMs(), this::writeBehind);
+                        writeBehindBuffer = buffer;
+                    }
+                }
+            }
+        }
+        return buffer;
+    }
+
+    /**
+     * 获得查询结果条数保护（可读取超过阈值、截断、失败的次数），实体的@ResultSizeLimit优先于全局配置
+     */
+    public ResultSizeGuard getResultSizeGuard() {
+        ResultSizeGuard guard = resultSizeGuard;
+        if (guard == null) {
+            ResultSizeLimit limit = getEntityClass().getAnnotation(ResultSizeLimit.class);
+            guard = limit == null
+                    ? new ResultSizeGuard(getMetadata().getCollectionName(), maxResults, maxResultsAction, resultWarnThreshold)
+                    : new ResultSizeGuard(getMetadata().getCollectionName(), limit.maxResults(), limit.action(), limit.warnThreshold());
+            resultSizeGuard = guard;
+        }
+        return guard;
+    }
+
+    /**
+     * 执行读请求，开启读请求合并时同时发起的相同请求共享一次查询
+     *
+     * @param key    请求键，需包含集合写入版本号
+     * @param loader 查询，应返回原始文档
+     * @return 查询结果
+     */
+    protected <V> V coalesce(String key, Supplier<V> loader) {
+        SingleFlight flight = getSingleFlight();
+        return flight == null ? loader.get() : flight.execute(getEntityClass().getName() + '|' + key, loader);
+    }
+
+    /**
+     * 递增集合写入版本号，使查询结果缓存失效，每个写操作完成后调用
+     */
+    protected void bumpWriteVersion() {
+        CollectionVersions.bump(getMetadata().getCollectionName());
+        ReadYourWrites.markWrite(getMetadata().getCollectionName());
+    }
+
+    /**
+     * 获得读操作的读偏好<br>
+     * 当前线程（会话）最近写入过该集合时返回主节点；未配置路由时返回集合默认的读偏好
+     *
+     * @param operation 读操作类型
+     * @return 读偏好
+     */
+    protected ReadPreference readPreference(ReadOperation operation) {
+        String collectionName = getMetadata().getCollectionName();
+        if (ReadYourWrites.isSticky(collectionName, readYourWritesWindowMs)) {
+            return ReadPreference.primary();
+        }
+        Map<ReadOperation, ReadPreference> preferences = readPreferences;
+        if (preferences == null) {
+            preferences = new EnumMap<ReadOperation, ReadPreference>(ReadOperation.class);
+            ReadRouting routing = getEntityClass().getAnnotation(ReadRouting.class);
+            if (routing != null) {
+                for (ReadOperation routed : routing.operations()) {
+                    preferences.put(routed, toReadPreference(routing.mode(), routing.maxStalenessSeconds()));
+                }
+            } else if (!"primary".equalsIgnoreCase(readPreferenceMode)) {
+                for (ReadOperation routed : ReadOperation.values()) {
+                    preferences.put(routed, toReadPreference(readPreferenceMode, readMaxStalenessSeconds));
+                }
+            }
+            readPreferences = preferences;
+        }
+        ReadPreference preference = preferences.get(operation);
+        return preference == null ? mongoTemplate.getCollection(collectionName).getReadPreference() : preference;
+    }
+
+    /**
+     * 按名称创建读偏好
+     *
+     * @param mode                读偏好名称
+     * @param maxStalenessSeconds 从节点最大延迟（秒），不大于0表示不限制
+     * @return 读偏好
+     */
+    protected static ReadPreference toReadPreference(String mode, long maxStalenessSeconds) {
+        if ("primary".equalsIgnoreCase(mode)) {
+            return ReadPreference.primary();
+        }
+        if (maxStalenessSeconds > 0) {
+            return ReadPreference.valueOf(mode, Collections.<TagSet>emptyList(), maxStalenessSeconds, TimeUnit.SECONDS);
+        }
+        return ReadPreference.valueOf(mode);
+    }
+
+    /**
+     * 启动时解析实体元数据，避免首次请求时解析
+     */
+    @PostConstruct
+    public void initMetadata() {
+        getMetadata();
+        getChangeTracker();
+        getEntityCache();
+        getQueryCache();
+        getResultSizeGuard();
+        readPreference(ReadOperation.PAGE);
+        getWriteBehindBuffer();
+    }
+
+    /**
+     * 关闭时写入延迟写入缓冲区中剩余的更新
+     */
+    @PreDestroy
+    public void destroy() {
+        WriteBehindBuffer buffer = writeBehindBuffer;
+        if (buffer != null) {
+            buffer.close();
+        }
+        // 共享的去重存储由第一个关闭的DAO停止后台回收，其余DAO仍可读写
+        DedupFileStore store = dedupFileStore;
+        if (store != null && SHARED_DEDUP_STORES.values().remove(store)) {
+            store.close();
+        }
+        ResumableUploadStore uploads = uploadStore;
+        if (uploads != null) {
+            uploads.close();
+        }
+    }
+
+    /**
+     * 为查询得到的实体记录快照（开启变更跟踪时）
+     *
+     * @param entity 实体
+     * @return 实体本身
+     */
+    protected T track(T entity) {
+        ChangeTracker<T> tracker = getChangeTracker();
+        return tracker == null ? entity : tracker.snapshot(entity);
+    }
+
+    /**
+     * 为查询得到的实体记录快照（开启变更跟踪时）
+     *
+     * @param list 实体集合
+     * @return 实体集合本身
+     */
+    protected List<T> track(List<T> list) {
+        ChangeTracker<T> tracker = getChangeTracker();
+        return tracker == null ? list : tracker.snapshot(list);
+    }
+
+    @Autowired
+    protected MongoTemplate mongoTemplate;
+
+    /**
+     * 批量删除时每块的id数量
+     */
+    @Value("${lawyer.mongo.delete-chunk-size:1000}")
+    protected int deleteChunkSize = 1000;
+
+    /**
+     * 流式查询时每批从服务端读取的文档数
+     */
+    @Value("${lawyer.mongo.stream-batch-size:500}")
+    protected int streamBatchSize = 500;
+
+    /**
+     * 流式查询的最长执行时间（毫秒），不大于0表示不限制
+     */
+    @Value("${lawyer.mongo.stream-max-time-ms:0}")
+    protected long streamMaxTimeMs = 0;
+
+    /**
+     * 流式查询是否禁止服务端游标空闲超时（默认10分钟），处理较慢的批处理任务可开启
+     */
+    @Value("${lawyer.mongo.stream-no-cursor-timeout:false}")
+    protected boolean streamNoCursorTimeout = false;
+
+    /**
+     * 批量写入时每块的文档数量
+     */
+    @Value("${lawyer.mongo.insert-chunk-size:1000}")
+    protected int insertChunkSize = 1000;
+
+    /**
+     * 批量操作时同时执行的块数，超过时提交方阻塞等待
+     */
+    @Value("${lawyer.mongo.bulk-parallelism:4}")
+    protected int bulkParallelism = 4;
+
+    /**
+     * 按主键批量查询时每块的id数量
+     */
+    @Value("${lawyer.mongo.find-chunk-size:1000}")
+    protected int findChunkSize = 1000;
+
+    /**
+     * 是否合并同时发起的相同读请求（findById、findByProp、pageByProps等），默认关闭，
+     * 开启后等待者会共享同一次查询的结果，读不到各自查询期间的并发写入
+     */
+    @Value("${lawyer.mongo.single-flight-enabled:false}")
+    protected boolean singleFlightEnabled = false;
+
+    /**
+     * 合并的读请求最长等待时间（毫秒），超时后自行查询，不大于0表示一直等待（慢查询会拖住所有等待者）
+     */
+    @Value("${lawyer.mongo.single-flight-timeout-ms:3000}")
+    protected long singleFlightTimeoutMs = 3000;
+
+    /**
+     * 不分页的列表查询最多返回的记录数，不大于0表示不限制，实体可通过@ResultSizeLimit覆盖
+     */
+    @Value("${lawyer.mongo.max-results:0}")
+    protected int maxResults = 0;
+
+    /**
+     * 列表查询超过最大记录数时的处理方式：FAIL（抛出异常）或TRUNCATE（截断）
+     */
+    @Value("${lawyer.mongo.max-results-action:FAIL}")
+    protected ResultSizeLimit.Action maxResultsAction = ResultSizeLimit.Action.FAIL;
+
+    /**
+     * 列表查询返回记录数超过该值时记录警告，不大于0表示不警告
+     */
+    @Value("${lawyer.mongo.result-warn-threshold:5000}")
+    protected int resultWarnThreshold = 5000;
+
+    /**
+     * 分页、计数、去重、聚合查询的读偏好：primary（默认，不路由）、secondaryPreferred、nearest等，实体可通过@ReadRouting覆盖
+     */
+    @Value("${lawyer.mongo.read-preference:primary}")
+    protected String readPreferenceMode = "primary";
+
+    /**
+     * GridFS上传文件的分块大小（字节），默认255KB
+     */
+    @Value("${lawyer.mongo.gridfs-chunk-size:261120}")
+    protected int gridFsChunkSize = GridFS.DEFAULT_CHUNKSIZE;
+
+    /**
+     * 读取GridFS文件时每批从服务端读取的分块数，决定下载时的内存占用（分块数 × 分块大小）
+     */
+    @Value("${lawyer.mongo.gridfs-read-batch-chunks:4}")
+    protected int gridFsReadBatchChunks = 4;
+
+    /**
+     * 回收无引用的去重文件的间隔（秒），不大于0表示不回收
+     */
+    @Value("${lawyer.mongo.gridfs-dedup-gc-interval-seconds:3600}")
+    protected long gridFsDedupGcIntervalSeconds = 3600;
+
+    /**
+     * 是否开启GridFS文件本地缓存（writeFileFromMongo及GridFsDownloads下载时使用），默认关闭；<br>
+     * 同一数据库的GridFS存储桶由全部DAO共享一个缓存，以下容量为该缓存的总容量
+     */
+    @Value("${lawyer.mongo.gridfs-cache-enabled:false}")
+    protected boolean gridFsCacheEnabled = false;
+
+    /**
+     * 本地缓存堆外内存层的总字节数，默认64MB
+     */
+    @Value("${lawyer.mongo.gridfs-cache-memory-bytes:67108864}")
+    protected long gridFsCacheMemoryBytes = 64L * 1024 * 1024;
+
+    /**
+     * 不超过该大小（字节）的文件放在内存层，默认1MB
+     */
+    @Value("${lawyer.mongo.gridfs-cache-memory-file-bytes:1048576}")
+    protected long gridFsCacheMemoryFileBytes = 1024 * 1024;
+
+    /**
+     * 本地缓存磁盘层的总字节数，默认2GB，不大于0表示不使用磁盘层
+     */
+    @Value("${lawyer.mongo.gridfs-cache-disk-bytes:2147483648}")
+    protected long gridFsCacheDiskBytes = 2L * 1024 * 1024 * 1024;
+
+    /**
+     * 超过该大小（字节）的文件不缓存，默认256MB
+     */
+    @Value("${lawyer.mongo.gridfs-cache-disk-file-bytes:268435456}")
+    protected long gridFsCacheDiskFileBytes = 256L * 1024 * 1024;
+
+    /**
+     * 本地缓存磁盘层目录，默认为临时目录下的lawyer-gridfs-cache
+     */
+    @Value("${lawyer.mongo.gridfs-cache-dir:}")
+    protected String gridFsCacheDir = "";
+
+    /**
+     * 断点续传上传多少分钟没有新分块视为放弃并清理，不大于0表示不清理
+     */
+    @Value("${lawyer.mongo.gridfs-upload-expire-minutes:1440}")
+    protected long gridFsUploadExpireMinutes = 1440;
+
+    /**
+     * 从节点最大延迟（秒），不大于0表示不限制（MongoDB要求至少90秒）
+     */
+    @Value("${lawyer.mongo.read-max-staleness-seconds:90}")
+    protected long readMaxStalenessSeconds = 90;
+
+    /**
+     * 写入后读主节点的时间窗口（毫秒），应不小于从节点最大延迟
+     */
+    @Value("${lawyer.mongo.read-your-writes-window-ms:90000}")
+    protected long readYourWritesWindowMs = 90000;
+
+    @Override
+    public T save(T entity) {
+        mongoTemplate.save(entity);
+        evict(getMetadata().getIdValue(entity));
+        bumpWriteVersion();
+        return track(entity);
+    }
+
+    @Override
+    public List<T> batchSave(List<T> entity) {
+        BulkInsertResult result = batchInsert(entity.iterator());
+        if (!result.isSuccess()) {
+            throw new IllegalStateException("批量保存部分失败：" + result + "，首个失败：" + result.getFailures().get(0));
+        }
+        return entity;
+    }
+
+    @Override
+    public BulkInsertResult batchInsert(Iterator<? extends T> entities) {
+        final int chunkSize = insertChunkSize > 0 ? insertChunkSize : 1000;
+        BulkInsertResult result = new BulkInsertResult();
+        List<Future<BulkInsertResult>> futures = runChunks(chunked(entities, chunkSize), chunk -> insertChunk(chunk));
+
+        // 汇总各块结果，块内位置换算为全局位置
+        for (int i = 0; i < futures.size(); i++) {
+            long offset = (long) i * chunkSize;
+            try {
+                BulkInsertResult chunkResult = futures.get(i).get();
+                result.setSubmittedCount(result.getSubmittedCount() + chunkResult.getSubmittedCount());
+                result.setInsertedCount(result.getInsertedCount() + chunkResult.getInsertedCount());
+                for (BulkInsertResult.DocumentFailure failure : chunkResult.getFailures()) {
+                    failure.setIndex(offset + failure.getIndex());
+                    result.getFailures().add(failure);
+                }
+            } catch (ExecutionException e) {
+                result.getFailures().add(new BulkInsertResult.DocumentFailure(offset, null, -1, e.getCause().getMessage()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.getFailures().add(new BulkInsertResult.DocumentFailure(offset, null, -1, e.getMessage()));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T update(T entity) {
+        EntityMetadata<T> meta = getMetadata();
+
+        // ID字段
+        Object idValue = meta.getIdValue(entity);
+        if (idValue == null) {
+            throw new IllegalArgumentException("实体主键不能为空");
+        }
+
+        // 没有变化则直接返回
+        Update update = toUpdate(entity);
+        if (update == null) {
+            return entity;
+        }
+        mongoTemplate.updateFirst(new Query().addCriteria(where("_id").is(idValue)), update,
+                getEntityClass(), meta.getCollectionName());
+        evict(idValue);
+        bumpWriteVersion();
+        return track(entity);
+    }
+
+    /**
+     * 生成实体的更新参数：开启变更跟踪时只包含变化的字段，否则$set全部属性
+     *
+     * @param entity 实体
+     * @return 更新参数，没有变化时返回null
+     */
+    protected Update toUpdate(T entity) {
+        ChangeTracker<T> tracker = getChangeTracker();
+        Update update = tracker == null ? null : tracker.diff(entity);
+        if (update != null) {
+            return ChangeTracker.isEmpty(update) ? null : update;
+        }
+        update = new Update();
+        for (EntityMetadata.Property property : getMetadata().getProperties()) {
+            update.set(property.getName(), property.get(entity));
+        }
+        return update;
+    }
+
+    @Override
+    public T updateLater(T entity) {
+        WriteBehindBuffer buffer = getWriteBehindBuffer();
+        if (buffer == null) {
+            return update(entity);
+        }
+        Object idValue = getMetadata().getIdValue(entity);
+        if (idValue == null) {
+            throw new IllegalArgumentException("实体主键不能为空");
+        }
+        Update update = toUpdate(entity);
+        if (update != null) {
+            buffer.submit(idValue, update);
+            evict(idValue);
+            ReadYourWrites.markWrite(getMetadata().getCollectionName());
+        }
+        return track(entity);
+    }
+
+    @Override
+    public void updateLater(Serializable id, Update update) {
+        Object idValue = toIdValue(id);
+        WriteBehindBuffer buffer = getWriteBehindBuffer();
+        if (buffer == null) {
+            mongoTemplate.updateFirst(new Query().addCriteria(where("_id").is(idValue)), update,
+                    getEntityClass(), getMetadata().getCollectionName());
+            evict(idValue);
+            bumpWriteVersion();
+            return;
+        }
+        buffer.submit(idValue, update);
+        evict(idValue);
+        ReadYourWrites.markWrite(getMetadata().getCollectionName());
+    }
+
+    @Override
+    public int flushWrites() {
+        WriteBehindBuffer buffer = getWriteBehindBuffer();
+        return buffer == null ? 0 : buffer.flush();
+    }
+
+    /**
+     * 批量写入延迟写入缓冲区中合并后的更新，由缓冲区的后台线程（或flushWrites的调用线程）执行
+     *
+     * @param updates 主键 → 更新
+     * @return 写入失败的主键数，其余主键已写入
+     */
+    protected int writeBehind(Map<Object, Update> updates) {
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, getEntityClass(), getMetadata().getCollectionName());
+        for (Map.Entry<Object, Update> entry : updates.entrySet()) {
+            operations.updateOne(new Query().addCriteria(where("_id").is(entry.getKey())), entry.getValue());
+        }
+        try {
+            operations.execute();
+            return 0;
+        } catch (BulkOperationException e) {
+            // 部分更新失败，其余更新已写入
+            return e.getErrors().size();
+        } finally {
+            for (Object id : updates.keySet()) {
+                evict(id);
+            }
+            // 在后台线程执行，提交方已在updateLater时记录写入
+            CollectionVersions.bump(getMetadata().getCollectionName());
+        }
+    }
+
+    @Override
+    public T increment(Serializable id, String field, Number delta) {
+        return findAndModify(id, new Update().inc(field, delta), true);
+    }
+
+    @Override
+    public UpdateResult push(Serializable id, String field, Object... values) {
+        return updateById(id, new Update().push(field).each(values));
+    }
+
+    @Override
+    public UpdateResult addToSet(Serializable id, String field, Object... values) {
+        return updateById(id, new Update().addToSet(field).each(values));
+    }
+
+    @Override
+    public UpdateResult pull(Serializable id, String field, Object value) {
+        return updateById(id, new Update().pull(field, value));
+    }
+
+    @Override
+    public UpdateResult updateById(Serializable id, Update update) {
+        Object idValue = toIdValue(id);
+        try {
+            return toUpdateResult(mongoTemplate.updateFirst(new Query().addCriteria(where("_id").is(idValue)), update,
+                    getEntityClass(), getMetadata().getCollectionName()));
+        } finally {
+            evict(idValue);
+            bumpWriteVersion();
+        }
+    }
+
+    @Override
+    public UpdateResult updateFirst(Query query, Update update) {
+        try {
+            return toUpdateResult(mongoTemplate.updateFirst(query, update, getEntityClass(), getMetadata().getCollectionName()));
+        } finally {
+            evictAll();
+            bumpWriteVersion();
+        }
+    }
+
+    @Override
+    public UpdateResult updateMulti(Query query, Update update) {
+        try {
+            return toUpdateResult(mongoTemplate.updateMulti(query, update, getEntityClass(), getMetadata().getCollectionName()));
+        } finally {
+            evictAll();
+            bumpWriteVersion();
+        }
+    }
+
+    @Override
+    public UpdateResult upsert(Query query, Update update) {
+        try {
+            return toUpdateResult(mongoTemplate.upsert(query, update, getEntityClass(), getMetadata().getCollectionName()));
+        } finally {
+            evictAll();
+            bumpWriteVersion();
+        }
+    }
+
+    @Override
+    public T findAndModify(Serializable id, Update update, boolean returnNew) {
+        Object idValue = toIdValue(id);
+        try {
+            T entity = mongoTemplate.findAndModify(new Query().addCriteria(where("_id").is(idValue)), update,
+                    FindAndModifyOptions.options().returnNew(returnNew), getEntityClass(), getMetadata().getCollectionName());
+            // 更新前的实体与数据库不一致，不记录快照
+            return returnNew ? track(entity) : entity;
+        } finally {
+            evict(idValue);
+            bumpWriteVersion();
+        }
+    }
+
+    @Override
+    public T findAndModify(Query query, Update update, boolean returnNew, boolean upsert) {
+        T entity = null;
+        try {
+            entity = mongoTemplate.findAndModify(query, update, FindAndModifyOptions.options().returnNew(returnNew).upsert(upsert),
+                    getEntityClass(), getMetadata().getCollectionName());
+            return returnNew ? track(entity) : entity;
+        } finally {
+            // 修改的文档即返回的文档；没有返回文档时未修改已有文档
+            if (entity != null) {
+                evict(getMetadata().getIdValue(entity));
+            }
+            bumpWriteVersion();
+        }
+    }
+
+    /**
+     * 转换更新结果
      */
-    protected Class<T> getEntityClass() {
-        return ReflectionUtils.getSuperClassGenricType(getClass());
+    private UpdateResult toUpdateResult(WriteResult writeResult) {
+        return new UpdateResult(writeResult.getN(), writeResult.isUpdateOfExisting(), writeResult.getUpsertedId());
     }
 
-    @Autowired
-    protected MongoTemplate mongoTemplate;
-
     @Override
-    public T save(T entity) {
-        mongoTemplate.save(entity);
+    public T delete(Serializable id) {
+        T entity = mongoTemplate.findAndRemove(createIdQuery(id), getEntityClass());
+        evict(id.toString());
+        bumpWriteVersion();
         return entity;
     }
 
     @Override
-    public List<T> batchSave(List<T> entity) {
-        mongoTemplate.insertAll(entity);
-        return entity;
+    public List<T> delete(Serializable... ids) {
+        if (EmptyUtils.isNotEmpty(ids)) {
+            DeleteResult<T> result = deleteBatch(Arrays.asList(ids), true);
+            if (!result.isSuccess()) {
+                throw new IllegalStateException("批量删除失败：" + result, result.getFailures().get(0).getCause());
+            }
+            // 按id顺序返回，不存在的id对应null
+            Map<Object, T> deleted = new HashMap<Object, T>();
+            for (T entity : result.getDeleted()) {
+                deleted.put(getMetadata().getIdValue(entity), entity);
+            }
+            List<T> list = new ArrayList<T>();
+            for (Serializable id : ids) {
+                list.add(deleted.get(new ObjectId(id.toString())));
+            }
+            return list;
+        }
+        return null;
     }
 
     @Override
-    public T update(T entity) {
+    public DeleteResult<T> deleteBatch(Collection<? extends Serializable> ids, final boolean returnDeleted) {
+        DeleteResult<T> result = new DeleteResult<T>();
+        if (returnDeleted) {
+            result.setDeleted(new ArrayList<T>());
+        }
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
 
-        // 反向解析对象
-        Map<String, Object> map = null;
-        try {
-            map = parseEntity(entity);
-        } catch (Exception e) {
-            e.printStackTrace();
+        // 去重并按块切分
+        Map<Object, Boolean> distinct = new LinkedHashMap<Object, Boolean>();
+        for (Serializable id : ids) {
+            distinct.put(new ObjectId(id.toString()), Boolean.TRUE);
+        }
+        List<List<Object>> chunks = partition(new ArrayList<Object>(distinct.keySet()), deleteChunkSize);
+
+        List<Future<DeleteResult<T>>> futures = runChunks(chunks.iterator(), chunk -> deleteChunk(chunk, returnDeleted));
+
+        // 汇总各块结果
+        for (int i = 0; i < futures.size(); i++) {
+            try {
+                DeleteResult<T> chunkResult = futures.get(i).get();
+                result.setDeletedCount(result.getDeletedCount() + chunkResult.getDeletedCount());
+                if (returnDeleted) {
+                    result.getDeleted().addAll(chunkResult.getDeleted());
+                }
+            } catch (ExecutionException e) {
+                result.getFailures().add(new DeleteResult.ChunkFailure(i, chunks.get(i), e.getCause()));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.getFailures().add(new DeleteResult.ChunkFailure(i, chunks.get(i), e));
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public T findById(Serializable id) {
+        final ObjectId objectId = new ObjectId(id.toString());
+
+        // 未开启缓存及读请求合并时由MongoTemplate查询，保留其异常转换及生命周期事件
+        EntityCache cache = getEntityCache();
+        final String collectionName = getMetadata().getCollectionName();
+        if (cache == null && getSingleFlight() == null) {
+            return track(mongoTemplate.findById(objectId, getEntityClass(), collectionName));
+        }
+
+        // 开启实体缓存时优先读取缓存
+        DBObject document = cache == null ? null : cache.get(objectId);
+        if (document == null) {
+            // 同一主键同时发起的读取合并为一次查询，由实际执行查询的线程放入缓存；
+            // 通过execute执行，驱动异常同样转换为DataAccessException
+            document = coalesce("id|" + objectId + "|v" + CollectionVersions.current(collectionName), () -> {
+                long evictions = entityEvictions.get();
+                DBObject loaded = mongoTemplate.execute(collectionName,
+                        collection -> collection.findOne(new BasicDBObject(KeysetCursor.ID_FIELD, objectId)));
+                if (loaded != null && cache != null) {
+                    cacheLoaded(cache, objectId, loaded, evictions);
+                }
+                return loaded;
+            });
+            if (document == null) {
+                return null;
+            }
+        }
+        return track(mongoTemplate.getConverter().read(getEntityClass(), document));
+    }
+
+    @Override
+    public T findById(Serializable id, Projection projection) {
+        Query query = projection.applyTo(createIdQuery(id));
+        return track(mongoTemplate.findOne(query, getEntityClass(), getMetadata().getCollectionName()));
+    }
+
+    @Override
+    public FindResult<T> findByIds(Collection<? extends Serializable> ids) {
+        FindResult<T> result = new FindResult<T>();
+        if (ids == null || ids.isEmpty()) {
+            return result;
+        }
+
+        // 去重，开启实体缓存时先读取缓存
+        Map<Object, Serializable> requested = new LinkedHashMap<Object, Serializable>();
+        for (Serializable id : ids) {
+            ObjectId objectId = new ObjectId(id.toString());
+            if (!requested.containsKey(objectId)) {
+                requested.put(objectId, id);
+            }
+        }
+        EntityCache cache = getEntityCache();
+        Map<Object, DBObject> documents = new HashMap<Object, DBObject>();
+        List<Object> absent = new ArrayList<Object>();
+        for (Object objectId : requested.keySet()) {
+            DBObject document = cache == null ? null : cache.get(objectId);
+            if (document == null) {
+                absent.add(objectId);
+            } else {
+                documents.put(objectId, document);
+            }
+        }
+
+        // 未缓存的id按块使用$in查询
+        DBCollection collection = mongoTemplate.getCollection(getMetadata().getCollectionName());
+        for (List<Object> chunk : partition(absent, findChunkSize > 0 ? findChunkSize : 1000)) {
+            long evictions = entityEvictions.get();
+            DBCursor cursor = collection.find(new BasicDBObject(KeysetCursor.ID_FIELD, new BasicDBObject("$in", chunk)));
+            try {
+                while (cursor.hasNext()) {
+                    DBObject document = cursor.next();
+                    Object id = document.get(KeysetCursor.ID_FIELD);
+                    documents.put(id, document);
+                    if (cache != null) {
+                        cacheLoaded(cache, id, document, evictions);
+                    }
+                }
+            } finally {
+                cursor.close();
+            }
+        }
+
+        // 按请求顺序组装，相同id返回同一实体
+        Map<Object, T> entities = new HashMap<Object, T>();
+        for (Serializable id : ids) {
+            ObjectId objectId = new ObjectId(id.toString());
+            DBObject document = documents.get(objectId);
+            T entity = null;
+            if (document != null) {
+                entity = entities.get(objectId);
+                if (entity == null) {
+                    entity = track(mongoTemplate.getConverter().read(getEntityClass(), document));
+                    entities.put(objectId, entity);
+                }
+            } else if (requested.remove(objectId) != null) {
+                result.getMissingIds().add(id);
+            }
+            result.getList().add(entity);
+        }
+        return result;
+    }
+
+    @Override
+    public BatchLoader<T> newBatchLoader() {
+        return new BatchLoader<T>(ids -> findByIds(ids).getList());
+    }
+
+    @Override
+    public List<T> findAll() {
+        return findCached(new Query());
+    }
+
+    @Override
+    public List<T> findAll(String order) {
+        List<Order> orderList = parseOrder(order);
+        if (EmptyUtils.isEmpty(orderList)) {
+            return findAll();
+        }
+        return findCached(new Query().with(new Sort(orderList)));
+    }
+
+    @Override
+    public List<T> findByProp(String propName, Object propValue) {
+        return findByProp(propName, propValue, null);
+    }
+
+    @Override
+    public List<T> findByProp(String propName, Object propValue, String order) {
+        Query query = new Query();
+        // 参数
+        query.addCriteria(where(propName).is(propValue));
+        // 排序
+        List<Order> orderList = parseOrder(order);
+        if (EmptyUtils.isNotEmpty(orderList)) {
+            query.with(new Sort(orderList));
+        }
+        return findCached(query);
+    }
+
+    @Override
+    public List<T> findByProp(String propName, Object propValue, String order, Projection projection) {
+        return findByQuery(new Query(where(propName).is(propValue)), order, projection);
+    }
+
+    @Override
+    public List<T> findByProps(String[] propName, Object[] propValue) {
+        return findByProps(propName, propValue, null);
+    }
+
+    @Override
+    public List<T> findByProps(String[] propName, Object[] propValue, String order) {
+        Query query = createQuery(propName, propValue, order);
+        return track(find(query, getEntityClass()));
+    }
+
+    @Override
+    public List<T> findByProps(String[] propName, Object[] propValue, String order, Projection projection) {
+        return findByQuery(createQuery(propName, propValue, null), order, projection);
+    }
+
+    @Override
+    public T findFirstByProps(String[] propName, Object[] propValue) {
+        return findFirstByProps(propName, propValue, null);
+    }
+
+    @Override
+    public T findFirstByProps(String[] propName, Object[] propValue, String order) {
+        // 只取第一条
+        Query query = createQuery(propName, propValue, order);
+        return track(mongoTemplate.findOne(query, getEntityClass(), getMetadata().getCollectionName()));
+    }
+
+    @Override
+    public List<T> findByPropsLogic(String[] propName, Object[] propValue, String logic) {
+        return findByPropsLogic(propName, propValue, logic, null);
+    }
+
+    @Override
+    public List<T> findByPropsLogic(String[] propName, Object[] propValue, String logic, String order) {
+        Query query = createQuery(propName, propValue, logic, order);
+        return track(find(query, getEntityClass()));
+    }
+
+    @Override
+    public List<T> findByQuery(Query query) {
+        return findByQuery(query, null);
+    }
+
+    @Override
+    public List<T> findByQuery(Query query, String order) {
+        // 排序
+        List<Order> orderList = parseOrder(order);
+        if (EmptyUtils.isNotEmpty(orderList)) {
+            query.with(new Sort(orderList));
+        }
+        //执行查询
+        List<T> list = track(find(query, getEntityClass()));
+        return list;
+    }
+
+    @Override
+    public List<T> findByQuery(Query query, String order, Projection projection) {
+        return findByQuery(projection.applyTo(query), order);
+    }
+
+    @Override
+    public <D> List<D> findByQueryAs(Query query, String order, Class<D> type) {
+        // 排序
+        List<Order> orderList = parseOrder(order);
+        if (EmptyUtils.isNotEmpty(orderList)) {
+            query.with(new Sort(orderList));
+        }
+        // 只查询DTO中的字段
+        Projection.of(type).applyTo(query);
+        return find(query, type);
+    }
+
+    @Override
+    public Stream<T> streamAll(String order) {
+        return streamByQuery(new Query(), order);
+    }
+
+    @Override
+    public Stream<T> streamByProps(String[] propName, Object[] propValue, String order) {
+        return streamByQuery(createQuery(propName, propValue, null), order);
+    }
+
+    @Override
+    public Stream<T> streamByPropsLogic(String[] propName, Object[] propValue, String logic, String order) {
+        return streamByQuery(createQuery(propName, propValue, logic, null), order);
+    }
+
+    @Override
+    public Stream<T> streamByQuery(Query query, String order) {
+        return iterateByQuery(query, order, streamBatchSize).stream();
+    }
+
+    @Override
+    public MongoCursorIterator<T> iterateByQuery(Query query, String order, int batchSize) {
+        // 排序
+        List<Order> orderList = parseOrder(order);
+        if (EmptyUtils.isNotEmpty(orderList)) {
+            query.with(new Sort(orderList));
+        }
+
+        DBCursor cursor = openCursor(query);
+
+        // 游标参数
+        cursor.batchSize(batchSize > 0 ? batchSize : streamBatchSize);
+        if (streamMaxTimeMs > 0) {
+            cursor.maxTime(streamMaxTimeMs, TimeUnit.MILLISECONDS);
+        }
+        if (streamNoCursorTimeout) {
+            cursor.addOption(Bytes.QUERYOPTION_NOTIMEOUT);
+        }
+        return new MongoCursorIterator<T>(cursor, dbObject -> mongoTemplate.getConverter().read(getEntityClass(), dbObject));
+    }
+
+    /**
+     * 生成查询结果缓存及读请求合并的键，条件、排序、投影先按实体映射转换为数据库字段及类型
+     *
+     * @param operation 操作
+     * @param query     查询对象
+     * @param skip      跳过条数
+     * @param limit     返回条数
+     * @return 键，条件中含有无法序列化的值时返回null
+     */
+    protected String queryKey(String operation, Query query, int skip, int limit) {
+        MongoPersistentEntity<?> entity = getPersistentEntity();
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        return QueryResultCache.keyOf(operation, mapper.getMappedObject(query.getQueryObject(), entity),
+                query.getSortObject() == null ? null : mapper.getMappedSort(query.getSortObject(), entity),
+                query.getFieldsObject() == null ? null : mapper.getMappedFields(query.getFieldsObject(), entity),
+                skip, limit, CollectionVersions.current(getMetadata().getCollectionName()));
+    }
+
+    /**
+     * 打开服务端游标，条件、排序、投影按实体映射转换为数据库字段
+     *
+     * @param query 查询对象
+     * @return 游标，由调用方关闭
+     */
+    protected DBCursor openCursor(Query query) {
+        MongoPersistentEntity<?> entity = getPersistentEntity();
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        DBObject fields = query.getFieldsObject() == null ? null : mapper.getMappedFields(query.getFieldsObject(), entity);
+        DBCursor cursor = mongoTemplate.getCollection(getMetadata().getCollectionName())
+                .find(mapper.getMappedObject(query.getQueryObject(), entity), fields);
+        if (query.getSortObject() != null) {
+            cursor.sort(mapper.getMappedSort(query.getSortObject(), entity));
+        }
+        if (query.getSkip() > 0) {
+            cursor.skip(query.getSkip());
+        }
+        if (query.getLimit() > 0) {
+            cursor.limit(query.getLimit());
+        }
+        return cursor;
+    }
+
+    /**
+     * 执行不分页的列表查询，结果条数受ResultSizeGuard限制
+     *
+     * @param query 查询对象
+     * @param type  结果类型
+     * @return 结果集合
+     */
+    protected <R> List<R> find(Query query, Class<R> type) {
+        ResultSizeGuard guard = getResultSizeGuard();
+        if (type.isInterface()) {
+            // 接口投影：读取为实体后包装
+            List<T> entities = guard.check(mongoTemplate.find(guard.limit(query), getEntityClass(),
+                    getMetadata().getCollectionName()), query);
+            List<R> rows = new ArrayList<R>(entities.size());
+            for (T entity : entities) {
+                rows.add(Projection.project(type, entity));
+            }
+            return rows;
+        }
+        return guard.check(mongoTemplate.find(guard.limit(query), type, getMetadata().getCollectionName()), query);
+    }
+
+    /**
+     * 执行查询，开启查询结果缓存时优先读取缓存，同时发起的相同查询合并为一次<br>
+     * 先读取集合版本号再查询，查询期间集合被写入时结果记在旧版本下，不会被之后的读取命中
+     *
+     * @param query 查询对象
+     * @return 实体集合
+     */
+    protected List<T> findCached(final Query query) {
+        ResultSizeGuard guard = getResultSizeGuard();
+        guard.limit(query);
+        QueryResultCache cache = getQueryCache();
+        String key = cache == null && getSingleFlight() == null ? null : queryKey("find", query, query.getSkip(), query.getLimit());
+        List<DBObject> documents = cache == null || key == null ? null : cache.<DBObject>get(key);
+        if (documents == null) {
+            Supplier<List<DBObject>> loader = () -> {
+                DBCursor cursor = openCursor(query);
+                try {
+                    return cursor.toArray();
+                } finally {
+                    cursor.close();
+                }
+            };
+            documents = key == null ? loader.get() : coalesce(key, loader);
+            if (cache != null && key != null) {
+                cache.put(key, documents);
+            }
+        }
+        documents = guard.check(documents, query);
+        List<T> list = new ArrayList<T>(documents.size());
+        for (DBObject document : documents) {
+            list.add(mongoTemplate.getConverter().read(getEntityClass(), document));
+        }
+        return track(list);
+    }
+
+    @Override
+    public long forEachByQuery(Query query, String order, Consumer<? super T> action) {
+        long count = 0;
+        try (MongoCursorIterator<T> iterator = iterateByQuery(query, order, streamBatchSize)) {
+            while (iterator.hasNext()) {
+                action.accept(iterator.next());
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public T uniqueByProp(String propName, Object propValue) {
+        return track(mongoTemplate.findOne(new Query(where(propName).is(propValue)), getEntityClass()));
+    }
+
+    @Override
+    public T uniqueByProps(String[] propName, Object[] propValue) {
+        Query query = createQuery(propName, propValue, null);
+        return track(mongoTemplate.findOne(query, getEntityClass()));
+    }
+
+    @Override
+    public List distinctByQuery(String distinctField, Query query) {
+        return distinctByQuery(distinctField, query, null);
+    }
+
+    @Override
+    public List distinctByQuery(String distinctField, Query query, String order) {
+        // 获取集合名称
+        String collectionName = getMetadata().getCollectionName();
+
+        // 开启查询结果缓存时优先读取缓存，返回副本
+        QueryResultCache cache = getQueryCache();
+        String key = null;
+        if (cache != null) {
+            key = QueryResultCache.keyOf("distinct:" + distinctField + ":" + order,
+                    new QueryMapper(mongoTemplate.getConverter()).getMappedObject(query.getQueryObject(), getPersistentEntity()),
+                    null, null, 0, 0, CollectionVersions.current(collectionName));
+            List<Object> values = key == null ? null : cache.get(key);
+            if (values != null) {
+                return new ArrayList<Object>(values);
+            }
+        }
+        // distinct查询
+        List<Object> values = distinctByQuery(distinctField, query, order, 0, 0);
+        if (cache != null && key != null) {
+            cache.put(key, new ArrayList<Object>(values));
+        }
+        return values;
+    }
+
+    @Override
+    public List<Object> distinctByQuery(String distinctField, Query query, String order, int skip, int limit) {
+        List<Object> values = new ArrayList<Object>();
+        try (MongoCursorIterator<Object> iterator = iterateDistinct(distinctField, query, order, skip, limit, false,
+                dbObject -> dbObject.get(KeysetCursor.ID_FIELD))) {
+            while (iterator.hasNext()) {
+                values.add(iterator.next());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public List<DistinctCount> distinctWithCount(String distinctField, Query query, String order, int skip, int limit) {
+        List<DistinctCount> values = new ArrayList<DistinctCount>();
+        try (MongoCursorIterator<DistinctCount> iterator = iterateDistinct(distinctField, query, order, skip, limit, true,
+                dbObject -> new DistinctCount(dbObject.get(KeysetCursor.ID_FIELD), ((Number) dbObject.get(DISTINCT_COUNT_FIELD)).longValue()))) {
+            while (iterator.hasNext()) {
+                values.add(iterator.next());
+            }
         }
+        return values;
+    }
 
-        // ID字段
-        String idName = null;
-        Object idValue = null;
-
-        // 生成参数
-        Update update = new Update();
-        if (EmptyUtils.isNotEmpty(map)) {
-            for (String key : map.keySet()) {
-                if (key.indexOf("{") != -1) {
-                    // 设置ID
-                    idName = key.substring(key.indexOf("{") + 1, key.indexOf("}"));
-                    idValue = map.get(key);
-                    idName = "_id";
-                    idValue = new ObjectId(idValue.toString());
+    @Override
+    public Stream<Object> streamDistinct(String distinctField, Query query, String order) {
+        return iterateDistinct(distinctField, query, order, 0, 0, false, dbObject -> dbObject.get(KeysetCursor.ID_FIELD)).stream();
+    }
+
+    /**
+     * 使用聚合执行去重查询：$match → $unwind（数组按元素去重）→ $match（排除缺少字段的文档）→ $group → $sort → $skip → $limit，以游标返回结果
+     *
+     * @param distinctField 去重查询字段
+     * @param query         条件对象
+     * @param order         排序，字段名表示按值排序，count表示按出现次数排序
+     * @param skip          跳过的值个数
+     * @param limit         返回的值个数，不大于0表示不限制
+     * @param withCount     是否统计每个值的记录数
+     * @param reader        结果文档（_id为字段值，count为记录数）的转换
+     * @return 结果迭代器
+     */
+    protected <R> MongoCursorIterator<R> iterateDistinct(String distinctField, Query query, String order, int skip, int limit,
+                                                         boolean withCount, Function<DBObject, R> reader) {
+        // 排序只能是字段值或出现次数，其他排序字段忽略
+        BasicDBObject sort = new BasicDBObject();
+        List<Order> orderList = parseOrder(order);
+        if (EmptyUtils.isNotEmpty(orderList)) {
+            for (Order o : orderList) {
+                int direction = o.isAscending() ? 1 : -1;
+                if (distinctField.equals(o.getProperty())) {
+                    sort.append(KeysetCursor.ID_FIELD, direction);
+                } else if (DISTINCT_COUNT_FIELD.equals(o.getProperty())) {
+                    sort.append(DISTINCT_COUNT_FIELD, direction);
+                    withCount = true;
                 } else {
-                    update.set(key, map.get(key));
+                    logger.warn("去重查询只能按字段值或" + DISTINCT_COUNT_FIELD + "排序，忽略排序字段：" + o.getProperty());
                 }
             }
         }
-        mongoTemplate.updateFirst(new Query().addCriteria(where(idName).is(idValue)), update, getEntityClass());
-        return entity;
-    }
 
-    @Override
-    public T delete(Serializable id) {
-        return mongoTemplate.findAndRemove(createIdQuery(id), getEntityClass());
+        String fieldPath = "$" + toFieldName(distinctField);
+        BasicDBObject group = new BasicDBObject(KeysetCursor.ID_FIELD, fieldPath);
+        if (withCount) {
+            group.append(DISTINCT_COUNT_FIELD, new BasicDBObject("$sum", 1));
+        }
+        List<DBObject> pipeline = new ArrayList<DBObject>();
+        pipeline.add(new BasicDBObject("$match",
+                new QueryMapper(mongoTemplate.getConverter()).getMappedObject(query.getQueryObject(), getPersistentEntity())));
+        // 保留字段为null的文档（与distinct命令一致，null也是一个值），空数组及缺少字段的文档随后排除
+        pipeline.add(new BasicDBObject("$unwind", new BasicDBObject("path", fieldPath).append("preserveNullAndEmptyArrays", true)));
+        pipeline.add(new BasicDBObject("$match", new BasicDBObject(toFieldName(distinctField), new BasicDBObject("$exists", true))));
+        pipeline.add(new BasicDBObject("$group", group));
+        if (!sort.isEmpty()) {
+            pipeline.add(new BasicDBObject("$sort", sort));
+        }
+        if (skip > 0) {
+            pipeline.add(new BasicDBObject("$skip", skip));
+        }
+        if (limit > 0) {
+            pipeline.add(new BasicDBObject("$limit", limit));
+        }
+
+        Cursor cursor = mongoTemplate.getCollection(getMetadata().getCollectionName()).aggregate(pipeline, cursorAggregationOptions(),
+                readPreference(ReadOperation.DISTINCT));
+        return new MongoCursorIterator<R>(cursor, reader);
     }
 
     @Override
-    public List<T> delete(Serializable... ids) {
-        if (EmptyUtils.isNotEmpty(ids)) {
-            List<T> list = new ArrayList<T>();
-            for (Serializable id : ids) {
-                list.add(mongoTemplate.findAndRemove(createIdQuery(id), getEntityClass()));
-//                mongoTemplate.remove(createIdQuery(id), getEntityClass());
-//                mongoTemplate.remove(mongoTemplate.findById(id, getEntityClass()));
+    public <O> List<O> aggregate(Aggregation aggregation, Class<O> outputType) {
+        List<O> list = new ArrayList<O>();
+        try (MongoCursorIterator<O> iterator = iterateAggregate(aggregation, outputType)) {
+            while (iterator.hasNext()) {
+                list.add(iterator.next());
             }
-            return list;
         }
-        return null;
+        return list;
     }
 
     @Override
-    public T findById(Serializable id) {
-        ObjectId objectId = new ObjectId(id.toString());
-        Query query = new Query();
-        query.addCriteria(where("_id").is(objectId));
-        return mongoTemplate.findOne(query, getEntityClass());
-//        return mongoTemplate.findById(objectId, this.getEntityClass());
+    public <O> Stream<O> aggregateStream(Aggregation aggregation, Class<O> outputType) {
+        return iterateAggregate(aggregation, outputType).stream();
+    }
+
+    /**
+     * 执行聚合并以迭代器的方式读取结果
+     *
+     * @param aggregation 聚合管道
+     * @param outputType  结果类型
+     * @return 结果迭代器
+     */
+    protected <O> MongoCursorIterator<O> iterateAggregate(Aggregation aggregation, Class<O> outputType) {
+        // 管道中的字段按输入类型（默认为实体类）映射为数据库字段
+        Class<?> inputType = aggregation instanceof TypedAggregation
+                ? ((TypedAggregation<?>) aggregation).getInputType() : getEntityClass();
+        AggregationOperationContext context = new TypeBasedAggregationOperationContext(inputType,
+                mongoTemplate.getConverter().getMappingContext(), new QueryMapper(mongoTemplate.getConverter()));
+        String collectionName = getMetadata().getCollectionName();
+        @SuppressWarnings("unchecked")
+        List<DBObject> pipeline = (List<DBObject>) aggregation.toDbObject(collectionName, context).get("pipeline");
+
+        Cursor cursor = mongoTemplate.getCollection(collectionName).aggregate(pipeline, cursorAggregationOptions(),
+                readPreference(ReadOperation.AGGREGATE));
+        return new MongoCursorIterator<O>(cursor, dbObject -> read(outputType, dbObject));
+    }
+
+    /**
+     * 以游标返回结果的聚合参数：允许使用磁盘，批次大小及最长执行时间与流式查询相同
+     *
+     * @return 聚合参数
+     */
+    protected AggregationOptions cursorAggregationOptions() {
+        AggregationOptions.Builder builder = AggregationOptions.builder()
+                .outputMode(AggregationOptions.OutputMode.CURSOR)
+                .allowDiskUse(true)
+                .batchSize(streamBatchSize);
+        if (streamMaxTimeMs > 0) {
+            builder.maxTime(streamMaxTimeMs, TimeUnit.MILLISECONDS);
+        }
+        return builder.build();
     }
 
     @Override
-    public List<T> findAll() {
-        return mongoTemplate.findAll(getEntityClass());
+    public Page<T> pageAll(Page page) {
+        return pageByQuery(page, new Query());
     }
 
     @Override
-    public List<T> findAll(String order) {
+    public Page<T> pageAll(Page page, String order) {
+        // 条件
+        Query query = new Query();
+        // 排序
         List<Order> orderList = parseOrder(order);
-        if (EmptyUtils.isEmpty(orderList)) {
-            return findAll();
+        if (EmptyUtils.isNotEmpty(orderList)) {
+            query.with(new Sort(orderList));
         }
-        return mongoTemplate.find(new Query().with(new Sort(orderList)), getEntityClass());
+        return pageByQuery(page, query);
     }
 
     @Override
-    public List<T> findByProp(String propName, Object propValue) {
-        return findByProp(propName, propValue, null);
+    public Page<T> pageByQuery(Page page, Query query) {
+        return pageByQuery(page, query, null);
     }
 
     @Override
-    public List<T> findByProp(String propName, Object propValue, String order) {
-        Query query = new Query();
-        // 参数
-        query.addCriteria(where(propName).is(propValue));
+    public Page<T> pageByQuery(Page page, Query query, String order) {
         // 排序
         List<Order> orderList = parseOrder(order);
         if (EmptyUtils.isNotEmpty(orderList)) {
             query.with(new Sort(orderList));
         }
-        return mongoTemplate.find(query, getEntityClass());
+        PageSlice<T> slice;
+        if (page.isInit() && page.getInitPage() == -1) {
+            // 初始化显示最后一页，需先得到总页数才能确定skip，无法合并为一次查询
+            page.setTotalCount(count(query));
+            page.setPage((int) Math.max(page.getTotalPage(), 1));
+            slice = pageSlice(query, page.getShowCount() * (page.getPage() - 1), page.getShowCount(), false);
+        } else {
+            slice = pageSlice(query, page.getShowCount() * (page.getPage() - 1), page.getShowCount(), page.isCountTotal());
+        }
+        // 设置数据总数、总页数
+        if (slice.total >= 0) {
+            page.setTotalCount(slice.total);
+        }
+        // 保存查询结果
+        page.setRows(slice.rows);
+        page.setHasNext(slice.hasNext);
+        return page;
     }
 
     @Override
-    public List<T> findByProps(String[] propName, Object[] propValue) {
-        return findByProps(propName, propValue, null);
+    public PageModel<T> pageAll(int pageNo, int pageSize) {
+        return pageAll(pageNo, pageSize, null);
     }
 
     @Override
-    public List<T> findByProps(String[] propName, Object[] propValue, String order) {
-        Query query = createQuery(propName, propValue, order);
-        return mongoTemplate.find(query, getEntityClass());
+    public PageModel<T> pageAll(int pageNo, int pageSize, String order) {
+        return pageByProp(pageNo, pageSize, null, null, order);
     }
 
     @Override
-    public T findFirstByProps(String[] propName, Object[] propValue) {
-        return findFirstByProps(propName, propValue, null);
+    public PageModel<T> pageByProp(int pageNo, int pageSize, String param, Object value) {
+        return pageByProp(pageNo, pageSize, param, value, null);
     }
 
     @Override
-    public T findFirstByProps(String[] propName, Object[] propValue, String order) {
-        Query query = createQuery(propName, propValue, order);
-        List<T> list = mongoTemplate.find(query, getEntityClass());
-        if (EmptyUtils.isEmpty(list)) {
-            return null;
+    public PageModel<T> pageByProp(int pageNo, int pageSize, String param, Object value, String order) {
+        String[] params = null;
+        Object[] values = null;
+        if (EmptyUtils.isNotEmpty(param)) {
+            params = new String[]{param};
+            values = new Object[]{value};
         }
-        return list.get(0);
+        return pageByProps(pageNo, pageSize, params, values, order);
     }
 
     @Override
-    public List<T> findByPropsLogic(String[] propName, Object[] propValue, String logic) {
-        return findByPropsLogic(propName, propValue, logic, null);
+    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values) {
+        return pageByProps(pageNo, pageSize, params, values, null);
     }
 
     @Override
-    public List<T> findByPropsLogic(String[] propName, Object[] propValue, String logic, String order) {
-        Query query = createQuery(propName, propValue, logic, order);
-        return mongoTemplate.find(query, getEntityClass());
+    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order) {
+        return pageByProps(pageNo, pageSize, params, values, order, true);
     }
 
     @Override
-    public List<T> findByQuery(Query query) {
-        return findByQuery(query, null);
+    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, boolean countTotal) {
+        // 创建分页模型对象
+        PageModel<T> page = new PageModel<>(pageNo, pageSize);
+
+        // 查询条件
+        Query query = createQuery(params, values, order);
+
+        // 一次查询得到数据列表及总记录数
+        PageSlice<T> slice = pageSlice(query, page.getFirstResult(), page.getPageSize(), countTotal);
+
+        // 封装结果数据
+        if (slice.total >= 0) {
+            page.setTotalCount((int) slice.total);
+        }
+        page.setList(slice.rows);
+        page.setHasNext(slice.hasNext);
+
+        return page;
     }
 
     @Override
-    public List<T> findByQuery(Query query, String order) {
-        // 排序
-        List<Order> orderList = parseOrder(order);
-        if (EmptyUtils.isNotEmpty(orderList)) {
-            query.with(new Sort(orderList));
+    public Page<T> pageByCursor(Page page, Query query, String order) {
+        // 接口参数沿用pageByQuery的原始类型Page，其中的数据行只由本方法写入，类型必为T
+        @SuppressWarnings("unchecked")
+        Page<T> result = page;
+        if (EmptyUtils.isEmpty(result.getCursor())) {
+            // 仅首次查询时统计总数，翻页时由客户端沿用
+            result.setTotalCount(count(query));
         }
-        //执行查询
-        List<T> list = mongoTemplate.find(query, getEntityClass());
-        return list;
+        CursorSlice<T> slice = sliceByCursor(query, order, result.getCursor(), result.getShowCount());
+        result.setRows(slice.rows);
+        result.setNextCursor(slice.nextCursor);
+        result.setPrevCursor(slice.prevCursor);
+        return result;
     }
 
     @Override
-    public T uniqueByProp(String propName, Object propValue) {
-        return mongoTemplate.findOne(new Query(where(propName).is(propValue)), getEntityClass());
+    public PageModel<T> pageByCursor(int pageNo, int pageSize, String cursor, String[] params, Object[] values, String order) {
+        // 创建分页模型对象
+        PageModel<T> page = new PageModel<>(pageNo, pageSize);
+
+        // 仅首次查询时统计总记录数
+        if (EmptyUtils.isEmpty(cursor)) {
+            page.setTotalCount(countByCondition(params, values));
+        }
+
+        // 按游标查询数据列表
+        CursorSlice<T> slice = sliceByCursor(createQuery(params, values, null), order, cursor, page.getPageSize());
+        page.setList(slice.rows);
+        page.setNextCursor(slice.nextCursor);
+        page.setPrevCursor(slice.prevCursor);
+
+        return page;
     }
 
     @Override
-    public T uniqueByProps(String[] propName, Object[] propValue) {
-        Query query = createQuery(propName, propValue, null);
-        return mongoTemplate.findOne(query, getEntityClass());
+    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order, Projection projection) {
+        // 创建分页模型对象
+        PageModel<T> page = new PageModel<>(pageNo, pageSize);
+
+        // 查询条件及投影
+        Query query = projection.applyTo(createQuery(params, values, order));
+
+        // 一次查询得到数据列表及总记录数
+        PageSlice<T> slice = pageSlice(query, page.getFirstResult(), page.getPageSize(), true);
+        page.setTotalCount((int) slice.total);
+        page.setList(slice.rows);
+        page.setHasNext(slice.hasNext);
+
+        return page;
     }
 
     @Override
-    public List distinctByQuery(String distinctField, Query query) {
-        return distinctByQuery(distinctField, query, null);
+    public <D> PageModel<D> pageByPropsAs(int pageNo, int pageSize, String[] params, Object[] values, String order, Class<D> type) {
+        // 创建分页模型对象
+        PageModel<D> page = new PageModel<>(pageNo, pageSize);
+
+        // 查询条件，只查询DTO中的字段
+        Query query = Projection.of(type).applyTo(createQuery(params, values, order));
+
+        // 一次查询得到数据列表及总记录数
+        PageSlice<D> slice = pageSlice(query, page.getFirstResult(), page.getPageSize(), true, type);
+        page.setTotalCount((int) slice.total);
+        page.setList(slice.rows);
+        page.setHasNext(slice.hasNext);
+
+        return page;
     }
 
     @Override
-    public List distinctByQuery(String distinctField, Query query, String order) {
-        // 排序
-        List<Order> orderList = parseOrder(order);
-        if (EmptyUtils.isNotEmpty(orderList)) {
-            query.with(new Sort(orderList));
-        }
-        // 获取集合名称
-        String collectionName = this.mongoTemplate.getCollectionName(getEntityClass());
-        // distinct查询
-        return this.mongoTemplate.getCollection(collectionName).distinct(distinctField, query.getQueryObject());
+    public int countByCondition(String[] params, Object[] values) {
+        Query query = createQuery(params, values, null);
+        Long count = count(query);
+        return count.intValue();
     }
 
     @Override
-    public Page<T> pageAll(Page page) {
-        return pageByQuery(page, new Query());
+    public List<T> findByTemplate(QueryTemplate template, Object... values) {
+        return track(find(template.bind(values), getEntityClass()));
     }
 
     @Override
-    public Page<T> pageAll(Page page, String order) {
-        // 条件
-        Query query = new Query();
-        // 排序
+    public T findFirstByTemplate(QueryTemplate template, Object... values) {
+        return track(mongoTemplate.findOne(template.bind(values), getEntityClass(), getMetadata().getCollectionName()));
+    }
+
+    @Override
+    public long countByTemplate(QueryTemplate template, Object... values) {
+        return count(template.bind(values));
+    }
+
+    @Override
+    public PageModel<T> pageByTemplate(int pageNo, int pageSize, QueryTemplate template, Object... values) {
+        // 创建分页模型对象
+        PageModel<T> page = new PageModel<>(pageNo, pageSize);
+
+        // 一次查询得到数据列表及总记录数
+        PageSlice<T> slice = pageSlice(template.bind(values), page.getFirstResult(), page.getPageSize(), true);
+
+        // 封装结果数据
+        page.setTotalCount((int) slice.total);
+        page.setList(slice.rows);
+        page.setHasNext(slice.hasNext);
+        return page;
+    }
+
+    /**
+     * 查询满足条件的记录数，按计数的读偏好路由
+     *
+     * @param query 条件对象
+     * @return 记录数
+     */
+    protected long count(Query query) {
+        DBObject criteria = new QueryMapper(mongoTemplate.getConverter()).getMappedObject(query.getQueryObject(), getPersistentEntity());
+        return mongoTemplate.getCollection(getMetadata().getCollectionName()).count(criteria, readPreference(ReadOperation.COUNT));
+    }
+
+    /**
+     * 查询一页数据<br>
+     * 统计总数且排序可以使用索引时，使用$facet聚合在一次往返中同时返回数据列表与总数；<br>
+     * 排序无法使用索引时，$facet之前的$sort需对全部匹配文档排序（不能利用limit做top-k排序），改为分别统计总数和查询本页；<br>
+     * 不统计总数时多取一条（limit+1）用于判断是否还有下一页
+     *
+     * @param query      条件对象（含排序、投影）
+     * @param skip       跳过的记录数
+     * @param limit      页容量
+     * @param countTotal 是否统计总数
+     * @return 本页数据、总数（未统计时为-1）及是否还有下一页
+     */
+    protected PageSlice<T> pageSlice(final Query query, final int skip, final int limit, final boolean countTotal) {
+        // 同时发起的相同分页查询合并为一次，共享原始文档后各自转换
+        String key = getSingleFlight() == null ? null
+                : queryKey("page:" + countTotal + ":" + readPreference(ReadOperation.PAGE).getName(), query, skip, limit);
+        PageSlice<DBObject> documents = key == null ? pageSlice(query, skip, limit, countTotal, DBObject.class)
+                : coalesce(key, () -> pageSlice(query, skip, limit, countTotal, DBObject.class));
+
+        PageSlice<T> slice = new PageSlice<T>();
+        slice.total = documents.total;
+        slice.hasNext = documents.hasNext;
+        slice.rows = new ArrayList<T>(documents.rows.size());
+        for (DBObject document : documents.rows) {
+            slice.rows.add(mongoTemplate.getConverter().read(getEntityClass(), document));
+        }
+        track(slice.rows);
+        return slice;
+    }
+
+    /**
+     * 查询一页数据，并映射为指定类型
+     *
+     * @param query      条件对象（含排序、投影）
+     * @param skip       跳过的记录数
+     * @param limit      页容量
+     * @param countTotal 是否统计总数
+     * @param type       结果类型
+     * @return 本页数据、总数（未统计时为-1）及是否还有下一页
+     */
+    protected <R> PageSlice<R> pageSlice(Query query, int skip, int limit, boolean countTotal, Class<R> type) {
+        PageSlice<R> slice = new PageSlice<R>();
+        if (!countTotal) {
+            query.skip(skip);
+            query.limit(limit + 1);
+            List<R> rows = new ArrayList<R>();
+            DBCursor cursor = openCursor(query).setReadPreference(readPreference(ReadOperation.PAGE));
+            try {
+                while (cursor.hasNext()) {
+                    rows.add(read(type, cursor.next()));
+                }
+            } finally {
+                cursor.close();
+            }
+            slice.hasNext = rows.size() > limit;
+            slice.rows = slice.hasNext ? new ArrayList<R>(rows.subList(0, limit)) : rows;
+            return slice;
+        }
+
+        // 条件、排序、投影按实体映射转换为数据库字段
+        MongoPersistentEntity<?> entity = getPersistentEntity();
+        QueryMapper mapper = new QueryMapper(mongoTemplate.getConverter());
+        DBObject criteria = mapper.getMappedObject(query.getQueryObject(), entity);
+        DBObject sort = query.getSortObject() == null ? null : mapper.getMappedSort(query.getSortObject(), entity);
+        if (!isMatchable(criteria) || (sort != null && !sort.keySet().isEmpty() && !isSortIndexed(sort, criteria, getIndexKeys()))) {
+            // $match不支持的条件或排序无法使用索引：分别统计总数和查询本页
+            long total = count(query);
+            slice = pageSlice(query, skip, limit, false, type);
+            slice.total = total;
+            slice.hasNext = skip + slice.rows.size() < total;
+            return slice;
+        }
+        List<DBObject> pipeline = new ArrayList<DBObject>();
+        pipeline.add(new BasicDBObject("$match", criteria));
+        if (sort != null && !sort.keySet().isEmpty()) {
+            pipeline.add(new BasicDBObject("$sort", sort));
+        }
+        BasicDBList rowsStages = new BasicDBList();
+        rowsStages.add(new BasicDBObject("$skip", skip));
+        rowsStages.add(new BasicDBObject("$limit", limit));
+        if (query.getFieldsObject() != null) {
+            rowsStages.add(new BasicDBObject("$project", mapper.getMappedFields(query.getFieldsObject(), entity)));
+        }
+        BasicDBList totalStages = new BasicDBList();
+        totalStages.add(new BasicDBObject("$count", "count"));
+        pipeline.add(new BasicDBObject("$facet", new BasicDBObject("rows", rowsStages).append("total", totalStages)));
+
+        // 执行聚合，结果只有一个文档：{rows: [...], total: [{count: n}]}
+        String collectionName = getMetadata().getCollectionName();
+        Cursor cursor = mongoTemplate.getCollection(collectionName).aggregate(pipeline, cursorAggregationOptions(),
+                readPreference(ReadOperation.PAGE));
+        try {
+            DBObject result = cursor.hasNext() ? cursor.next() : new BasicDBObject();
+            List<R> rows = new ArrayList<R>();
+            List<?> docs = (List<?>) result.get("rows");
+            if (docs != null) {
+                for (Object doc : docs) {
+                    rows.add(read(type, (DBObject) doc));
+                }
+            }
+            List<?> total = (List<?>) result.get("total");
+            slice.total = EmptyUtils.isEmpty(total) ? 0 : ((Number) ((DBObject) total.get(0)).get("count")).longValue();
+            slice.rows = rows;
+            slice.hasNext = skip + rows.size() < slice.total;
+        } finally {
+            cursor.close();
+        }
+        return slice;
+    }
+
+    /**
+     * 获取集合各索引的键，读取失败时返回空集合（视为排序无法使用索引）
+     *
+     * @return 索引的键
+     */
+    protected List<DBObject> getIndexKeys() {
+        List<DBObject> keys = indexKeys;
+        long now = System.currentTimeMillis();
+        if (keys == null || now - indexKeysLoadedAt > INDEX_KEYS_TTL_MS) {
+            keys = new ArrayList<DBObject>();
+            try {
+                for (DBObject index : mongoTemplate.getCollection(getMetadata().getCollectionName()).getIndexInfo()) {
+                    keys.add((DBObject) index.get("key"));
+                }
+            } catch (RuntimeException e) {
+                logger.warn("读取集合索引出错：" + e.getMessage());
+            }
+            indexKeys = keys;
+            indexKeysLoadedAt = now;
+        }
+        return keys;
+    }
+
+    /**
+     * 排序能否使用索引：某个索引的键在跳过条件中等值匹配的前缀字段后，依次与排序字段相同，且方向全部相同或全部相反
+     *
+     * @param sort      排序（数据库字段）
+     * @param criteria  条件（数据库字段）
+     * @param indexKeys 集合各索引的键
+     * @return true or false
+     */
+    static boolean isSortIndexed(DBObject sort, DBObject criteria, List<DBObject> indexKeys) {
+        List<String> sortFields = new ArrayList<String>(sort.keySet());
+        for (DBObject index : indexKeys) {
+            List<String> indexFields = new ArrayList<String>(index.keySet());
+            int offset = 0;
+            while (offset < indexFields.size() && !sortFields.contains(indexFields.get(offset))
+                    && isEquality(criteria.get(indexFields.get(offset)))) {
+                offset++;
+            }
+            if (indexFields.size() - offset < sortFields.size()) {
+                continue;
+            }
+            Boolean reversed = null;
+            boolean matched = true;
+            for (int i = 0; i < sortFields.size() && matched; i++) {
+                String field = sortFields.get(i);
+                Object indexDirection = index.get(indexFields.get(offset + i));
+                Object sortDirection = sort.get(field);
+                if (!field.equals(indexFields.get(offset + i)) || !(indexDirection instanceof Number) || !(sortDirection instanceof Number)) {
+                    matched = false;
+                } else {
+                    boolean same = ((Number) indexDirection).doubleValue() > 0 == ((Number) sortDirection).doubleValue() > 0;
+                    if (reversed == null) {
+                        reversed = !same;
+                    } else if (reversed == same) {
+                        matched = false;
+                    }
+                }
+            }
+            if (matched) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 条件值是否为等值匹配（不含操作符、正则）
+     */
+    private static boolean isEquality(Object value) {
+        if (value == null || value instanceof Pattern) {
+            return false;
+        }
+        if (value instanceof DBObject) {
+            for (String key : ((DBObject) value).keySet()) {
+                if (key.startsWith("$")) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 条件能否用于聚合的$match：$match不支持$where、$near、$nearSphere
+     *
+     * @param criteria 条件（数据库字段）
+     * @return true or false
+     */
+    static boolean isMatchable(Object criteria) {
+        if (criteria instanceof DBObject) {
+            DBObject object = (DBObject) criteria;
+            for (String key : object.keySet()) {
+                if ("$where".equals(key) || "$near".equals(key) || "$nearSphere".equals(key)
+                        || !isMatchable(object.get(key))) {
+                    return false;
+                }
+            }
+        } else if (criteria instanceof Collection) {
+            for (Object item : (Collection<?>) criteria) {
+                if (!isMatchable(item)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 将文档转换为指定类型，类型为DBObject时直接返回原始文档，接口先读取为实体再包装为投影
+     *
+     * @param type     结果类型
+     * @param document 文档
+     * @return 结果
+     */
+    protected <R> R read(Class<R> type, DBObject document) {
+        if (type.isInstance(document)) {
+            return type.cast(document);
+        }
+        if (type.isInterface()) {
+            return Projection.project(type, mongoTemplate.getConverter().read(getEntityClass(), document));
+        }
+        return mongoTemplate.getConverter().read(type, document);
+    }
+
+    /**
+     * 按游标查询一页数据<br>
+     * 排序规则追加_id后转换为范围条件，多取一条用于判断是否还有更多数据
+     *
+     * @param query 条件对象
+     * @param order 排序
+     * @param token 游标字符串，为空表示第一页
+     * @param size  页容量
+     * @return 本页数据及前后游标
+     */
+    protected CursorSlice<T> sliceByCursor(Query query, String order, String token, int size) {
+        // 排序字段转换为数据库字段名，并以_id保证顺序唯一
+        List<Order> orders = new ArrayList<Order>();
         List<Order> orderList = parseOrder(order);
         if (EmptyUtils.isNotEmpty(orderList)) {
-            query.with(new Sort(orderList));
+            for (Order o : orderList) {
+                orders.add(new Order(o.getDirection(), toFieldName(o.getProperty())));
+            }
+        }
+        orders = KeysetCursor.withIdTiebreaker(orders);
+
+        KeysetCursor cursor = KeysetCursor.decode(token, orders);
+        boolean forward = cursor == null || cursor.isForward();
+        // 向前翻页时反向排序查询，再将结果倒置
+        List<Order> effective = forward ? orders : KeysetCursor.reverse(orders);
+
+        DBObject criteria = query.getQueryObject();
+        if (cursor != null) {
+            criteria = new BasicDBObject("$and", Arrays.asList(criteria, cursor.toCriteria(effective)));
+        }
+        BasicQuery seek = new BasicQuery(criteria, query.getFieldsObject());
+        seek.with(new Sort(effective));
+        seek.limit(size + 1);
+
+        List<T> rows = new ArrayList<T>(size + 1);
+        DBCursor dbCursor = openCursor(seek).setReadPreference(readPreference(ReadOperation.PAGE));
+        try {
+            while (dbCursor.hasNext()) {
+                rows.add(mongoTemplate.getConverter().read(getEntityClass(), dbCursor.next()));
+            }
+        } finally {
+            dbCursor.close();
+        }
+        track(rows);
+        boolean more = rows.size() > size;
+        if (more) {
+            rows = new ArrayList<T>(rows.subList(0, size));
+        }
+        if (!forward) {
+            Collections.reverse(rows);
         }
-        return pageByQuery(page, query);
-    }
 
-    @Override
-    public Page<T> pageByQuery(Page page, Query query) {
-        return pageByQuery(page, query, null);
+        CursorSlice<T> slice = new CursorSlice<T>();
+        slice.rows = rows;
+        if (EmptyUtils.isNotEmpty(rows)) {
+            // 向后翻页：多取到数据才有下一页，带游标则必有上一页；向前翻页反之
+            boolean hasNext = forward ? more : true;
+            boolean hasPrev = forward ? cursor != null : more;
+            if (hasNext) {
+                slice.nextCursor = KeysetCursor.encode(orders, toDBObject(rows.get(rows.size() - 1)), true);
+            }
+            if (hasPrev) {
+                slice.prevCursor = KeysetCursor.encode(orders, toDBObject(rows.get(0)), false);
+            }
+        }
+        return slice;
     }
 
-    @Override
-    public Page<T> pageByQuery(Page page, Query query, String order) {
-        if (page.isInit() && page.getInitPage() == -1) {
-            // 设置数据总数、总页数
-            page.setTotalCount(mongoTemplate.count(query, getEntityClass()));
-            page.setPage((int) page.getTotalPage());
-        }
-        // 排序
-        List<Order> orderList = parseOrder(order);
-        if (EmptyUtils.isNotEmpty(orderList)) {
-            query.with(new Sort(orderList));
+    /**
+     * 将实体属性名转换为数据库字段名，如@Id字段转换为_id
+     *
+     * @param property 属性名
+     * @return 字段名
+     */
+    protected String toFieldName(String property) {
+        MongoPersistentEntity<?> entity = getPersistentEntity();
+        if (entity != null) {
+            MongoPersistentProperty persistentProperty = entity.getPersistentProperty(property);
+            if (persistentProperty != null) {
+                return persistentProperty.getFieldName();
+            }
         }
-        // 设置数据总数、总页数
-        page.setTotalCount(mongoTemplate.count(query, getEntityClass()));
-        // skip
-        query.skip(page.getShowCount() * (page.getPage() - 1));
-        // limit
-        query.limit(page.getShowCount());
-        // 执行查询
-        List<T> list = mongoTemplate.find(query, getEntityClass());
-        // 保存查询结果
-        page.setRows(list);
-        return page;
+        return property;
     }
 
-    @Override
-    public PageModel<T> pageAll(int pageNo, int pageSize) {
-        return pageAll(pageNo, pageSize, null);
+    /**
+     * 获取实体的映射信息
+     *
+     * @return 映射信息
+     */
+    protected MongoPersistentEntity<?> getPersistentEntity() {
+        return mongoTemplate.getConverter().getMappingContext().getPersistentEntity(getEntityClass());
     }
 
-    @Override
-    public PageModel<T> pageAll(int pageNo, int pageSize, String order) {
-        return pageByProp(pageNo, pageSize, null, null, order);
+    /**
+     * 将实体转换为与数据库一致的文档对象
+     *
+     * @param entity 实体
+     * @return 文档对象
+     */
+    protected DBObject toDBObject(T entity) {
+        BasicDBObject dbObject = new BasicDBObject();
+        mongoTemplate.getConverter().write(entity, dbObject);
+        return dbObject;
     }
 
-    @Override
-    public PageModel<T> pageByProp(int pageNo, int pageSize, String param, Object value) {
-        return pageByProp(pageNo, pageSize, param, value, null);
+    /**
+     * 删除一块id
+     *
+     * @param ids           id
+     * @param returnDeleted 是否先读取被删除的文档
+     * @return 本块的删除结果
+     */
+    protected DeleteResult<T> deleteChunk(List<Object> ids, boolean returnDeleted) {
+        DeleteResult<T> result = new DeleteResult<T>();
+        Query query = new Query(where("_id").in(ids));
+        if (returnDeleted) {
+            result.setDeleted(mongoTemplate.find(query, getEntityClass(), getMetadata().getCollectionName()));
+            if (result.getDeleted().isEmpty()) {
+                return result;
+            }
+        }
+        try {
+            WriteResult writeResult = mongoTemplate.remove(query, getEntityClass(), getMetadata().getCollectionName());
+            result.setDeletedCount(writeResult.getN());
+        } finally {
+            for (Object id : ids) {
+                evict(id);
+            }
+            bumpWriteVersion();
+        }
+        return result;
     }
 
-    @Override
-    public PageModel<T> pageByProp(int pageNo, int pageSize, String param, Object value, String order) {
-        String[] params = null;
-        Object[] values = null;
-        if (EmptyUtils.isNotEmpty(param)) {
-            params = new String[]{param};
-            values = new Object[]{value};
+    /**
+     * 无序批量写入一块实体，没有主键的实体先生成ObjectId并回填
+     *
+     * @param chunk 实体
+     * @return 本块的写入结果，失败文档的位置为块内位置
+     */
+    protected BulkInsertResult insertChunk(List<? extends T> chunk) {
+        BulkInsertResult result = new BulkInsertResult();
+        result.setSubmittedCount(chunk.size());
+        List<Object> ids = new ArrayList<Object>(chunk.size());
+        BulkOperations operations = mongoTemplate.bulkOps(BulkMode.UNORDERED, getEntityClass(), getMetadata().getCollectionName());
+        for (T entity : chunk) {
+            getMetadata().assignIdIfAbsent(entity);
+            DBObject dbObject = toDBObject(entity);
+            ids.add(dbObject.get(KeysetCursor.ID_FIELD));
+            operations.insert(dbObject);
         }
-        return pageByProps(pageNo, pageSize, params, values, order);
+        try {
+            result.setInsertedCount(operations.execute().getInsertedCount());
+        } catch (BulkOperationException e) {
+            // 部分文档失败，其余文档已写入
+            result.setInsertedCount(e.getResult().getInsertedCount());
+            for (BulkWriteError error : e.getErrors()) {
+                result.getFailures().add(new BulkInsertResult.DocumentFailure(error.getIndex(), ids.get(error.getIndex()),
+                        error.getCode(), error.getMessage()));
+            }
+        } catch (RuntimeException e) {
+            // 整块提交失败
+            for (int i = 0; i < ids.size(); i++) {
+                result.getFailures().add(new BulkInsertResult.DocumentFailure(i, ids.get(i), -1, e.getMessage()));
+            }
+        } finally {
+            for (Object id : ids) {
+                evict(id);
+            }
+            bumpWriteVersion();
+        }
+        return result;
     }
 
-    @Override
-    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values) {
-        return pageByProps(pageNo, pageSize, params, values, null);
+    /**
+     * 按块执行任务<br>
+     * 只有一块或并行度不大于1时在当前线程顺序执行；否则提交到批量操作线程池，<br>
+     * 同时执行的块数不超过bulkParallelism，超过时暂停读取下一块（背压）
+     *
+     * @param chunks 数据块，按需读取
+     * @param task   每块执行的任务
+     * @return 与数据块一一对应的结果
+     */
+    protected <C, R> List<Future<R>> runChunks(Iterator<C> chunks, final Function<C, R> task) {
+        List<Future<R>> futures = new ArrayList<Future<R>>();
+        final Semaphore permits = new Semaphore(Math.max(bulkParallelism, 1));
+        while (chunks.hasNext()) {
+            final C chunk = chunks.next();
+            if (bulkParallelism <= 1 || (futures.isEmpty() && !chunks.hasNext())) {
+                CompletableFuture<R> future = new CompletableFuture<R>();
+                try {
+                    future.complete(task.apply(chunk));
+                } catch (RuntimeException e) {
+                    future.completeExceptionally(e);
+                }
+                futures.add(future);
+                continue;
+            }
+            permits.acquireUninterruptibly();
+            // 工作线程使用调用线程的读己之写记录，写入记录给调用线程
+            final Map<String, Long> writes = ReadYourWrites.capture();
+            try {
+                futures.add(DaoExecutors.bulk().submit(() -> {
+                    Map<String, Long> previous = ReadYourWrites.attach(writes);
+                    try {
+                        return task.apply(chunk);
+                    } finally {
+                        ReadYourWrites.attach(previous);
+                        permits.release();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                permits.release();
+                throw e;
+            }
+        }
+        return futures;
     }
 
-    @Override
-    public PageModel<T> pageByProps(int pageNo, int pageSize, String[] params, Object[] values, String order) {
-        // 创建分页模型对象
-        PageModel<T> page = new PageModel<>(pageNo, pageSize);
-
-        // 查询总记录数
-        int count = countByCondition(params, values);
-        page.setTotalCount(count);
-
-        // 查询数据列表
-        Query query = createQuery(params, values, order);
-
-        // 设置分页信息
-        query.skip(page.getFirstResult());
-        query.limit(page.getPageSize());
-
-        // 封装结果数据
-        page.setList(mongoTemplate.find(query, getEntityClass()));
+    /**
+     * 将迭代器按指定大小分块，按需读取，不会一次读入全部元素
+     *
+     * @param source 元素迭代器
+     * @param size   每块大小
+     * @return 块迭代器
+     */
+    protected static <E> Iterator<List<E>> chunked(final Iterator<? extends E> source, final int size) {
+        return new Iterator<List<E>>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
 
-        return page;
+            @Override
+            public List<E> next() {
+                if (!source.hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                List<E> chunk = new ArrayList<E>(size);
+                while (chunk.size() < size && source.hasNext()) {
+                    chunk.add(source.next());
+                }
+                return chunk;
+            }
+        };
     }
 
-    @Override
-    public int countByCondition(String[] params, Object[] values) {
-        Query query = createQuery(params, values, null);
-        Long count = mongoTemplate.count(query, getEntityClass());
-        return count.intValue();
+    /**
+     * 将集合按指定大小切分
+     *
+     * @param list 集合
+     * @param size 每块大小
+     * @return 切分后的块
+     */
+    protected static <E> List<List<E>> partition(List<E> list, int size) {
+        int chunkSize = size > 0 ? size : Math.max(list.size(), 1);
+        List<List<E>> chunks = new ArrayList<List<E>>();
+        for (int i = 0; i < list.size(); i += chunkSize) {
+            chunks.add(new ArrayList<E>(list.subList(i, Math.min(i + chunkSize, list.size()))));
+        }
+        return chunks;
     }
 
     /**
@@ -423,105 +2348,119 @@ public class MongoDaoImpl<T> implements MongoDao<T> {
      * 解析Order字符串为所需参数
      *
      * @param order 排序参数，如[id]、[id asc]、[id asc,name desc]
-     * @return Order对象集合
+     * @return Order对象集合（不可修改）
      */
     protected List<Order> parseOrder(String order) {
-        List<Order> list = null;
-        if (EmptyUtils.isNotEmpty(order)) {
-            list = new ArrayList<Order>();
-            // 共有几组排序字段
-            String[] fields = order.split(",");
-            Order o = null;
-            String[] item = null;
-            for (int i = 0; i < fields.length; i++) {
-                if (EmptyUtils.isEmpty(fields[i])) {
-                    continue;
-                }
-                item = fields[i].split(" ");
-                if (item.length == 1) {
-                    o = new Order(Direction.ASC, item[0]);
-                } else if (item.length == 2) {
-                    o = new Order("desc".equalsIgnoreCase(item[1]) ? Direction.DESC : Direction.ASC, item[0]);
-                } else {
-                    throw new RuntimeException("排序字段参数解析出错");
-                }
-                list.add(o);
+        if (EmptyUtils.isEmpty(order)) {
+            return null;
+        }
+        // 排序字符串大多是常量，解析结果不可变，缓存后复用
+        List<Order> list = ORDER_CACHE.get(order);
+        if (list != null) {
+            return list;
+        }
+        list = new ArrayList<Order>();
+        // 共有几组排序字段
+        String[] fields = order.split(",");
+        Order o = null;
+        String[] item = null;
+        for (int i = 0; i < fields.length; i++) {
+            if (EmptyUtils.isEmpty(fields[i])) {
+                continue;
             }
+            item = fields[i].split(" ");
+            if (item.length == 1) {
+                o = new Order(Direction.ASC, item[0]);
+            } else if (item.length == 2) {
+                o = new Order("desc".equalsIgnoreCase(item[1]) ? Direction.DESC : Direction.ASC, item[0]);
+            } else {
+                throw new RuntimeException("排序字段参数解析出错");
+            }
+            list.add(o);
+        }
+        list = Collections.unmodifiableList(list);
+        if (ORDER_CACHE.size() < ORDER_CACHE_SIZE) {
+            ORDER_CACHE.putIfAbsent(order, list);
         }
         return list;
     }
 
     /**
-     * 将对象的字段及值反射解析为Map对象<br>
-     * 这里使用Java反射机制手动解析，并且可以识别注解为主键的字段，以达到根据id进行更新实体的目的<br>
+     * 将对象的字段及值解析为Map对象<br>
+     * 使用启动时解析的实体元数据读取属性，并且可以识别注解为主键的字段，以达到根据id进行更新实体的目的<br>
      * key：字段名称，value：字段对应的值
      *
      * @param t 要修改的对象
      * @return Map对象，注意：id字段的key封装为“{id字段名称}”，以供后续识别
-     * @throws Exception
      */
-    protected Map<String, Object> parseEntity(T t) throws Exception {
+    protected Map<String, Object> parseEntity(T t) {
+        EntityMetadata<T> meta = getMetadata();
         Map<String, Object> map = new HashMap<String, Object>();
-        /*
-         * 解析ID
-         */
-        String idName = "";
-        Field[] declaredFields = getEntityClass().getDeclaredFields();
-        for (Field field : declaredFields) {
-            if (field.isAnnotationPresent(Id.class)) {
-                field.setAccessible(true);
-                map.put("{" + field.getName() + "}", field.get(t));
-                idName = field.getName();
-                break;
-            }
+        if (meta.getIdProperty() != null) {
+            map.put("{" + meta.getIdProperty().getName() + "}", meta.getIdProperty().get(t));
         }
+        for (EntityMetadata.Property property : meta.getProperties()) {
+            map.put(property.getName(), property.get(t));
+        }
+        return map;
+    }
 
-        /*
-         * 解析其他属性
-         */
-        Method[] methods = getEntityClass().getDeclaredMethods();
-        if (EmptyUtils.isNotEmpty(methods)) {
-            for (Method method : methods) {
-                if ((method.getName().startsWith("get") && method.getModifiers() == Modifier.PUBLIC)
-                        || (method.getName().startsWith("is") && method.getModifiers() == Modifier.PUBLIC)) {
-                    String fieldName = parse2FieldName(method.getName());
-                    if ((!fieldName.equals(idName))
-                            && (!getEntityClass().getDeclaredField(fieldName).isAnnotationPresent(Transient.class))) {
-                        map.put(fieldName, method.invoke(t));
-                    }
+    /**
+     * 获取GridFS对象
+     *
+     * @return gridFS
+     */
+    private GridFS getGridFS() {
+        GridFS fs = gridFS;
+        if (fs == null) {
+            synchronized (this) {
+                fs = gridFS;
+                if (fs == null) {
+                    DB db = this.mongoTemplate.getDb();
+                    fs = new GridFS(db);
+                    gridFS = fs;
                 }
             }
         }
-
-        return map;
+        return fs;
     }
 
     /**
-     * 将get或is方法名转换为对应的字段名称
-     *
-     * @param methodName 如：getName
-     * @return 如：name
+     * 获得GridFS文件本地缓存（可读取命中率、写出字节数等统计），未开启时返回null；<br>
+     * 同一数据库的存储桶只有一个缓存，所有DAO共享
      */
-    private String parse2FieldName(String methodName) {
-        String name = null;
-        if (methodName.startsWith("is")) {
-            name = methodName.replace("is", "");
-        } else if (methodName.startsWith("get")) {
-            name = methodName.replace("get", "");
+    public GridFsFileCache getFileCache() {
+        GridFsFileCache cache = fileCache;
+        if (cache == null && gridFsCacheEnabled) {
+            synchronized (this) {
+                cache = fileCache;
+                if (cache == null) {
+                    String bucket = mongoTemplate.getDb().getName() + "." + GridFS.DEFAULT_BUCKET;
+                    cache = SHARED_FILE_CACHES.computeIfAbsent(bucket, this::createFileCache);
+                    fileCache = cache;
+                }
+            }
         }
-        name = name.substring(0, 1).toLowerCase() + name.substring(1);
-        return name;
+        return cache;
     }
 
     /**
-     * 获取GridFS对象
+     * 创建存储桶的GridFS文件本地缓存，由首先使用该存储桶缓存的DAO调用，可在DAO中重写以调整容量或加载方式
      *
-     * @return gridFS
+     * @param bucket 数据库名.存储桶名
      */
-    private GridFS getGridFS() {
-        DB db = this.mongoTemplate.getDb();
-        GridFS gridFS = new GridFS(db);
-        return gridFS;
+    protected GridFsFileCache createFileCache(String bucket) {
+        Path directory = EmptyUtils.isEmpty(gridFsCacheDir)
+                ? Paths.get(System.getProperty("java.io.tmpdir"), "lawyer-gridfs-cache", bucket)
+                : Paths.get(gridFsCacheDir, bucket);
+        try {
+            return new GridFsFileCache(gridFsCacheMemoryBytes, gridFsCacheMemoryFileBytes, gridFsCacheDiskBytes,
+                    gridFsCacheDiskFileBytes, directory,
+                    (file, out) -> writeChunks(file, 0, file.getLength() - 1, out),
+                    DaoExecutors.newBoundedExecutor("gridfs-cache-", 2, 64));
+        } catch (IOException e) {
+            throw new IllegalStateException("创建GridFS文件本地缓存失败：" + directory, e);
+        }
     }
 
     /**
@@ -547,6 +2486,209 @@ public class MongoDaoImpl<T> implements MongoDao<T> {
         return flag;
     }
 
+    /**
+     * 从输入流保存文件到mongo，按分块边读边写，内存占用只有一个分块，与文件大小无关
+     *
+     * @param input    输入流，保存完成后关闭
+     * @param fileName 文件名
+     * @return 文件ID
+     */
+    public Object saveFileToMongo(InputStream input, String fileName) {
+        return saveFileToMongo(input, fileName, null, null, gridFsChunkSize);
+    }
+
+    /**
+     * 从输入流保存文件到mongo，按分块边读边写，内存占用只有一个分块，与文件大小无关
+     *
+     * @param input       输入流，保存完成后关闭
+     * @param fileName    文件名
+     * @param contentType 文件类型，可为null
+     * @param metadata    元数据，可为null
+     * @param chunkSize   分块大小（字节），不大于0时使用默认分块大小
+     * @return 文件ID
+     */
+    public Object saveFileToMongo(InputStream input, String fileName, String contentType, Map<String, ?> metadata, int chunkSize) {
+        try {
+            GridFSInputFile gridFSFile = getGridFS().createFile(input, fileName, true);
+            if (EmptyUtils.isNotEmpty(contentType)) {
+                gridFSFile.setContentType(contentType);
+            }
+            if (metadata != null && !metadata.isEmpty()) {
+                gridFSFile.setMetaData(new BasicDBObject(metadata));
+            }
+            gridFSFile.save(chunkSize > 0 ? chunkSize : gridFsChunkSize);
+            return gridFSFile.getId();
+        } catch (RuntimeException e) {
+            closeQuietly(input);
+            throw e;
+        }
+    }
+
+    /**
+     * 保存上传的文件到mongo，直接读取上传文件的输入流写入，不再另存为临时文件
+     *
+     * @param file     上传的文件
+     * @param metadata 元数据，可为null
+     * @return 文件ID
+     */
+    public Object saveFileToMongo(MultipartFile file, Map<String, ?> metadata) throws IOException {
+        return saveFileToMongo(file.getInputStream(), file.getOriginalFilename(), file.getContentType(), metadata, gridFsChunkSize);
+    }
+
+    private static void closeQuietly(InputStream input) {
+        try {
+            input.close();
+        } catch (IOException e) {//NOSONAR
+            // 关闭失败不影响原异常
+        }
+    }
+
+    /**
+     * 获得按内容去重的文件存储（可读取重复次数、节省字节数等统计）；<br>
+     * 同一数据库的存储桶只有一个存储，所有DAO共享
+     */
+    public DedupFileStore getDedupFileStore() {
+        DedupFileStore store = dedupFileStore;
+        if (store == null) {
+            synchronized (this) {
+                store = dedupFileStore;
+                if (store == null) {
+                    String bucket = mongoTemplate.getDb().getName() + "." + GridFS.DEFAULT_BUCKET;
+                    store = SHARED_DEDUP_STORES.computeIfAbsent(bucket, this::createDedupFileStore);
+                    dedupFileStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * 创建存储桶的去重文件存储，由首先使用该存储桶的DAO调用（分块大小、回收间隔取该DAO的配置），可在DAO中重写
+     *
+     * @param bucket 数据库名.存储桶名
+     */
+    protected DedupFileStore createDedupFileStore(String bucket) {
+        return new DedupFileStore(mongoTemplate.getDb(), gridFsChunkSize, gridFsDedupGcIntervalSeconds);
+    }
+
+    /**
+     * 按内容去重保存文件：边写入边计算SHA-256，内容与已有文件相同时只记录引用已有文件的别名
+     *
+     * @param input       输入流，保存完成后关闭
+     * @param fileName    文件名
+     * @param contentType 文件类型，可为null
+     * @param metadata    元数据，可为null
+     * @return 别名ID，通过getDeduplicatedFile读取、deleteDeduplicatedFile删除
+     */
+    public Object saveFileDeduplicated(InputStream input, String fileName, String contentType, Map<String, ?> metadata) {
+        return getDedupFileStore().save(input, fileName, contentType, metadata);
+    }
+
+    /**
+     * 按内容去重保存上传的文件
+     *
+     * @param file     上传的文件
+     * @param metadata 元数据，可为null
+     * @return 别名ID
+     */
+    public Object saveFileDeduplicated(MultipartFile file, Map<String, ?> metadata) throws IOException {
+        return saveFileDeduplicated(file.getInputStream(), file.getOriginalFilename(), file.getContentType(), metadata);
+    }
+
+    /**
+     * 按别名读取去重保存的文件，文件名、类型为上传时的值
+     *
+     * @param aliasId 别名ID
+     * @return 文件 或 null
+     */
+    public GridFSDBFile getDeduplicatedFile(Object aliasId) {
+        return getDedupFileStore().find(aliasId);
+    }
+
+    /**
+     * 删除去重保存的文件（别名），没有其他别名引用的内容由后台任务回收
+     *
+     * @param aliasId 别名ID
+     * @return 是否删除
+     */
+    public boolean deleteDeduplicatedFile(Object aliasId) {
+        return getDedupFileStore().delete(aliasId);
+    }
+
+    /**
+     * 获得断点续传上传
+     */
+    public ResumableUploadStore getUploadStore() {
+        ResumableUploadStore store = uploadStore;
+        if (store == null) {
+            synchronized (this) {
+                store = uploadStore;
+                if (store == null) {
+                    store = new ResumableUploadStore(mongoTemplate.getDb(), gridFsReadBatchChunks, gridFsUploadExpireMinutes);
+                    uploadStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    /**
+     * 开始断点续传上传
+     *
+     * @param fileName    文件名
+     * @param contentType 文件类型，可为null
+     * @param length      文件总字节数
+     * @param chunkSize   分块大小（字节），不大于0时使用默认分块大小
+     * @param metadata    元数据，可为null
+     * @return 上传ID（也是完成后的文件ID）
+     */
+    public Object initUpload(String fileName, String contentType, long length, int chunkSize, Map<String, ?> metadata) {
+        return getUploadStore().init(fileName, contentType, length, chunkSize > 0 ? chunkSize : gridFsChunkSize, metadata);
+    }
+
+    /**
+     * 上传一个分块，可并行、乱序、重复上传，先写为暂存分块，会话仍在上传中时才登记
+     *
+     * @param uploadId 上传ID
+     * @param n        分块编号，从0开始
+     * @param input    分块内容（如请求体），长度必须为分块大小（最后一块为剩余字节数）
+     * @return 上传状态
+     * @throws IOException 读取分块内容失败
+     */
+    public UploadStatus uploadChunk(Object uploadId, int n, InputStream input) throws IOException {
+        return getUploadStore().uploadChunk(uploadId, n, input);
+    }
+
+    /**
+     * 查询断点续传上传的已接收范围
+     *
+     * @param uploadId 上传ID
+     * @return 上传状态
+     */
+    public UploadStatus getUploadStatus(Object uploadId) {
+        return getUploadStore().status(uploadId);
+    }
+
+    /**
+     * 完成断点续传上传，之后可通过getFileFromMongoById读取
+     *
+     * @param uploadId 上传ID
+     * @return 文件ID
+     */
+    public Object finishUpload(Object uploadId) {
+        return getUploadStore().finish(uploadId);
+    }
+
+    /**
+     * 放弃断点续传上传并删除已上传的分块
+     *
+     * @param uploadId 上传ID
+     * @return 是否删除
+     */
+    public boolean abortUpload(Object uploadId) {
+        return getUploadStore().abort(uploadId);
+    }
+
     /**
      * 根据文件名从mongo中获取文件
      *
@@ -562,4 +2704,110 @@ public class MongoDaoImpl<T> implements MongoDao<T> {
         return gridFSDBFile;
     }
 
+    /**
+     * 根据文件ID从mongo中获取文件
+     *
+     * @param id 文件ID，字符串形式的ObjectId会转换为ObjectId
+     * @return 文件 或 null
+     */
+    public GridFSDBFile getFileFromMongoById(Object id) {
+        return getGridFS().findOne(new BasicDBObject(KeysetCursor.ID_FIELD, toIdValue(id)));
+    }
+
+    /**
+     * 将文件的指定字节范围写入输出流：开启本地缓存时优先从缓存读取（未命中时在后台加载），<br>
+     * 否则直接定位到范围所在的分块开始读取，每次只从服务端取少量分块，内存占用与文件大小无关
+     *
+     * @param file  文件
+     * @param start 起始位置（含），从0开始
+     * @param end   结束位置（含）
+     * @param out   输出流，不会关闭
+     * @return 写入的字节数
+     * @throws IOException 写入输出流失败或文件分块缺失
+     */
+    public long writeFileFromMongo(GridFSDBFile file, long start, long end, OutputStream out) throws IOException {
+        long length = file.getLength();
+        if (start < 0 || start > end || end >= length) {
+            throw new IllegalArgumentException("字节范围无效：" + start + "-" + end + "，文件长度" + length);
+        }
+        GridFsFileCache cache = getFileCache();
+        if (cache != null && cache.write(file, start, end, out)) {
+            return end - start + 1;
+        }
+        return writeChunks(file, start, end, out);
+    }
+
+    /**
+     * 从GridFS分块读取文件的指定字节范围写入输出流
+     */
+    protected long writeChunks(GridFSDBFile file, long start, long end, OutputStream out) throws IOException {
+        long chunkSize = file.getChunkSize();
+        int first = (int) (start / chunkSize);
+        int last = (int) (end / chunkSize);
+
+        DBCollection chunks = mongoTemplate.getDb().getCollection(GridFS.DEFAULT_BUCKET + ".chunks");
+        DBObject query = new BasicDBObject("files_id", file.getId())
+                .append("n", new BasicDBObject("$gte", first).append("$lte", last));
+        long written = 0;
+        try (DBCursor cursor = chunks.find(query).sort(new BasicDBObject("n", 1)).batchSize(Math.max(gridFsReadBatchChunks, 1))) {
+            int expected = first;
+            while (cursor.hasNext()) {
+                DBObject chunk = cursor.next();
+                int n = ((Number) chunk.get("n")).intValue();
+                if (n != expected) {
+                    throw new IOException("文件[" + file.getId() + "]缺少分块：" + expected);
+                }
+                byte[] data = (byte[]) chunk.get("data");
+                long chunkStart = n * chunkSize;
+                int from = (int) Math.max(start - chunkStart, 0);
+                int to = (int) Math.min(end - chunkStart + 1, data.length);
+                if (to > from) {
+                    out.write(data, from, to - from);
+                    written += to - from;
+                }
+                expected++;
+            }
+            if (expected <= last) {
+                throw new IOException("文件[" + file.getId() + "]缺少分块：" + expected);
+            }
+        }
+        return written;
+    }
+
+    /**
+     * 普通分页的单页结果
+     */
+    protected static class PageSlice<T> {
+        /**
+         * 本页数据
+         */
+        List<T> rows;
+        /**
+         * 总数，未统计时为-1
+         */
+        long total = -1;
+        /**
+         * 是否还有下一页
+         */
+        boolean hasNext;
+    }
+
+    /**
+     * 游标分页的单页结果
+     */
+    protected static class CursorSlice<T> {
+        /**
+         * 本页数据
+         */
+        List<T> rows;
+        /**
+         * 下一页游标
+         */
+        String nextCursor;
+        /**
+         * 上一页游标
+         */
+        String prevCursor;
+    }
+
 }
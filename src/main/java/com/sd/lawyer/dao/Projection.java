@@ -0,0 +1,165 @@
+package com.sd.lawyer.dao;
+
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.projection.ProjectionFactory;
+import org.springframework.data.projection.SpelAwareProxyProjectionFactory;
+import org.springframework.data.mongodb.core.query.Field;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.beans.Introspector;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * 查询投影
+ * ClassName: Projection
+ * Description:指定查询只返回（或不返回）哪些字段，投影在服务端执行，减少传输字节、BSON解码和对象分配。<br>
+ * 注意：投影查询得到的实体只包含部分字段，未开启变更跟踪的实体不要直接用于update，否则未查询的字段会被置空
+ */
+public final class Projection {
+
+    /**
+     * 创建接口投影的代理，代理的getter读取实体的同名属性
+     */
+    private static final ProjectionFactory PROJECTION_FACTORY = new SpelAwareProxyProjectionFactory();
+
+    /**
+     * 按类解析的投影
+     */
+    private static final ConcurrentMap<Class<?>, Projection> TYPE_PROJECTIONS = new ConcurrentHashMap<Class<?>, Projection>();
+
+    /**
+     * 返回的字段
+     */
+    private final Set<String> includes;
+    /**
+     * 不返回的字段
+     */
+    private final Set<String> excludes;
+
+    private Projection(Set<String> includes, Set<String> excludes) {
+        this.includes = Collections.unmodifiableSet(includes);
+        this.excludes = Collections.unmodifiableSet(excludes);
+    }
+
+    /**
+     * 只返回指定字段（主键总是返回）
+     *
+     * @param fields 属性名称
+     * @return 投影
+     */
+    public static Projection include(String... fields) {
+        return new Projection(new LinkedHashSet<String>(Arrays.asList(fields)), new LinkedHashSet<String>());
+    }
+
+    /**
+     * 不返回指定字段
+     *
+     * @param fields 属性名称
+     * @return 投影
+     */
+    public static Projection exclude(String... fields) {
+        return new Projection(new LinkedHashSet<String>(), new LinkedHashSet<String>(Arrays.asList(fields)));
+    }
+
+    /**
+     * 按DTO类的字段（不含静态及@Transient字段）生成投影，字段名需与实体属性名一致；<br>
+     * 接口按其抽象的getter（getXxx、isXxx，不含default方法及@Transient方法）生成投影
+     *
+     * @param type DTO类或接口
+     * @return 投影
+     * @throws IllegalArgumentException 类型中没有可投影的字段
+     */
+    public static Projection of(Class<?> type) {
+        Projection projection = TYPE_PROJECTIONS.get(type);
+        if (projection == null) {
+            Set<String> fields = type.isInterface() ? getterProperties(type) : new LinkedHashSet<String>();
+            for (Class<?> clazz = type; clazz != null && clazz != Object.class; clazz = clazz.getSuperclass()) {
+                for (java.lang.reflect.Field field : clazz.getDeclaredFields()) {
+                    if (!Modifier.isStatic(field.getModifiers()) && !field.isAnnotationPresent(Transient.class)) {
+                        fields.add(field.getName());
+                    }
+                }
+            }
+            if (fields.isEmpty()) {
+                // 空的投影会返回整个文档，与按类型投影的意图相反
+                throw new IllegalArgumentException("类型[" + type.getName() + "]没有可投影的字段");
+            }
+            projection = new Projection(fields, new LinkedHashSet<String>());
+            TYPE_PROJECTIONS.putIfAbsent(type, projection);
+        }
+        return projection;
+    }
+
+    /**
+     * 将实体包装为接口投影；Spring Data的转换器不能直接实例化接口，投影查询的结果需先读取为实体
+     *
+     * @param type   投影接口
+     * @param source 实体
+     * @return 投影
+     */
+    public static <R> R project(Class<R> type, Object source) {
+        return source == null ? null : PROJECTION_FACTORY.createProjection(type, source);
+    }
+
+    /**
+     * 接口（含父接口）中抽象getter对应的属性名
+     */
+    private static Set<String> getterProperties(Class<?> type) {
+        Set<String> properties = new LinkedHashSet<String>();
+        for (Method method : type.getMethods()) {
+            if (method.isDefault() || Modifier.isStatic(method.getModifiers()) || method.getParameterCount() > 0
+                    || method.isAnnotationPresent(Transient.class)) {
+                continue;
+            }
+            String name = method.getName();
+            if (name.startsWith("get") && name.length() > 3 && method.getReturnType() != void.class) {
+                properties.add(Introspector.decapitalize(name.substring(3)));
+            } else if (name.startsWith("is") && name.length() > 2
+                    && (method.getReturnType() == boolean.class || method.getReturnType() == Boolean.class)) {
+                properties.add(Introspector.decapitalize(name.substring(2)));
+            }
+        }
+        return properties;
+    }
+
+    public Set<String> getIncludes() {
+        return includes;
+    }
+
+    public Set<String> getExcludes() {
+        return excludes;
+    }
+
+    /**
+     * 将投影设置到查询对象上
+     *
+     * @param query 查询对象
+     * @return 查询对象本身
+     */
+    public Query applyTo(Query query) {
+        Field fields = query.fields();
+        for (String include : includes) {
+            fields.include(include);
+        }
+        for (String exclude : excludes) {
+            fields.exclude(exclude);
+        }
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return "Projection{" +
+                "includes=" + includes +
+                ", excludes=" + excludes +
+                '}';
+    }
+
+}
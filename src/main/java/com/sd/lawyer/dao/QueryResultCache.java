@@ -0,0 +1,154 @@
+package com.sd.lawyer.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import com.mongodb.DBObject;
+import com.mongodb.util.JSON;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 查询结果缓存
+ * ClassName: QueryResultCache
+ * Description:缓存键由操作、规范化的查询条件（字段按名称排序）、排序、投影、分页参数及集合写入版本号组成，<br>
+ * 缓存值为原始文档或distinct值，每次命中时重新转换，调用方修改返回结果不会影响缓存内容。<br>
+ * 结果条数超过maxResultSize的查询不缓存，避免大结果集占满内存
+ */
+public class QueryResultCache {
+
+    private final Cache<String, List<?>> cache;
+
+    /**
+     * 可缓存的最大结果条数
+     */
+    private final int maxResultSize;
+
+    /**
+     * @param maximumSize             最多缓存的查询数
+     * @param maxResultSize           可缓存的最大结果条数
+     * @param expireAfterWriteSeconds 写入后多少秒过期，不大于0表示不过期
+     */
+    public QueryResultCache(long maximumSize, int maxResultSize, long expireAfterWriteSeconds) {
+        Caffeine<Object, Object> builder = Caffeine.newBuilder().maximumSize(maximumSize).recordStats();
+        if (expireAfterWriteSeconds > 0) {
+            builder.expireAfterWrite(expireAfterWriteSeconds, TimeUnit.SECONDS);
+        }
+        this.cache = builder.build();
+        this.maxResultSize = maxResultSize;
+    }
+
+    /**
+     * 生成缓存键，查询条件、排序、投影应先经QueryMapper转换为数据库字段及类型（如枚举转换为字符串），<br>
+     * 其中含有无法序列化的值时返回null，调用方此时不应缓存或合并该查询
+     *
+     * @param operation 操作，如find、distinct:字段名
+     * @param query     已映射的查询条件
+     * @param sort      已映射的排序
+     * @param fields    已映射的投影
+     * @param skip      跳过条数
+     * @param limit     返回条数
+     * @param version   集合写入版本号
+     * @return 缓存键 或 null
+     */
+    public static String keyOf(String operation, DBObject query, DBObject sort, DBObject fields,
+                               int skip, int limit, long version) {
+        try {
+            StringBuilder key = new StringBuilder(operation).append('|');
+            appendCanonical(key, query);
+            // 排序字段的顺序有意义，不做规范化
+            key.append('|').append(sort == null ? "" : JSON.serialize(sort)).append('|');
+            appendCanonical(key, fields);
+            return key.append('|').append(skip).append('|').append(limit).append("|v").append(version).toString();
+        } catch (RuntimeException e) {//NOSONAR
+            // 条件中含有JSON无法表示的值
+            return null;
+        }
+    }
+
+    /**
+     * 读取缓存
+     *
+     * @param key 缓存键
+     * @return 缓存的结果 或 null
+     */
+    @SuppressWarnings("unchecked")
+    public <E> List<E> get(String key) {
+        return (List<E>) cache.getIfPresent(key);
+    }
+
+    /**
+     * 写入缓存，结果条数超过maxResultSize时不写入
+     *
+     * @param key    缓存键
+     * @param result 结果
+     * @return 是否已缓存
+     */
+    public boolean put(String key, List<?> result) {
+        if (result == null || result.size() > maxResultSize) {
+            return false;
+        }
+        cache.put(key, result);
+        return true;
+    }
+
+    public int getMaxResultSize() {
+        return maxResultSize;
+    }
+
+    /**
+     * 使全部缓存失效
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    /**
+     * 获取统计信息
+     *
+     * @return 统计信息
+     */
+    public CacheStatistics stats() {
+        CacheStats stats = cache.stats();
+        return new CacheStatistics(cache.estimatedSize(), stats.hitCount(), stats.missCount(), stats.evictionCount());
+    }
+
+    /**
+     * 以规范形式输出文档：文档字段按名称排序，数组保持原顺序，其他值按JSON输出
+     */
+    @SuppressWarnings("unchecked")
+    private static void appendCanonical(StringBuilder key, Object value) {
+        if (value instanceof Map || (value instanceof DBObject && !(value instanceof List))) {
+            Map<String, Object> map = value instanceof Map ? (Map<String, Object>) value : ((DBObject) value).toMap();
+            key.append('{');
+            boolean first = true;
+            for (Map.Entry<String, Object> entry : new TreeMap<String, Object>(map).entrySet()) {
+                if (!first) {
+                    key.append(',');
+                }
+                first = false;
+                key.append(JSON.serialize(entry.getKey())).append(':');
+                appendCanonical(key, entry.getValue());
+            }
+            key.append('}');
+        } else if (value instanceof Collection) {
+            key.append('[');
+            boolean first = true;
+            for (Object element : (Collection<?>) value) {
+                if (!first) {
+                    key.append(',');
+                }
+                first = false;
+                appendCanonical(key, element);
+            }
+            key.append(']');
+        } else if (value != null) {
+            key.append(JSON.serialize(value));
+        }
+    }
+
+}
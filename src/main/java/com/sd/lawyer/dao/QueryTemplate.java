@@ -0,0 +1,357 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.sd.lawyer.util.EmptyUtils;
+import org.springframework.data.mongodb.core.query.BasicQuery;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 预编译的查询模板
+ * ClassName: QueryTemplate
+ * Description:启动时声明一次查询的形状（字段、运算符、排序、投影），每次调用只按位置绑定参数值，<br>
+ * 排序、投影在创建模板时解析一次，绑定时只生成一个条件文档，不再经过Criteria及排序字符串解析。<br>
+ * 支持等值之外的运算符（范围、in、正则、exists），模板不可变，可定义为常量在多线程间共享。<br>
+ * 用法：
+ * <pre>
+ * private static final QueryTemplate BY_TYPE_AND_TIME = QueryTemplate.builder()
+ *         .eq("type").gte("createTime").lt("createTime")
+ *         .sort("createTime desc")
+ *         .build();
+ * List&lt;Case&gt; list = caseDao.findByTemplate(BY_TYPE_AND_TIME, type, begin, end);
+ * </pre>
+ */
+public final class QueryTemplate {
+
+    /**
+     * 运算符
+     */
+    public enum Operator {
+        EQ(null), NE("$ne"), GT("$gt"), GTE("$gte"), LT("$lt"), LTE("$lte"),
+        IN("$in"), NIN("$nin"), REGEX("$regex"), EXISTS("$exists");
+
+        private final String keyword;
+
+        Operator(String keyword) {
+            this.keyword = keyword;
+        }
+
+        public String getKeyword() {
+            return keyword;
+        }
+    }
+
+    /**
+     * 条件
+     */
+    private final Condition[] conditions;
+    /**
+     * 是否以or连接各条件，默认为and
+     */
+    private final boolean or;
+    /**
+     * 参数值为null时是否忽略该条件
+     */
+    private final boolean skipNulls;
+    /**
+     * 排序，绑定时复制，调用方修改查询对象不影响模板
+     */
+    private final DBObject sortObject;
+    /**
+     * 投影，绑定时复制，调用方修改查询对象不影响模板
+     */
+    private final DBObject fieldsObject;
+
+    private QueryTemplate(Builder builder) {
+        this.conditions = builder.conditions.toArray(new Condition[builder.conditions.size()]);
+        this.or = builder.or;
+        this.skipNulls = builder.skipNulls;
+        this.sortObject = builder.sortObject;
+        this.fieldsObject = builder.fieldsObject;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * 参数个数
+     *
+     * @return 参数个数
+     */
+    public int getParameterCount() {
+        return conditions.length;
+    }
+
+    /**
+     * 按声明条件的顺序绑定参数值，生成查询对象<br>
+     * in、nin的参数为集合或数组；regex的参数为Pattern或正则字符串；exists的参数为Boolean
+     *
+     * @param values 参数值
+     * @return 查询对象
+     */
+    public Query bind(Object... values) {
+        int count = values == null ? 0 : values.length;
+        if (count != conditions.length) {
+            throw new IllegalArgumentException("参数个数与模板条件数不一致：需要" + conditions.length + "个，实际" + count + "个");
+        }
+        BasicDBObject criteria = new BasicDBObject();
+        BasicDBList clauses = or ? new BasicDBList() : null;
+        for (int i = 0; i < conditions.length; i++) {
+            Condition condition = conditions[i];
+            if (values[i] == null && skipNulls) {
+                continue;
+            }
+            Object value = condition.convert(values[i]);
+            if (or) {
+                clauses.add(new BasicDBObject(condition.field,
+                        condition.operator == Operator.EQ ? value : new BasicDBObject(condition.operator.keyword, value)));
+            } else if (condition.operator == Operator.EQ) {
+                criteria.put(condition.field, value);
+            } else {
+                // 同一字段的多个运算符合并到一个文档中，如{$gte: a, $lt: b}
+                BasicDBObject operators = (BasicDBObject) criteria.get(condition.field);
+                if (operators == null) {
+                    criteria.put(condition.field, new BasicDBObject(condition.operator.keyword, value));
+                } else {
+                    operators.put(condition.operator.keyword, value);
+                }
+            }
+        }
+        if (or && !clauses.isEmpty()) {
+            criteria.put("$or", clauses);
+        }
+
+        BasicQuery query = new BasicQuery(criteria, fieldsObject == null ? null : new BasicDBObject(fieldsObject.toMap()));
+        if (sortObject != null) {
+            query.setSortObject(new BasicDBObject(sortObject.toMap()));
+        }
+        return query;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryTemplate{" +
+                "conditions=" + Arrays.toString(conditions) +
+                ", or=" + or +
+                ", skipNulls=" + skipNulls +
+                ", sort=" + sortObject +
+                ", fields=" + fieldsObject +
+                '}';
+    }
+
+    /**
+     * 条件
+     */
+    private static final class Condition {
+        /**
+         * 属性名称
+         */
+        private final String field;
+        /**
+         * 运算符
+         */
+        private final Operator operator;
+        /**
+         * 正则标志，见{@link Pattern#compile(String, int)}
+         */
+        private final int flags;
+
+        private Condition(String field, Operator operator, int flags) {
+            this.field = field;
+            this.operator = operator;
+            this.flags = flags;
+        }
+
+        /**
+         * 将参数值转换为运算符要求的形式
+         */
+        private Object convert(Object value) {
+            switch (operator) {
+                case IN:
+                case NIN:
+                    if (value instanceof Collection) {
+                        return value;
+                    }
+                    if (value instanceof Object[]) {
+                        return Arrays.asList((Object[]) value);
+                    }
+                    return Collections.singletonList(value);
+                case REGEX:
+                    return value instanceof Pattern ? value : Pattern.compile(String.valueOf(value), flags);
+                case EXISTS:
+                    return value instanceof Boolean ? value : Boolean.valueOf(String.valueOf(value));
+                default:
+                    return value;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return field + " " + operator;
+        }
+    }
+
+    /**
+     * 模板构造器
+     */
+    public static final class Builder {
+
+        private final List<Condition> conditions = new ArrayList<Condition>();
+        private boolean or;
+        private boolean skipNulls;
+        private DBObject sortObject;
+        private DBObject fieldsObject;
+
+        private Builder() {
+        }
+
+        public Builder eq(String field) {
+            return condition(field, Operator.EQ);
+        }
+
+        public Builder ne(String field) {
+            return condition(field, Operator.NE);
+        }
+
+        public Builder gt(String field) {
+            return condition(field, Operator.GT);
+        }
+
+        public Builder gte(String field) {
+            return condition(field, Operator.GTE);
+        }
+
+        public Builder lt(String field) {
+            return condition(field, Operator.LT);
+        }
+
+        public Builder lte(String field) {
+            return condition(field, Operator.LTE);
+        }
+
+        public Builder in(String field) {
+            return condition(field, Operator.IN);
+        }
+
+        public Builder nin(String field) {
+            return condition(field, Operator.NIN);
+        }
+
+        public Builder regex(String field) {
+            return regex(field, 0);
+        }
+
+        /**
+         * 正则条件，参数为字符串时按指定标志编译
+         *
+         * @param field 属性名称
+         * @param flags 正则标志，如Pattern.CASE_INSENSITIVE
+         */
+        public Builder regex(String field, int flags) {
+            conditions.add(new Condition(field, Operator.REGEX, flags));
+            return this;
+        }
+
+        public Builder exists(String field) {
+            return condition(field, Operator.EXISTS);
+        }
+
+        public Builder condition(String field, Operator operator) {
+            conditions.add(new Condition(field, operator, 0));
+            return this;
+        }
+
+        /**
+         * 以or连接各条件（默认为and）
+         */
+        public Builder or() {
+            this.or = true;
+            return this;
+        }
+
+        /**
+         * 参数值为null时忽略该条件，适用于可选的筛选项
+         */
+        public Builder skipNulls() {
+            this.skipNulls = true;
+            return this;
+        }
+
+        /**
+         * 排序
+         *
+         * @param order 排序字段，例如：id或id asc、或id asc,name desc
+         */
+        public Builder sort(String order) {
+            BasicDBObject sort = new BasicDBObject();
+            if (EmptyUtils.isNotEmpty(order)) {
+                for (String field : order.split(",")) {
+                    String[] item = field.trim().split(" +");
+                    if (item.length == 0 || EmptyUtils.isEmpty(item[0])) {
+                        continue;
+                    }
+                    if (item.length > 2) {
+                        throw new IllegalArgumentException("排序字段参数解析出错：" + order);
+                    }
+                    sort.put(item[0], item.length == 2 && "desc".equalsIgnoreCase(item[1]) ? -1 : 1);
+                }
+            }
+            this.sortObject = sort.isEmpty() ? null : sort;
+            return this;
+        }
+
+        /**
+         * 投影
+         *
+         * @param projection 投影
+         */
+        public Builder projection(Projection projection) {
+            BasicDBObject fields = new BasicDBObject();
+            for (String include : projection.getIncludes()) {
+                fields.put(include, 1);
+            }
+            for (String exclude : projection.getExcludes()) {
+                fields.put(exclude, 0);
+            }
+            this.fieldsObject = fields.isEmpty() ? null : fields;
+            return this;
+        }
+
+        public QueryTemplate build() {
+            // and连接时等值条件的字段不能再有其他条件，同一字段也不能重复使用同一运算符（后者会覆盖前者）
+            if (!or) {
+                Set<String> eqFields = new HashSet<String>();
+                Set<String> operatorFields = new HashSet<String>();
+                Set<String> fieldOperators = new HashSet<String>();
+                for (Condition condition : conditions) {
+                    boolean conflict;
+                    if (condition.operator == Operator.EQ) {
+                        conflict = !eqFields.add(condition.field) || operatorFields.contains(condition.field);
+                    } else {
+                        if (!fieldOperators.add(condition.field + ' ' + condition.operator)) {
+                            throw new IllegalArgumentException("字段[" + condition.field + "]的" + condition.operator + "条件重复");
+                        }
+                        operatorFields.add(condition.field);
+                        conflict = eqFields.contains(condition.field);
+                    }
+                    if (conflict) {
+                        throw new IllegalArgumentException("字段[" + condition.field + "]的等值条件不能与其他条件同时使用");
+                    }
+                }
+            }
+            return new QueryTemplate(this);
+        }
+    }
+
+}
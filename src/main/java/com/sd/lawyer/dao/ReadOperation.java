@@ -0,0 +1,25 @@
+package com.sd.lawyer.dao;
+
+/**
+ * 可路由到从节点的读操作类型
+ */
+public enum ReadOperation {
+
+    /**
+     * 分页查询（pageByProps、pageByQuery、pageByCursor等）
+     */
+    PAGE,
+    /**
+     * 计数（countByCondition、countByTemplate）
+     */
+    COUNT,
+    /**
+     * 去重查询（distinctByQuery、distinctWithCount、streamDistinct）
+     */
+    DISTINCT,
+    /**
+     * 聚合查询（aggregate、aggregateStream）
+     */
+    AGGREGATE
+
+}
@@ -0,0 +1,35 @@
+package com.sd.lawyer.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 读操作路由
+ * Description:标注在实体类上，覆盖全局配置（lawyer.mongo.read-preference），<br>
+ * 指定的读操作按读偏好发送到从节点或最近的节点，其他读操作及所有写操作仍发送到主节点。<br>
+ * 当前线程（请求）或会话写入该集合后的一段时间内，读操作仍发送到主节点，保证读到自己的写入
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ReadRouting {
+
+    /**
+     * 读偏好：primary、primaryPreferred、secondary、secondaryPreferred、nearest
+     */
+    String mode() default "secondaryPreferred";
+
+    /**
+     * 路由的读操作
+     */
+    ReadOperation[] operations() default {ReadOperation.PAGE, ReadOperation.COUNT, ReadOperation.DISTINCT, ReadOperation.AGGREGATE};
+
+    /**
+     * 从节点最大延迟（秒），延迟超过该值的从节点不参与读取，不大于0表示不限制（MongoDB要求至少90秒）
+     */
+    long maxStalenessSeconds() default 90;
+
+}
@@ -0,0 +1,127 @@
+package com.sd.lawyer.dao;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 读己之写
+ * ClassName: ReadYourWrites
+ * Description:记录当前线程最近写入各集合的时间，写入后的一段时间内该集合的读操作不路由到从节点，<br>
+ * 避免从节点尚未同步时读不到刚写入的数据。Web请求中由ReadYourWritesFilter在请求开始时从会话恢复、<br>
+ * 结束时保存到会话并清理，从而在同一请求及同一会话的后续请求中生效。<br>
+ * 异步DAO通过capture、attach把调用方的写入记录交给执行任务的线程（共享同一份记录），任务中的写入对调用方同样生效
+ */
+public final class ReadYourWrites {
+
+    /**
+     * 集合名称 → 最近写入时间（毫秒）
+     */
+    private static final ThreadLocal<Map<String, Long>> LAST_WRITES = new ThreadLocal<Map<String, Long>>();
+
+    private ReadYourWrites() {
+    }
+
+    /**
+     * 记录当前线程写入了集合
+     *
+     * @param collectionName 集合名称
+     */
+    public static void markWrite(String collectionName) {
+        Map<String, Long> writes = LAST_WRITES.get();
+        if (writes == null) {
+            writes = new ConcurrentHashMap<String, Long>();
+            LAST_WRITES.set(writes);
+        }
+        writes.put(collectionName, System.currentTimeMillis());
+    }
+
+    /**
+     * 当前线程在windowMillis内是否写入过集合
+     *
+     * @param collectionName 集合名称
+     * @param windowMillis   时间窗口（毫秒）
+     * @return true or false
+     */
+    public static boolean isSticky(String collectionName, long windowMillis) {
+        Map<String, Long> writes = LAST_WRITES.get();
+        if (writes == null) {
+            return false;
+        }
+        Long lastWrite = writes.get(collectionName);
+        return lastWrite != null && System.currentTimeMillis() - lastWrite < windowMillis;
+    }
+
+    /**
+     * 获取当前线程的写入记录（副本），并移除超过windowMillis的记录
+     *
+     * @param windowMillis 时间窗口（毫秒）
+     * @return 写入记录，没有时为null
+     */
+    public static Map<String, Long> snapshot(long windowMillis) {
+        Map<String, Long> writes = LAST_WRITES.get();
+        if (writes == null) {
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        Map<String, Long> copy = new HashMap<String, Long>(writes);
+        for (Iterator<Long> it = copy.values().iterator(); it.hasNext(); ) {
+            if (now - it.next() >= windowMillis) {
+                it.remove();
+            }
+        }
+        return copy.isEmpty() ? null : copy;
+    }
+
+    /**
+     * 恢复写入记录（如从会话中读取的记录）
+     *
+     * @param writes 写入记录
+     */
+    public static void restore(Map<String, Long> writes) {
+        if (writes == null || writes.isEmpty()) {
+            LAST_WRITES.remove();
+        } else {
+            LAST_WRITES.set(new ConcurrentHashMap<String, Long>(writes));
+        }
+    }
+
+    /**
+     * 获取当前线程的写入记录（不是副本），没有时创建，用于交给异步任务的线程
+     *
+     * @return 写入记录
+     */
+    public static Map<String, Long> capture() {
+        Map<String, Long> writes = LAST_WRITES.get();
+        if (writes == null) {
+            writes = new ConcurrentHashMap<String, Long>();
+            LAST_WRITES.set(writes);
+        }
+        return writes;
+    }
+
+    /**
+     * 当前线程使用调用方的写入记录（共享，不复制），任务结束后应以返回值再次调用以恢复
+     *
+     * @param writes capture得到的写入记录，为null时清理
+     * @return 当前线程原来的写入记录，可能为null
+     */
+    public static Map<String, Long> attach(Map<String, Long> writes) {
+        Map<String, Long> previous = LAST_WRITES.get();
+        if (writes == null) {
+            LAST_WRITES.remove();
+        } else {
+            LAST_WRITES.set(writes);
+        }
+        return previous;
+    }
+
+    /**
+     * 清理当前线程的写入记录
+     */
+    public static void clear() {
+        LAST_WRITES.remove();
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.sd.lawyer.dao;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 查询结果条数保护
+ * ClassName: ResultSizeGuard
+ * Description:不分页的列表查询在服务端限制为maxResults+1条，多出的一条用于判断是否超过上限，<br>
+ * 超过时按配置抛出异常或截断；返回条数超过警告阈值时记录日志并计数，便于发现选择性差的查询
+ */
+public class ResultSizeGuard {
+
+    private static Logger logger = LoggerFactory.getLogger(ResultSizeGuard.class);
+
+    /**
+     * 集合名称
+     */
+    private final String collectionName;
+    /**
+     * 最多返回的记录数，不大于0表示不限制
+     */
+    private final int maxResults;
+    /**
+     * 超过上限时的处理方式
+     */
+    private final ResultSizeLimit.Action action;
+    /**
+     * 警告阈值，不大于0表示不警告
+     */
+    private final int warnThreshold;
+
+    private final LongAdder warnings = new LongAdder();
+    private final LongAdder truncated = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public ResultSizeGuard(String collectionName, int maxResults, ResultSizeLimit.Action action, int warnThreshold) {
+        this.collectionName = collectionName;
+        this.maxResults = maxResults;
+        this.action = action;
+        this.warnThreshold = warnThreshold;
+    }
+
+    /**
+     * 为查询设置条数限制（查询未限制或限制大于上限时）
+     *
+     * @param query 查询对象
+     * @return 查询对象本身
+     */
+    public Query limit(Query query) {
+        if (maxResults > 0 && (query.getLimit() <= 0 || query.getLimit() > maxResults)) {
+            query.limit(maxResults + 1);
+        }
+        return query;
+    }
+
+    /**
+     * 检查查询结果条数
+     *
+     * @param list  查询结果
+     * @param query 查询对象，用于日志
+     * @return 查询结果，截断时为前maxResults条
+     * @throws IllegalStateException 超过上限且处理方式为FAIL时
+     */
+    public <E> List<E> check(List<E> list, Query query) {
+        int size = list.size();
+        if (warnThreshold > 0 && size > warnThreshold) {
+            warnings.increment();
+            logger.warn("集合[{}]的查询返回{}条记录，超过警告阈值{}：{}", collectionName, size, warnThreshold, query);
+        }
+        if (maxResults > 0 && size > maxResults) {
+            if (action == ResultSizeLimit.Action.FAIL) {
+                rejected.increment();
+                throw new IllegalStateException("集合[" + collectionName + "]的查询结果超过上限" + maxResults
+                        + "条，请增加条件、分页或使用流式查询：" + query);
+            }
+            truncated.increment();
+            return new ArrayList<E>(list.subList(0, maxResults));
+        }
+        return list;
+    }
+
+    public int getMaxResults() {
+        return maxResults;
+    }
+
+    public ResultSizeLimit.Action getAction() {
+        return action;
+    }
+
+    public int getWarnThreshold() {
+        return warnThreshold;
+    }
+
+    /**
+     * 超过警告阈值的查询数
+     */
+    public long getWarnings() {
+        return warnings.sum();
+    }
+
+    /**
+     * 被截断的查询数
+     */
+    public long getTruncated() {
+        return truncated.sum();
+    }
+
+    /**
+     * 因超过上限而失败的查询数
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "ResultSizeGuard{" +
+                "collectionName='" + collectionName + '\'' +
+                ", maxResults=" + maxResults +
+                ", action=" + action +
+                ", warnThreshold=" + warnThreshold +
+                ", warnings=" + getWarnings() +
+                ", truncated=" + getTruncated() +
+                ", rejected=" + getRejected() +
+                '}';
+    }
+
+}
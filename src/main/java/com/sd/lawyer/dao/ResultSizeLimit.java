@@ -0,0 +1,48 @@
+package com.sd.lawyer.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 查询结果条数上限
+ * Description:标注在实体类上，覆盖全局配置（lawyer.mongo.max-results等），<br>
+ * 对不分页的列表查询（findAll、findByProp、findByProps、findByQuery等）生效，分页及流式查询不受限制
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface ResultSizeLimit {
+
+    /**
+     * 最多返回的记录数，不大于0表示不限制
+     */
+    int maxResults();
+
+    /**
+     * 超过上限时的处理方式
+     */
+    Action action() default Action.FAIL;
+
+    /**
+     * 返回记录数超过该值时记录警告，不大于0表示不警告
+     */
+    int warnThreshold() default 5000;
+
+    /**
+     * 超过上限时的处理方式
+     */
+    enum Action {
+        /**
+         * 抛出异常
+         */
+        FAIL,
+        /**
+         * 只返回前maxResults条
+         */
+        TRUNCATE
+    }
+
+}
@@ -0,0 +1,467 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.DuplicateKeyException;
+import com.mongodb.gridfs.GridFS;
+import com.sd.lawyer.beans.UploadStatus;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.bson.types.ObjectId;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 断点续传上传
+ * ClassName: ResumableUploadStore
+ * Description:大文件分块上传，任一分块失败只需重传该分块：<br>
+ * 1. init声明文件名、总字节数、分块大小，得到上传ID（也是完成后的GridFS文件ID），会话记录在fs.uploads中；<br>
+ * 2. 按编号上传分块，分块可并行、乱序、重复上传。每次上传先写为fs.chunks中独立的暂存分块（files_id为分块自身的ID），<br>
+ * 再在会话仍处于上传中时原子地登记到会话，登记失败（已完成、正在完成或已放弃）时删除刚写入的暂存分块，<br>
+ * 重复上传时删除被替换的暂存分块，因此迟到的分块不会覆盖已完成的文件；<br>
+ * 3. status查询已接收的字节范围，只补传缺少的分块；<br>
+ * 4. finish将会话置为完成中（此后不再登记分块），按顺序计算已登记分块的MD5，将其files_id改为文件ID后写入fs.files，<br>
+ * 此后文件可按普通GridFS文件读取，会话保留为已完成状态直到过期。<br>
+ * 内存中只保留正在写入的一个分块，不在本地磁盘缓存；长时间未更新的会话（任意状态）由后台任务清理，<br>
+ * 同时删除其暂存分块，以及完成中崩溃留下的、没有文件记录的分块
+ */
+public class ResumableUploadStore {
+
+    private static Logger logger = LoggerFactory.getLogger(ResumableUploadStore.class);
+
+    /**
+     * 上传会话集合
+     */
+    public static final String UPLOADS_COLLECTION = GridFS.DEFAULT_BUCKET + ".uploads";
+
+    /**
+     * 分块大小上限：BSON文档上限16MB，减去分块文档其他字段的开销
+     */
+    static final int MAX_CHUNK_SIZE = 16 * 1024 * 1024 - 16 * 1024;
+
+    private static final String STATE_UPLOADING = "uploading";
+    private static final String STATE_FINISHING = "finishing";
+    private static final String STATE_FINISHED = "finished";
+
+    /**
+     * 完成时每批改名的分块数
+     */
+    private static final int RENAME_BATCH = 1000;
+
+    private final DBCollection uploads;
+    private final DBCollection files;
+    private final DBCollection chunks;
+    private final int readBatchChunks;
+    private final long expireMillis;
+    private final ScheduledExecutorService scheduler;
+
+    /**
+     * @param db              数据库
+     * @param readBatchChunks 完成时计算MD5每批读取的分块数
+     * @param expireMinutes   多少分钟没有新分块的上传视为放弃，不大于0表示不清理
+     */
+    public ResumableUploadStore(DB db, int readBatchChunks, long expireMinutes) {
+        this.uploads = db.getCollection(UPLOADS_COLLECTION);
+        this.files = db.getCollection(GridFS.DEFAULT_BUCKET + ".files");
+        this.chunks = db.getCollection(GridFS.DEFAULT_BUCKET + ".chunks");
+        this.readBatchChunks = Math.max(readBatchChunks, 1);
+        this.expireMillis = TimeUnit.MINUTES.toMillis(expireMinutes);
+        this.chunks.createIndex(new BasicDBObject("files_id", 1).append("n", 1), new BasicDBObject("unique", true));
+        this.chunks.createIndex(new BasicDBObject("uploadId", 1).append("n", 1), new BasicDBObject("partialFilterExpression",
+                new BasicDBObject("uploadId", new BasicDBObject("$exists", true))));
+        this.uploads.createIndex(new BasicDBObject("updatedAt", 1));
+        if (expireMinutes > 0) {
+            long interval = Math.max(expireMinutes / 4, 1);
+            this.scheduler = Executors.newSingleThreadScheduledExecutor(DaoExecutors.daemonThreadFactory("gridfs-upload-cleaner-"));
+            this.scheduler.scheduleWithFixedDelay(this::abortExpiredQuietly, interval, interval, TimeUnit.MINUTES);
+        } else {
+            this.scheduler = null;
+        }
+    }
+
+    /**
+     * 开始上传
+     *
+     * @param fileName    文件名
+     * @param contentType 文件类型，可为null
+     * @param length      文件总字节数
+     * @param chunkSize   分块大小（字节），不超过GridFS单块上限
+     * @param metadata    元数据，可为null
+     * @return 上传ID
+     */
+    public Object init(String fileName, String contentType, long length, int chunkSize, Map<String, ?> metadata) {
+        if (length < 0) {
+            throw new IllegalArgumentException("文件长度不能为负数：" + length);
+        }
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("分块大小必须在1到" + MAX_CHUNK_SIZE + "之间：" + chunkSize);
+        }
+        long totalChunks = (length + chunkSize - 1) / chunkSize;
+        if (totalChunks > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("分块数过多，请增大分块大小");
+        }
+        Date now = new Date();
+        BasicDBObject upload = new BasicDBObject("_id", new ObjectId())
+                .append("filename", fileName)
+                .append("contentType", contentType)
+                .append("length", length)
+                .append("chunkSize", chunkSize)
+                .append("totalChunks", (int) totalChunks)
+                .append("chunks", new BasicDBObject())
+                .append("state", STATE_UPLOADING)
+                .append("createdAt", now)
+                .append("updatedAt", now);
+        if (metadata != null && !metadata.isEmpty()) {
+            upload.append("metadata", new BasicDBObject(metadata));
+        }
+        uploads.insert(upload);
+        return upload.get("_id");
+    }
+
+    /**
+     * 上传一个分块，重复上传同一编号时替换；会话不再处于上传中时不会留下分块
+     *
+     * @param uploadId 上传ID
+     * @param n        分块编号，从0开始
+     * @param input    分块内容，长度必须为分块大小（最后一块为剩余字节数）；不会关闭
+     * @return 上传状态
+     * @throws IOException 读取分块内容失败
+     */
+    public UploadStatus uploadChunk(Object uploadId, int n, InputStream input) throws IOException {
+        Object id = toObjectId(uploadId);
+        DBObject upload = requireUpload(id);
+        if (!STATE_UPLOADING.equals(upload.get("state"))) {
+            throw new IllegalStateException("上传[" + id + "]正在完成，不能再上传分块");
+        }
+        long length = ((Number) upload.get("length")).longValue();
+        int chunkSize = ((Number) upload.get("chunkSize")).intValue();
+        int totalChunks = ((Number) upload.get("totalChunks")).intValue();
+        if (n < 0 || n >= totalChunks) {
+            throw new IllegalArgumentException("分块编号超出范围：" + n + "，分块总数" + totalChunks);
+        }
+
+        int expected = (int) Math.min(chunkSize, length - (long) n * chunkSize);
+        byte[] data = readFully(input, expected);
+        ObjectId chunkId = new ObjectId();
+        chunks.insert(new BasicDBObject("_id", chunkId)
+                .append("files_id", chunkId)
+                .append("n", n)
+                .append("uploadId", id)
+                .append("data", data));
+        // 只有仍处于上传中的会话才登记分块，返回登记前的会话以得到被替换的分块
+        DBObject previous;
+        try {
+            previous = uploads.findAndModify(new BasicDBObject("_id", id).append("state", STATE_UPLOADING), null, null, false,
+                    new BasicDBObject("$set", new BasicDBObject("chunks." + n, chunkId).append("updatedAt", new Date())),
+                    false, false);
+        } catch (RuntimeException e) {
+            chunks.remove(new BasicDBObject("_id", chunkId));
+            throw e;
+        }
+        if (previous == null) {
+            // 写入分块期间上传已完成或放弃，客户端不应在finish之后继续上传分块
+            chunks.remove(new BasicDBObject("_id", chunkId));
+            throw new IllegalStateException("上传[" + id + "]已完成或已放弃");
+        }
+        BasicDBObject registered = registeredChunks(previous);
+        Object replaced = registered.put(String.valueOf(n), chunkId);
+        if (replaced != null) {
+            chunks.remove(new BasicDBObject("_id", replaced));
+        }
+        previous.put("chunks", registered);
+        return toStatus(previous);
+    }
+
+    /**
+     * 读取分块内容，长度必须与预期一致
+     */
+    private static byte[] readFully(InputStream input, int expected) throws IOException {
+        byte[] data = new byte[expected];
+        int offset = 0;
+        while (offset < expected) {
+            int read = input.read(data, offset, expected - offset);
+            if (read < 0) {
+                throw new IllegalArgumentException("分块长度不足：需要" + expected + "字节，实际" + offset + "字节");
+            }
+            offset += read;
+        }
+        if (input.read() >= 0) {
+            throw new IllegalArgumentException("分块长度超出：需要" + expected + "字节");
+        }
+        return data;
+    }
+
+    /**
+     * 查询上传状态
+     *
+     * @param uploadId 上传ID
+     * @return 上传状态
+     */
+    public UploadStatus status(Object uploadId) {
+        return toStatus(requireUpload(toObjectId(uploadId)));
+    }
+
+    /**
+     * 完成上传：校验分块齐全，按顺序计算MD5，将已登记的分块改为文件ID并写入GridFS文件记录；<br>
+     * 已完成的上传再次调用时直接返回文件ID
+     *
+     * @param uploadId 上传ID
+     * @return 文件ID
+     */
+    public Object finish(Object uploadId) {
+        Object id = toObjectId(uploadId);
+        DBObject upload = uploads.findAndModify(new BasicDBObject("_id", id).append("state", STATE_UPLOADING), null, null, false,
+                new BasicDBObject("$set", new BasicDBObject("state", STATE_FINISHING).append("updatedAt", new Date())),
+                true, false);
+        if (upload == null) {
+            DBObject current = uploads.findOne(new BasicDBObject("_id", id), new BasicDBObject("state", 1));
+            if (current != null) {
+                if (STATE_FINISHED.equals(current.get("state"))) {
+                    return id;
+                }
+                throw new IllegalStateException("上传[" + id + "]正在完成");
+            }
+            if (files.findOne(new BasicDBObject("_id", id), new BasicDBObject("_id", 1)) != null) {
+                return id;
+            }
+            throw new IllegalArgumentException("上传[" + id + "]不存在或已过期");
+        }
+        UploadStatus status = toStatus(upload);
+        if (!status.isComplete()) {
+            reopen(id);
+            throw new IllegalStateException("上传[" + id + "]缺少分块：已接收" + status.getReceivedChunks()
+                    + "块，共" + status.getTotalChunks() + "块");
+        }
+
+        BasicDBObject registered = registeredChunks(upload);
+        String md5;
+        try {
+            md5 = md5(id, status, registered);
+        } catch (RuntimeException e) {
+            reopen(id);
+            throw e;
+        }
+        // 改名中途失败时会话停留在完成中，由过期清理删除
+        rename(id, registered);
+        BasicDBObject file = new BasicDBObject("_id", id)
+                .append("filename", upload.get("filename"))
+                .append("length", status.getLength())
+                .append("chunkSize", (long) status.getChunkSize())
+                .append("uploadDate", new Date())
+                .append("md5", md5);
+        if (upload.get("contentType") != null) {
+            file.append("contentType", upload.get("contentType"));
+        }
+        if (upload.get("metadata") != null) {
+            file.append("metadata", upload.get("metadata"));
+        }
+        try {
+            files.insert(file);
+        } catch (DuplicateKeyException e) {//NOSONAR
+            // 并发完成，文件记录已写入
+        }
+        // 保留为已完成状态：迟到的分块无法登记，过期时再清理异常中断留下的暂存分块
+        uploads.update(new BasicDBObject("_id", id), new BasicDBObject("$set",
+                new BasicDBObject("state", STATE_FINISHED).append("updatedAt", new Date()))
+                .append("$unset", new BasicDBObject("chunks", "")));
+        return id;
+    }
+
+    /**
+     * 按分块顺序计算已登记分块的MD5，同时校验分块编号连续、长度正确；未登记的暂存分块跳过
+     */
+    private String md5(Object id, UploadStatus status, BasicDBObject registered) {
+        MessageDigest digest = DigestUtils.getMd5Digest();
+        int expected = 0;
+        long total = 0;
+        try (DBCursor cursor = chunks.find(new BasicDBObject("uploadId", id)
+                .append("n", new BasicDBObject("$lt", status.getTotalChunks())))
+                .sort(new BasicDBObject("n", 1)).batchSize(readBatchChunks)) {
+            while (cursor.hasNext()) {
+                DBObject chunk = cursor.next();
+                int n = ((Number) chunk.get("n")).intValue();
+                if (!chunk.get("_id").equals(registered.get(String.valueOf(n)))) {
+                    continue;
+                }
+                if (n != expected) {
+                    throw new IllegalStateException("上传[" + id + "]缺少分块：" + expected);
+                }
+                byte[] data = (byte[]) chunk.get("data");
+                digest.update(data);
+                total += data.length;
+                expected++;
+            }
+        }
+        if (expected != status.getTotalChunks() || total != status.getLength()) {
+            throw new IllegalStateException("上传[" + id + "]分块不完整：" + expected + "块，" + total + "字节");
+        }
+        return Hex.encodeHexString(digest.digest());
+    }
+
+    /**
+     * 将已登记的暂存分块改为文件的分块
+     */
+    private void rename(Object id, BasicDBObject registered) {
+        List<Object> chunkIds = new ArrayList<Object>(registered.values());
+        for (int from = 0; from < chunkIds.size(); from += RENAME_BATCH) {
+            List<Object> batch = chunkIds.subList(from, Math.min(from + RENAME_BATCH, chunkIds.size()));
+            chunks.update(new BasicDBObject("_id", new BasicDBObject("$in", batch)),
+                    new BasicDBObject("$set", new BasicDBObject("files_id", id))
+                            .append("$unset", new BasicDBObject("uploadId", "")), false, true);
+        }
+    }
+
+    private void reopen(Object id) {
+        uploads.update(new BasicDBObject("_id", id).append("state", STATE_FINISHING),
+                new BasicDBObject("$set", new BasicDBObject("state", STATE_UPLOADING)));
+    }
+
+    /**
+     * 放弃上传，删除已上传的分块
+     *
+     * @param uploadId 上传ID
+     * @return 是否删除
+     */
+    public boolean abort(Object uploadId) {
+        Object id = toObjectId(uploadId);
+        DBObject upload = uploads.findAndRemove(new BasicDBObject("_id", id)
+                .append("state", STATE_UPLOADING));
+        if (upload == null) {
+            return false;
+        }
+        chunks.remove(new BasicDBObject("uploadId", id));
+        return true;
+    }
+
+    /**
+     * 清理超过过期时间未更新的会话：上传中、完成中（如完成时崩溃）的会话删除全部分块，<br>
+     * 已完成的会话只删除未改名的暂存分块
+     *
+     * @return 清理的上传数
+     */
+    public int abortExpired() {
+        if (expireMillis <= 0) {
+            return 0;
+        }
+        Date before = new Date(System.currentTimeMillis() - expireMillis);
+        List<Object> expired = new ArrayList<Object>();
+        try (DBCursor cursor = uploads.find(new BasicDBObject("updatedAt", new BasicDBObject("$lt", before)),
+                new BasicDBObject("_id", 1))) {
+            while (cursor.hasNext()) {
+                expired.add(cursor.next().get("_id"));
+            }
+        }
+        int count = 0;
+        for (Object id : expired) {
+            DBObject upload = uploads.findAndRemove(new BasicDBObject("_id", id)
+                    .append("updatedAt", new BasicDBObject("$lt", before)));
+            if (upload == null) {
+                continue;
+            }
+            chunks.remove(new BasicDBObject("uploadId", id));
+            if (!STATE_FINISHED.equals(upload.get("state"))
+                    && files.findOne(new BasicDBObject("_id", id), new BasicDBObject("_id", 1)) == null) {
+                // 完成中崩溃时可能已有部分分块改名
+                chunks.remove(new BasicDBObject("files_id", id));
+            }
+            if (STATE_UPLOADING.equals(upload.get("state"))) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void abortExpiredQuietly() {
+        try {
+            int count = abortExpired();
+            if (count > 0) {
+                logger.info("清理过期的断点续传上传" + count + "个");
+            }
+        } catch (RuntimeException e) {
+            logger.error("清理过期的断点续传上传失败", e);
+        }
+    }
+
+    /**
+     * 停止后台清理
+     */
+    public void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private DBObject requireUpload(Object id) {
+        DBObject upload = uploads.findOne(new BasicDBObject("_id", id));
+        if (upload == null || STATE_FINISHED.equals(upload.get("state"))) {
+            throw new IllegalArgumentException("上传[" + id + "]不存在或已完成");
+        }
+        return upload;
+    }
+
+    /**
+     * 会话中登记的分块：分块编号 -> 暂存分块ID
+     */
+    private static BasicDBObject registeredChunks(DBObject upload) {
+        Object value = upload.get("chunks");
+        BasicDBObject registered = new BasicDBObject();
+        if (value instanceof DBObject) {
+            registered.putAll((DBObject) value);
+        }
+        return registered;
+    }
+
+    /**
+     * 将已接收的分块编号合并为连续的字节范围
+     */
+    static UploadStatus toStatus(DBObject upload) {
+        UploadStatus status = new UploadStatus();
+        status.setUploadId(upload.get("_id"));
+        status.setLength(((Number) upload.get("length")).longValue());
+        status.setChunkSize(((Number) upload.get("chunkSize")).intValue());
+        status.setTotalChunks(((Number) upload.get("totalChunks")).intValue());
+
+        List<Integer> received = new ArrayList<Integer>();
+        for (String n : registeredChunks(upload).keySet()) {
+            received.add(Integer.valueOf(n));
+        }
+        Collections.sort(received);
+        status.setReceivedChunks(received.size());
+        long chunkSize = status.getChunkSize();
+        int i = 0;
+        while (i < received.size()) {
+            int first = received.get(i);
+            int last = first;
+            while (i + 1 < received.size() && received.get(i + 1) == last + 1) {
+                last = received.get(++i);
+            }
+            status.getReceived().add(new long[]{first * chunkSize,
+                    Math.min((last + 1) * chunkSize, status.getLength()) - 1});
+            i++;
+        }
+        return status;
+    }
+
+    private static Object toObjectId(Object id) {
+        if (id == null) {
+            throw new IllegalArgumentException("上传ID不能为空");
+        }
+        return id instanceof String && ObjectId.isValid((String) id) ? new ObjectId((String) id) : id;
+    }
+
+}
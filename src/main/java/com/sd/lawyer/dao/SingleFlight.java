@@ -0,0 +1,150 @@
+package com.sd.lawyer.dao;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 相同读请求合并
+ * ClassName: SingleFlight
+ * Description:同一时刻键相同的多个读请求只有第一个（leader）真正访问数据库，其余请求等待并共享其结果，<br>
+ * leader抛出的异常同样抛给所有等待者；等待超过timeoutMs时等待者放弃合并，自行执行查询。<br>
+ * 共享的结果会被多个线程同时读取，loader应返回原始文档等不会被调用方修改的对象
+ */
+public class SingleFlight {
+
+    /**
+     * 执行中的请求
+     */
+    private final ConcurrentMap<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<String, CompletableFuture<Object>>();
+
+    /**
+     * 等待者最长等待时间（毫秒），不大于0表示一直等待
+     */
+    private final long timeoutMs;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder executions = new LongAdder();
+    private final LongAdder collapsed = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+
+    public SingleFlight(long timeoutMs) {
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * 执行读请求，键相同的请求正在执行时等待其结果
+     *
+     * @param key    请求键，应包含集合写入版本号，避免写入后读到写入前发起的请求结果
+     * @param loader 实际的查询
+     * @return 查询结果
+     */
+    @SuppressWarnings("unchecked")
+    public <V> V execute(String key, Supplier<V> loader) {
+        calls.increment();
+        CompletableFuture<Object> created = new CompletableFuture<Object>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, created);
+        if (existing == null) {
+            return (V) lead(key, created, loader);
+        }
+
+        // 等待leader的结果
+        collapsed.increment();
+        try {
+            return (V) (timeoutMs > 0 ? existing.get(timeoutMs, TimeUnit.MILLISECONDS) : existing.get());
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } catch (TimeoutException e) {
+            // 放弃合并，自行查询
+            collapsed.decrement();
+            timeouts.increment();
+            executions.increment();
+            return loader.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待查询结果时被中断", e);
+        }
+    }
+
+    private Object lead(String key, CompletableFuture<Object> future, Supplier<?> loader) {
+        executions.increment();
+        try {
+            Object value = loader.get();
+            future.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            failures.increment();
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    /**
+     * 请求总数
+     */
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    /**
+     * 实际访问数据库的次数
+     */
+    public long getExecutions() {
+        return executions.sum();
+    }
+
+    /**
+     * 被合并（共享他人结果）的请求数
+     */
+    public long getCollapsed() {
+        return collapsed.sum();
+    }
+
+    /**
+     * 等待超时后自行查询的次数
+     */
+    public long getTimeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * leader查询失败的次数
+     */
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    /**
+     * 当前执行中的请求数
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SingleFlight{" +
+                "calls=" + getCalls() +
+                ", executions=" + getExecutions() +
+                ", collapsed=" + getCollapsed() +
+                ", timeouts=" + getTimeouts() +
+                ", failures=" + getFailures() +
+                '}';
+    }
+
+}
@@ -0,0 +1,35 @@
+package com.sd.lawyer.dao;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 开启延迟写入
+ * Description:标注在实体类上，updateLater提交的更新先放入内存缓冲区，同一主键的多次更新合并为一次，<br>
+ * 按数量或时间批量写入数据库。进程异常退出时缓冲区中的更新会丢失，只适用于浏览次数、最后访问时间等允许丢失的数据；<br>
+ * 未标注时updateLater同步执行
+ */
+@Documented
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface WriteBehind {
+
+    /**
+     * 缓冲区最多容纳的主键数，已满时提交方阻塞等待写入
+     */
+    int maxPending() default 10000;
+
+    /**
+     * 缓冲的主键数达到该值时立即写入
+     */
+    int flushSize() default 500;
+
+    /**
+     * 定时写入的间隔（毫秒）
+     */
+    long flushIntervalMs() default 1000;
+
+}
@@ -0,0 +1,515 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.ToIntFunction;
+
+/**
+ * 延迟写入缓冲区
+ * ClassName: WriteBehindBuffer
+ * Description:按主键合并更新：$set、$unset后者覆盖前者，$inc累加，$max、$min取最大、最小值，<br>
+ * 同一字段的$inc、$max、$min无法合并为一个运算符（MongoDB不允许同一字段出现在多个运算符中），此时先写入该主键已缓冲的更新。<br>
+ * 缓冲的主键数达到flushSize或每隔flushIntervalMs由后台线程批量写入；主键数达到maxPending时提交方阻塞（背压）。<br>
+ * 写入串行执行，同一主键先提交的更新总是先写入；写入失败只记录日志及计数，不重试
+ */
+public class WriteBehindBuffer {
+
+    private static Logger logger = LoggerFactory.getLogger(WriteBehindBuffer.class);
+
+    /**
+     * 支持的运算符
+     */
+    private static final List<String> OPERATORS = Arrays.asList("$set", "$unset", "$inc", "$max", "$min");
+
+    /**
+     * 不能与$set、$unset以外的其他运算符作用于同一字段的运算符
+     */
+    private static final List<String> FOLDED_OPERATORS = Arrays.asList("$inc", "$max", "$min");
+
+    /**
+     * 主键 → 合并后的更新文档
+     */
+    private final ConcurrentMap<Object, BasicDBObject> pending = new ConcurrentHashMap<Object, BasicDBObject>();
+
+    /**
+     * 缓冲区容量，每个缓冲的主键占用一个许可
+     */
+    private final Semaphore capacity;
+
+    private final int flushSize;
+
+    /**
+     * 批量写入，参数为主键 → 更新，返回写入失败的主键数
+     */
+    private final ToIntFunction<Map<Object, Update>> writer;
+
+    private final ScheduledExecutorService scheduler;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    private volatile boolean closed;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private final AtomicLong maxFlushNanos = new AtomicLong();
+
+    /**
+     * @param name            名称，用于线程名及日志
+     * @param maxPending      缓冲区最多容纳的主键数
+     * @param flushSize       达到该主键数时立即写入
+     * @param flushIntervalMs 定时写入的间隔（毫秒）
+     * @param writer          批量写入，返回写入失败的主键数；抛出异常时视为整批失败
+     */
+    public WriteBehindBuffer(String name, int maxPending, int flushSize, long flushIntervalMs,
+                             ToIntFunction<Map<Object, Update>> writer) {
+        this.capacity = new Semaphore(Math.max(maxPending, 1));
+        this.flushSize = Math.max(flushSize, 1);
+        this.writer = writer;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(DaoExecutors.daemonThreadFactory("mongo-write-behind-" + name + "-"));
+        this.scheduler.scheduleWithFixedDelay(this::flushQuietly, flushIntervalMs, flushIntervalMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 提交更新，与缓冲区中同一主键的更新合并
+     *
+     * @param id     主键
+     * @param update 更新，只支持$set、$unset、$inc、$max、$min
+     * @throws IllegalArgumentException 包含不支持的运算符
+     */
+    public void submit(Object id, Update update) {
+        if (closed) {
+            throw new IllegalStateException("延迟写入缓冲区已关闭");
+        }
+        DBObject operations = update.getUpdateObject();
+        // 先校验，避免占用许可后或合并到一半时失败
+        validate(operations);
+        submitted.increment();
+
+        // 0：已合并，1：与已缓冲的更新冲突，2：缓冲区中没有该主键
+        final int[] outcome = new int[1];
+        while (true) {
+            outcome[0] = 2;
+            pending.computeIfPresent(id, (key, merged) -> {
+                if (conflicts(merged, operations)) {
+                    outcome[0] = 1;
+                    return merged;
+                }
+                outcome[0] = 0;
+                return merge(merged, operations);
+            });
+            if (outcome[0] == 0) {
+                return;
+            }
+            if (outcome[0] == 1) {
+                flush(id);
+                continue;
+            }
+
+            // 新主键占用一个许可，缓冲区已满时先触发写入再等待
+            if (!capacity.tryAcquire()) {
+                scheduleFlush();
+                try {
+                    capacity.acquire();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("等待延迟写入缓冲区空间时被中断", e);
+                }
+            }
+            pending.compute(id, (key, merged) -> {
+                if (merged == null) {
+                    outcome[0] = 2;
+                    return merge(new BasicDBObject(), operations);
+                }
+                // 等待期间其他线程已加入该主键
+                if (conflicts(merged, operations)) {
+                    outcome[0] = 1;
+                    return merged;
+                }
+                outcome[0] = 0;
+                return merge(merged, operations);
+            });
+            if (outcome[0] != 2) {
+                capacity.release();
+            }
+            if (outcome[0] == 1) {
+                flush(id);
+                continue;
+            }
+            if (pending.size() >= flushSize) {
+                scheduleFlush();
+            }
+            return;
+        }
+    }
+
+    /**
+     * 立即写入缓冲区中的全部更新（在调用线程中执行）
+     *
+     * @return 写入的主键数
+     */
+    public int flush() {
+        flushLock.lock();
+        try {
+            Map<Object, Update> batch = new LinkedHashMap<Object, Update>();
+            for (Iterator<Object> it = pending.keySet().iterator(); it.hasNext(); ) {
+                Object id = it.next();
+                BasicDBObject merged = pending.remove(id);
+                if (merged != null) {
+                    batch.put(id, Update.fromDBObject(merged));
+                }
+            }
+            capacity.release(batch.size());
+            if (batch.isEmpty()) {
+                return 0;
+            }
+            write(batch);
+            return batch.size();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 立即写入指定主键已缓冲的更新，用于无法与新的更新合并时
+     */
+    private void flush(Object id) {
+        flushLock.lock();
+        try {
+            BasicDBObject merged = pending.remove(id);
+            if (merged != null) {
+                capacity.release();
+                write(Collections.singletonMap(id, Update.fromDBObject(merged)));
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void write(Map<Object, Update> batch) {
+        long start = System.nanoTime();
+        try {
+            int failures = Math.min(Math.max(writer.applyAsInt(batch), 0), batch.size());
+            written.add(batch.size() - failures);
+            if (failures > 0) {
+                failed.add(failures);
+                logger.error("延迟写入部分失败，丢弃" + failures + "个主键的更新，共" + batch.size() + "个");
+            }
+        } catch (RuntimeException e) {
+            failed.add(batch.size());
+            logger.error("延迟写入失败，丢弃" + batch.size() + "个主键的更新", e);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            flushes.increment();
+            flushNanos.add(elapsed);
+            maxFlushNanos.accumulateAndGet(elapsed, Math::max);
+        }
+    }
+
+    /**
+     * 停止定时写入并写入剩余的更新，应用关闭时调用
+     */
+    public void close() {
+        closed = true;
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        flush();
+    }
+
+    private void scheduleFlush() {
+        if (!closed && flushScheduled.compareAndSet(false, true)) {
+            scheduler.execute(() -> {
+                flushScheduled.set(false);
+                flushQuietly();
+            });
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+        } catch (RuntimeException e) {
+            logger.error("延迟写入失败", e);
+        }
+    }
+
+    /**
+     * 校验更新只包含支持的运算符
+     *
+     * @throws IllegalArgumentException 包含不支持的运算符
+     */
+    static void validate(DBObject operations) {
+        for (String operator : operations.keySet()) {
+            if (!OPERATORS.contains(operator)) {
+                throw new IllegalArgumentException("延迟写入只支持$set、$unset、$inc、$max、$min：" + operator);
+            }
+            if ("$inc".equals(operator)) {
+                DBObject fields = (DBObject) operations.get(operator);
+                for (String field : fields.keySet()) {
+                    if (!(fields.get(field) instanceof Number)) {
+                        throw new IllegalArgumentException("$inc的值必须为数字：" + field);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 更新能否合并到已缓冲的更新中，以下情况冲突，需先写入已缓冲的更新：<br>
+     * 1. 字段与已缓冲的字段是父子路径（如$set a与$inc a.b）；<br>
+     * 2. $inc、$max、$min作用于已缓冲的另一个$inc、$max、$min字段（字段已被$set、$unset时可以合并）；<br>
+     * 3. 合并时的值无法在本地计算：$inc到非数字，$max、$min比较不同类型的值
+     */
+    static boolean conflicts(BasicDBObject merged, DBObject operations) {
+        for (String operator : operations.keySet()) {
+            DBObject fields = (DBObject) operations.get(operator);
+            for (String field : fields.keySet()) {
+                if (overlaps(merged, field)) {
+                    return true;
+                }
+                if (!FOLDED_OPERATORS.contains(operator)) {
+                    continue;
+                }
+                for (String other : FOLDED_OPERATORS) {
+                    BasicDBObject section = (BasicDBObject) merged.get(other);
+                    if (!other.equals(operator) && section != null && section.containsField(field)) {
+                        return true;
+                    }
+                }
+                BasicDBObject set = (BasicDBObject) merged.get("$set");
+                BasicDBObject target = set != null && set.containsField(field) ? set : (BasicDBObject) merged.get(operator);
+                if (target != null && target.containsField(field) && !canFold(operator, target.get(field), fields.get(field))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 字段是否与已缓冲的某个字段为父子路径
+     */
+    private static boolean overlaps(BasicDBObject merged, String field) {
+        for (String operator : merged.keySet()) {
+            for (String other : ((DBObject) merged.get(operator)).keySet()) {
+                if (other.startsWith(field + ".") || field.startsWith(other + ".")) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 能否在本地计算$inc、$max、$min的合并结果：$inc要求两个值都是数字，$max、$min要求都是数字或同一类型的可比较值
+     */
+    private static boolean canFold(String operator, Object current, Object value) {
+        if (current instanceof Number && value instanceof Number) {
+            return true;
+        }
+        return !"$inc".equals(operator) && current instanceof Comparable && value != null
+                && current.getClass() == value.getClass();
+    }
+
+    /**
+     * 将更新合并到已缓冲的更新文档中，调用前应先经过validate、conflicts检查（未检查时不同类型的值可能抛出ClassCastException）
+     */
+    static BasicDBObject merge(BasicDBObject merged, DBObject operations) {
+        for (String operator : operations.keySet()) {
+            DBObject fields = (DBObject) operations.get(operator);
+            for (String field : fields.keySet()) {
+                Object value = fields.get(field);
+                if ("$set".equals(operator)) {
+                    remove(merged, "$unset", field);
+                    remove(merged, "$inc", field);
+                    remove(merged, "$max", field);
+                    remove(merged, "$min", field);
+                    section(merged, "$set").put(field, value);
+                } else if ("$unset".equals(operator)) {
+                    remove(merged, "$set", field);
+                    remove(merged, "$inc", field);
+                    remove(merged, "$max", field);
+                    remove(merged, "$min", field);
+                    section(merged, "$unset").put(field, 1);
+                } else if ("$inc".equals(operator)) {
+                    fold(merged, "$inc", field, value, true);
+                } else if ("$max".equals(operator) || "$min".equals(operator)) {
+                    fold(merged, operator, field, value, "$max".equals(operator));
+                } else {
+                    throw new IllegalArgumentException("延迟写入只支持$set、$unset、$inc、$max、$min：" + operator);
+                }
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * 合并$inc、$max、$min：字段已被$set时直接计算到$set的值上，否则与同一运算符的值合并
+     *
+     * @param larger $inc时表示累加；$max、$min时表示取较大值还是较小值
+     */
+    @SuppressWarnings("unchecked")
+    private static void fold(BasicDBObject merged, String operator, String field, Object value, boolean larger) {
+        BasicDBObject unset = (BasicDBObject) merged.get("$unset");
+        if (unset != null && unset.containsField(field)) {
+            // 字段已被删除，$inc、$max、$min的结果即为本次的值
+            remove(merged, "$unset", field);
+            section(merged, "$set").put(field, value);
+            return;
+        }
+        BasicDBObject set = (BasicDBObject) merged.get("$set");
+        String target = set != null && set.containsField(field) ? "$set" : operator;
+        BasicDBObject section = section(merged, target);
+        Object current = section.get(field);
+        if (current == null) {
+            section.put(field, value);
+        } else if ("$inc".equals(operator)) {
+            section.put(field, add((Number) current, (Number) value));
+        } else {
+            int compared = current instanceof Number && value instanceof Number
+                    ? compare((Number) current, (Number) value) : ((Comparable<Object>) current).compareTo(value);
+            if (larger ? compared < 0 : compared > 0) {
+                section.put(field, value);
+            }
+        }
+    }
+
+    /**
+     * 按数值比较，Integer、Long等整数不经过double转换以免丢失精度
+     */
+    private static int compare(Number a, Number b) {
+        if (isIntegral(a) && isIntegral(b)) {
+            return Long.compare(a.longValue(), b.longValue());
+        }
+        return Double.compare(a.doubleValue(), b.doubleValue());
+    }
+
+    private static boolean isIntegral(Number n) {
+        return n instanceof Integer || n instanceof Long || n instanceof Short || n instanceof Byte;
+    }
+
+    private static Number add(Number a, Number b) {
+        if (!isIntegral(a) || !isIntegral(b)) {
+            return a.doubleValue() + b.doubleValue();
+        }
+        long sum = a.longValue() + b.longValue();
+        return a instanceof Long || b instanceof Long || sum != (int) sum ? (Number) sum : (Number) (int) sum;
+    }
+
+    private static BasicDBObject section(BasicDBObject merged, String operator) {
+        BasicDBObject section = (BasicDBObject) merged.get(operator);
+        if (section == null) {
+            section = new BasicDBObject();
+            merged.put(operator, section);
+        }
+        return section;
+    }
+
+    private static void remove(BasicDBObject merged, String operator, String field) {
+        BasicDBObject section = (BasicDBObject) merged.get(operator);
+        if (section != null) {
+            section.remove(field);
+            if (section.isEmpty()) {
+                merged.remove(operator);
+            }
+        }
+    }
+
+    /**
+     * 提交的更新数
+     */
+    public long getSubmitted() {
+        return submitted.sum();
+    }
+
+    /**
+     * 实际写入的主键数
+     */
+    public long getWritten() {
+        return written.sum();
+    }
+
+    /**
+     * 写入失败（被丢弃）的主键数
+     */
+    public long getFailed() {
+        return failed.sum();
+    }
+
+    /**
+     * 合并率：提交的更新数 / 写入的主键数
+     */
+    public double getCoalescingRatio() {
+        long count = written.sum() + failed.sum();
+        return count == 0 ? 1.0 : (double) submitted.sum() / count;
+    }
+
+    /**
+     * 批量写入次数
+     */
+    public long getFlushes() {
+        return flushes.sum();
+    }
+
+    /**
+     * 平均每次批量写入的耗时（毫秒）
+     */
+    public double getAvgFlushMillis() {
+        long count = flushes.sum();
+        return count == 0 ? 0 : flushNanos.sum() / 1e6 / count;
+    }
+
+    /**
+     * 最长一次批量写入的耗时（毫秒）
+     */
+    public double getMaxFlushMillis() {
+        return maxFlushNanos.get() / 1e6;
+    }
+
+    /**
+     * 当前缓冲的主键数
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindBuffer{" +
+                "submitted=" + getSubmitted() +
+                ", written=" + getWritten() +
+                ", failed=" + getFailed() +
+                ", coalescingRatio=" + getCoalescingRatio() +
+                ", flushes=" + getFlushes() +
+                ", avgFlushMillis=" + getAvgFlushMillis() +
+                ", maxFlushMillis=" + getMaxFlushMillis() +
+                ", pending=" + getPending() +
+                '}';
+    }
+
+}
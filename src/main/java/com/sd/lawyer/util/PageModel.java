@@ -41,6 +41,15 @@ public class PageModel<T> implements Serializable {
     // 数据集合
 
     private List<T> list;
+    // 是否还有下一页
+
+    private boolean hasNext;
+    // 游标分页：下一页游标，为空表示没有下一页
+
+    private String nextCursor;
+    // 游标分页：上一页游标，为空表示没有上一页
+
+    private String prevCursor;
 
     /** 构造方法 */
 
@@ -141,6 +150,30 @@ public class PageModel<T> implements Serializable {
         this.list = list;
     }
 
+    public boolean isHasNext() {
+        return hasNext;
+    }
+
+    public void setHasNext(boolean hasNext) {
+        this.hasNext = hasNext;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public void setNextCursor(String nextCursor) {
+        this.nextCursor = nextCursor;
+    }
+
+    public String getPrevCursor() {
+        return prevCursor;
+    }
+
+    public void setPrevCursor(String prevCursor) {
+        this.prevCursor = prevCursor;
+    }
+
     /**
      * 是否是第一页
      *
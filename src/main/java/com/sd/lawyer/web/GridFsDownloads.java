@@ -0,0 +1,230 @@
+package com.sd.lawyer.web;
+
+import com.mongodb.gridfs.GridFSDBFile;
+import com.sd.lawyer.dao.MongoDaoImpl;
+import com.sd.lawyer.util.EmptyUtils;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+
+/**
+ * GridFS文件下载
+ * 将GridFS分块直接写入响应，不在内存或磁盘中缓存整个文件；支持断点续传（Range/206，直接定位到范围所在的分块）
+ * 及按文件MD5（ETag/If-None-Match）、上传时间（Last-Modified/If-Modified-Since）的缓存验证。
+ * 用法：
+ * <pre>
+ * GridFSDBFile file = caseDao.getFileFromMongoById(id);
+ * GridFsDownloads.serve(caseDao, file, true, request, response);
+ * </pre>
+ */
+public final class GridFsDownloads {
+
+    private static final String DEFAULT_CONTENT_TYPE = "application/octet-stream";
+
+    private GridFsDownloads() {
+    }
+
+    /**
+     * 下载文件，HEAD请求只返回响应头
+     *
+     * @param dao        用于读取文件分块的DAO
+     * @param file       文件，为null时返回404
+     * @param attachment true以附件形式下载，false在浏览器中打开（如PDF、音频）
+     * @param request    请求
+     * @param response   响应
+     * @throws IOException 写入响应失败（如客户端断开）或文件分块缺失
+     */
+    public static void serve(MongoDaoImpl<?> dao, GridFSDBFile file, boolean attachment,
+                             HttpServletRequest request, HttpServletResponse response) throws IOException {
+        if (file == null) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        long length = file.getLength();
+        String etag = file.getMD5() == null ? null : "\"" + file.getMD5() + "\"";
+        long lastModified = file.getUploadDate() == null ? -1 : file.getUploadDate().getTime() / 1000 * 1000;
+
+        response.setHeader("Accept-Ranges", "bytes");
+        if (etag != null) {
+            response.setHeader("ETag", etag);
+        }
+        if (lastModified >= 0) {
+            response.setDateHeader("Last-Modified", lastModified);
+        }
+
+        // 缓存验证：有If-None-Match时忽略If-Modified-Since
+        if (notModified(request, etag, lastModified)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        String contentType = EmptyUtils.isEmpty(file.getContentType()) ? DEFAULT_CONTENT_TYPE : file.getContentType();
+        response.setContentType(contentType);
+        response.setHeader("Content-Disposition", contentDisposition(file.getFilename(), attachment));
+
+        // 解析范围，If-Range与当前文件不一致时返回整个文件
+        long[] range = null;
+        String rangeHeader = request.getHeader("Range");
+        if (rangeHeader != null && length > 0 && ifRangeMatches(request, etag, lastModified)) {
+            range = parseRange(rangeHeader, length);
+            if (range == null) {
+                response.setHeader("Content-Range", "bytes */" + length);
+                response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                return;
+            }
+        }
+
+        long start = 0;
+        long end = length - 1;
+        if (range != null && (range[0] > 0 || range[1] < length - 1)) {
+            start = range[0];
+            end = range[1];
+            response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+            response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + length);
+        }
+        response.setHeader("Content-Length", String.valueOf(end - start + 1));
+
+        if ("HEAD".equalsIgnoreCase(request.getMethod()) || length == 0) {
+            return;
+        }
+        ServletOutputStream out = response.getOutputStream();
+        dao.writeFileFromMongo(file, start, end, out);
+        out.flush();
+    }
+
+    /**
+     * 按If-None-Match、If-Modified-Since判断客户端缓存是否仍然有效
+     */
+    private static boolean notModified(HttpServletRequest request, String etag, long lastModified) {
+        String ifNoneMatch = request.getHeader("If-None-Match");
+        if (ifNoneMatch != null) {
+            return etag != null && matchesEtag(ifNoneMatch, etag);
+        }
+        if (lastModified < 0) {
+            return false;
+        }
+        long ifModifiedSince = dateHeader(request, "If-Modified-Since");
+        return ifModifiedSince >= 0 && lastModified <= ifModifiedSince;
+    }
+
+    /**
+     * If-Range为ETag时要求与当前ETag相同，为日期时要求与上传时间相同，没有If-Range时总是匹配
+     */
+    private static boolean ifRangeMatches(HttpServletRequest request, String etag, long lastModified) {
+        String ifRange = request.getHeader("If-Range");
+        if (ifRange == null) {
+            return true;
+        }
+        if (ifRange.startsWith("\"") || ifRange.startsWith("W/")) {
+            // If-Range只接受强验证
+            return etag != null && ifRange.equals(etag);
+        }
+        long date = dateHeader(request, "If-Range");
+        return date >= 0 && date == lastModified;
+    }
+
+    /**
+     * If-None-Match中的ETag列表是否包含当前ETag（弱比较），*匹配任意文件
+     */
+    private static boolean matchesEtag(String header, String etag) {
+        for (String item : header.split(",")) {
+            String candidate = item.trim();
+            if ("*".equals(candidate)) {
+                return true;
+            }
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 解析Range请求头，只支持单个范围：bytes=start-end、bytes=start-、bytes=-suffixLength，<br>
+     * 多个范围时返回整个文件（等同于忽略Range）
+     *
+     * @param header Range请求头
+     * @param length 文件长度
+     * @return {起始位置, 结束位置}（均含），范围无法满足时返回null
+     */
+    static long[] parseRange(String header, long length) {
+        String value = header.trim();
+        if (!value.startsWith("bytes=")) {
+            return new long[]{0, length - 1};
+        }
+        String spec = value.substring("bytes=".length()).trim();
+        if (spec.indexOf(',') >= 0) {
+            return new long[]{0, length - 1};
+        }
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[]{0, length - 1};
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // 最后N个字节
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(length - suffix, 0);
+                end = length - 1;
+            } else {
+                start = Long.parseLong(first);
+                if (last.isEmpty()) {
+                    end = length - 1;
+                } else {
+                    end = Long.parseLong(last);
+                    if (end < start) {
+                        // 语法无效的范围按规范忽略
+                        return new long[]{0, length - 1};
+                    }
+                    end = Math.min(end, length - 1);
+                }
+            }
+            if (start >= length) {
+                return null;
+            }
+            return new long[]{start, end};
+        } catch (NumberFormatException e) {
+            // 格式错误的Range按规范忽略
+            return new long[]{0, length - 1};
+        }
+    }
+
+    private static long dateHeader(HttpServletRequest request, String name) {
+        try {
+            return request.getDateHeader(name);
+        } catch (IllegalArgumentException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 生成Content-Disposition，文件名按RFC 5987编码以支持中文
+     */
+    private static String contentDisposition(String fileName, boolean attachment) {
+        String type = attachment ? "attachment" : "inline";
+        if (EmptyUtils.isEmpty(fileName)) {
+            return type;
+        }
+        try {
+            String encoded = URLEncoder.encode(fileName, "UTF-8").replace("+", "%20");
+            return type + "; filename=\"" + encoded + "\"; filename*=UTF-8''" + encoded;
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
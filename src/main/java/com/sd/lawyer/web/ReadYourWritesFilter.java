@@ -0,0 +1,61 @@
+package com.sd.lawyer.web;
+
+import com.sd.lawyer.dao.ReadYourWrites;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import javax.servlet.FilterChain;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import javax.servlet.http.HttpSession;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * 读己之写过滤器
+ * 请求开始时从会话恢复最近的写入记录，结束时保存到会话（只在会话已存在时）并清理线程中的记录，
+ * 使同一请求及同一会话后续请求中对刚写入集合的读操作发送到主节点
+ */
+@Component
+public class ReadYourWritesFilter extends OncePerRequestFilter {
+
+    /**
+     * 会话中保存写入记录的属性名
+     */
+    public static final String SESSION_ATTRIBUTE = ReadYourWritesFilter.class.getName() + ".WRITES";
+
+    /**
+     * 写入后读主节点的时间窗口（毫秒）
+     */
+    @Value("${lawyer.mongo.read-your-writes-window-ms:90000}")
+    private long windowMillis = 90000;
+
+    @Override
+    @SuppressWarnings("unchecked")
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        HttpSession session = request.getSession(false);
+        ReadYourWrites.restore(session == null ? null : (Map<String, Long>) session.getAttribute(SESSION_ATTRIBUTE));
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            session = request.getSession(false);
+            if (session != null) {
+                try {
+                    Map<String, Long> writes = ReadYourWrites.snapshot(windowMillis);
+                    if (writes == null) {
+                        session.removeAttribute(SESSION_ATTRIBUTE);
+                    } else {
+                        session.setAttribute(SESSION_ATTRIBUTE, writes);
+                    }
+                } catch (IllegalStateException e) {//NOSONAR
+                    // 会话已失效
+                }
+            }
+            ReadYourWrites.clear();
+        }
+    }
+
+}
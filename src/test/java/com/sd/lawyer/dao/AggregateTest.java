@@ -0,0 +1,131 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.ReadPreference;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.mapping.Field;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.group;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.match;
+import static org.springframework.data.mongodb.core.aggregation.Aggregation.newAggregation;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * 聚合管道的字段映射、游标参数及结果读取（集合为模拟对象）
+ */
+public class AggregateTest {
+
+    private static MongoClient client;
+
+    private DBCollection collection;
+    private Cursor cursor;
+    private MongoDaoImpl<Case> dao;
+
+    @BeforeClass
+    public static void setUpClient() {
+        // 客户端在首次操作时才连接，这里只使用转换器
+        client = new MongoClient("localhost");
+    }
+
+    @AfterClass
+    public static void tearDownClient() {
+        client.close();
+    }
+
+    @Before
+    public void setUp() {
+        collection = mock(DBCollection.class);
+        cursor = mock(Cursor.class);
+        Iterator<DBObject> rows = Arrays.<DBObject>asList(new BasicDBObject("_id", "civil").append("total", 3),
+                new BasicDBObject("_id", "criminal").append("total", 1)).iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> rows.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> rows.next());
+        when(collection.aggregate(any(List.class), any(AggregationOptions.class), any(ReadPreference.class))).thenReturn(cursor);
+        dao = new MongoDaoImpl<Case>() {
+        };
+        dao.mongoTemplate = new MongoTemplate(new SimpleMongoDbFactory(client, "aggregate-test")) {
+            @Override
+            public DBCollection getCollection(String collectionName) {
+                return collection;
+            }
+        };
+        dao.streamBatchSize = 50;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void mapsFieldsAndRequestsCursor() {
+        List<TypeCount> counts = dao.aggregate(newAggregation(match(where("type").is("civil")),
+                group("type").count().as("total")), TypeCount.class);
+        assertEquals(2, counts.size());
+        assertEquals("civil", counts.get(0).id);
+        assertEquals(3, counts.get(0).total);
+        verify(cursor).close();
+
+        ArgumentCaptor<List> pipeline = ArgumentCaptor.forClass(List.class);
+        ArgumentCaptor<AggregationOptions> options = ArgumentCaptor.forClass(AggregationOptions.class);
+        verify(collection).aggregate(pipeline.capture(), options.capture(), any(ReadPreference.class));
+        // 属性名按实体映射为数据库字段
+        assertEquals(new BasicDBObject("$match", new BasicDBObject("case_type", "civil")), pipeline.getValue().get(0));
+        assertEquals("$case_type", ((DBObject) ((DBObject) pipeline.getValue().get(1)).get("$group")).get("_id"));
+        assertEquals(AggregationOptions.OutputMode.CURSOR, options.getValue().getOutputMode());
+        assertTrue(options.getValue().getAllowDiskUse());
+        assertEquals(Integer.valueOf(50), options.getValue().getBatchSize());
+    }
+
+    @Test
+    public void streamReadsDocumentsAndClosesCursor() {
+        Aggregation aggregation = newAggregation(group("type").count().as("total"));
+        try (Stream<DBObject> stream = dao.aggregateStream(aggregation, DBObject.class)) {
+            assertEquals(Arrays.<Object>asList("civil", "criminal"), stream.map(row -> row.get("_id")).collect(Collectors.toList()));
+        }
+        verify(cursor).close();
+    }
+
+    public static class Case {
+        @Id
+        private String id;
+        @Field("case_type")
+        private String type;
+
+        public String getId() {
+            return id;
+        }
+
+        public String getType() {
+            return type;
+        }
+    }
+
+    public static class TypeCount {
+        @Id
+        private String id;
+        private int total;
+    }
+
+}
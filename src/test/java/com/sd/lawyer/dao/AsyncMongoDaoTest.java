@@ -0,0 +1,73 @@
+package com.sd.lawyer.dao;
+
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyZeroInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 异步DAO的委托、失败传播及线程池拒绝
+ */
+public class AsyncMongoDaoTest {
+
+    @SuppressWarnings("unchecked")
+    private final MongoDao<String> dao = mock(MongoDao.class);
+
+    @Test
+    public void delegatesOnExecutor() throws Exception {
+        when(dao.findById("a")).thenReturn("entity-a");
+        when(dao.increment("a", "views", 1)).thenReturn("entity-a2");
+        AsyncMongoDaoImpl<String> async = new AsyncMongoDaoImpl<String>(dao, DaoExecutors.async());
+        assertEquals("entity-a", async.findById("a").get(5, TimeUnit.SECONDS));
+        assertEquals("entity-a2", async.increment("a", "views", 1).get(5, TimeUnit.SECONDS));
+
+        Update update = new Update().inc("views", 1);
+        assertNull(async.updateLater("a", update).get(5, TimeUnit.SECONDS));
+        verify(dao).updateLater("a", update);
+    }
+
+    @Test
+    public void failureCompletesExceptionally() throws Exception {
+        IllegalStateException error = new IllegalStateException("down");
+        when(dao.findById("a")).thenThrow(error);
+        CompletableFuture<String> future = new AsyncMongoDaoImpl<String>(dao, Runnable::run).findById("a");
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(error, e.getCause());
+        }
+    }
+
+    @Test
+    public void rejectedTaskFailsFast() throws Exception {
+        Executor full = command -> {
+            throw new RejectedExecutionException("full");
+        };
+        CompletableFuture<String> future = new AsyncMongoDaoImpl<String>(dao, full).findById("a");
+        assertTrue(future.isCompletedExceptionally());
+        try {
+            future.get();
+            fail();
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof RejectedExecutionException);
+        }
+        verifyZeroInteractions(dao);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import com.sd.lawyer.beans.UpdateResult;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 原子更新方法生成的更新文档及结果转换（MongoTemplate为模拟对象）
+ */
+public class AtomicUpdateTest {
+
+    private final ObjectId id = new ObjectId();
+
+    private MongoTemplate mongoTemplate;
+    private MongoDaoImpl<Counter> dao;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        WriteResult writeResult = mock(WriteResult.class);
+        when(writeResult.getN()).thenReturn(1);
+        when(writeResult.isUpdateOfExisting()).thenReturn(true);
+        when(mongoTemplate.getCollectionName(any(Class.class))).thenReturn("counter");
+        when(mongoTemplate.updateFirst(any(Query.class), any(Update.class), eq(Counter.class), anyString())).thenReturn(writeResult);
+        dao = new MongoDaoImpl<Counter>() {
+        };
+        dao.mongoTemplate = mongoTemplate;
+    }
+
+    @Test
+    public void pushAppendsEachValueById() {
+        UpdateResult result = dao.push(id.toHexString(), "tags", "a", "b");
+        assertEquals(1, result.getMatchedCount());
+        assertTrue(result.isUpdateOfExisting());
+        assertNull(result.getUpsertedId());
+
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate).updateFirst(query.capture(), update.capture(), eq(Counter.class), eq("counter"));
+        // 24位十六进制字符串按ObjectId匹配
+        assertEquals(new BasicDBObject("_id", id), query.getValue().getQueryObject());
+        assertEquals(operand(new Update().push("tags").each("a", "b"), "$push", "tags"), operand(update.getValue(), "$push", "tags"));
+    }
+
+    @Test
+    public void addToSetAndPullById() {
+        dao.addToSet("custom", "tags", "a");
+        dao.pull("custom", "tags", "b");
+        ArgumentCaptor<Query> query = ArgumentCaptor.forClass(Query.class);
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        verify(mongoTemplate, times(2)).updateFirst(query.capture(), update.capture(), eq(Counter.class), eq("counter"));
+        assertEquals(new BasicDBObject("_id", "custom"), query.getAllValues().get(0).getQueryObject());
+        assertEquals(operand(new Update().addToSet("tags").each("a"), "$addToSet", "tags"),
+                operand(update.getAllValues().get(0), "$addToSet", "tags"));
+        assertEquals(new BasicDBObject("$pull", new BasicDBObject("tags", "b")), update.getAllValues().get(1).getUpdateObject());
+    }
+
+    @Test
+    public void incrementReturnsUpdatedEntity() {
+        Counter updated = new Counter();
+        when(mongoTemplate.findAndModify(any(Query.class), any(Update.class), any(FindAndModifyOptions.class),
+                eq(Counter.class), anyString())).thenReturn(updated);
+        assertSame(updated, dao.increment(id, "views", 2));
+
+        ArgumentCaptor<Update> update = ArgumentCaptor.forClass(Update.class);
+        ArgumentCaptor<FindAndModifyOptions> options = ArgumentCaptor.forClass(FindAndModifyOptions.class);
+        verify(mongoTemplate).findAndModify(any(Query.class), update.capture(), options.capture(), eq(Counter.class), eq("counter"));
+        assertEquals(new BasicDBObject("$inc", new BasicDBObject("views", 2)), update.getValue().getUpdateObject());
+        assertTrue(options.getValue().isReturnNew());
+        assertFalse(options.getValue().isUpsert());
+    }
+
+    /**
+     * 更新文档中某个运算符下字段的值（$each等修饰符在执行时才映射为文档）
+     */
+    private static Object operand(Update update, String operator, String field) {
+        return ((DBObject) update.getUpdateObject().get(operator)).get(field);
+    }
+
+    public static class Counter {
+        @Id
+        private ObjectId id;
+        private long views;
+
+        public ObjectId getId() {
+            return id;
+        }
+
+        public long getViews() {
+            return views;
+        }
+    }
+
+}
@@ -0,0 +1,199 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.BulkWriteError;
+import com.mongodb.BulkWriteResult;
+import com.mongodb.DBObject;
+import com.sd.lawyer.beans.BulkInsertResult;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.convert.MongoConverter;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量写入的主键生成、分块及失败位置换算
+ */
+public class BatchInsertTest {
+
+    private MongoTemplate mongoTemplate;
+    private List<BulkOperations> operations;
+    private MongoDaoImpl<Doc> dao;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        MongoConverter converter = mock(MongoConverter.class);
+        when(mongoTemplate.getCollectionName(any(Class.class))).thenReturn("doc");
+        when(mongoTemplate.getConverter()).thenReturn(converter);
+        doAnswer(invocation -> {
+            Doc doc = (Doc) invocation.getArguments()[0];
+            ((DBObject) invocation.getArguments()[1]).put("_id", doc.id);
+            return null;
+        }).when(converter).write(any(), any(DBObject.class));
+        operations = new ArrayList<BulkOperations>();
+        dao = new MongoDaoImpl<Doc>() {
+        };
+        dao.mongoTemplate = mongoTemplate;
+        dao.insertChunkSize = 2;
+        dao.bulkParallelism = 1;
+    }
+
+    @Test
+    public void assignsIdsByType() {
+        EntityMetadata<Doc> metadata = EntityMetadata.build(Doc.class, "doc");
+        Doc doc = new Doc();
+        Object id = metadata.assignIdIfAbsent(doc);
+        assertTrue(ObjectId.isValid((String) id));
+        assertSame(id, doc.id);
+        assertSame(id, metadata.assignIdIfAbsent(doc));
+
+        ObjectIdDoc objectIdDoc = new ObjectIdDoc();
+        Object objectId = EntityMetadata.build(ObjectIdDoc.class, "doc").assignIdIfAbsent(objectIdDoc);
+        assertNotNull(objectId);
+        assertSame(objectId, objectIdDoc.id);
+
+        BigIntegerDoc bigIntegerDoc = new BigIntegerDoc();
+        BigInteger bigInteger = (BigInteger) EntityMetadata.build(BigIntegerDoc.class, "doc").assignIdIfAbsent(bigIntegerDoc);
+        assertTrue(ObjectId.isValid(bigInteger.toString(16)));
+
+        LongDoc longDoc = new LongDoc();
+        assertNull(EntityMetadata.build(LongDoc.class, "doc").assignIdIfAbsent(longDoc));
+        assertNull(longDoc.id);
+    }
+
+    @Test
+    public void sumsChunksAndOffsetsFailures() {
+        Doc first = new Doc();
+        Doc duplicate = new Doc();
+        duplicate.id = "dup";
+        BulkWriteResult partial = mock(BulkWriteResult.class);
+        when(partial.getInsertedCount()).thenReturn(0);
+        BulkOperationException error = mock(BulkOperationException.class);
+        when(error.getResult()).thenReturn(partial);
+        List<BulkWriteError> errors = Collections.singletonList(new BulkWriteError(11000, "duplicate key", new BasicDBObject(), 0));
+        when(error.getErrors()).thenReturn(errors);
+        stubChunks(executing(2), failing(error));
+
+        BulkInsertResult result = dao.batchInsert(Arrays.asList(first, new Doc(), duplicate).iterator());
+        assertEquals(2, operations.size());
+        assertEquals(3, result.getSubmittedCount());
+        assertEquals(2, result.getInsertedCount());
+        assertFalse(result.isSuccess());
+        BulkInsertResult.DocumentFailure failure = result.getFailures().get(0);
+        assertEquals(2, failure.getIndex());
+        assertEquals("dup", failure.getId());
+        assertEquals(11000, failure.getCode());
+        assertNotNull(first.id);
+    }
+
+    @Test
+    public void recordsEveryDocumentOfAFailedChunk() {
+        stubChunks(failing(new IllegalStateException("down")));
+        BulkInsertResult result = dao.batchInsert(Arrays.asList(new Doc(), new Doc()).iterator());
+        assertEquals(0, result.getInsertedCount());
+        assertEquals(2, result.getFailures().size());
+        assertEquals(1, result.getFailures().get(1).getIndex());
+        assertEquals(-1, result.getFailures().get(1).getCode());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void batchSaveThrowsOnFailure() {
+        stubChunks(failing(new IllegalStateException("down")));
+        dao.batchSave(Collections.singletonList(new Doc()));
+    }
+
+    private void stubChunks(BulkOperations... chunks) {
+        operations.addAll(Arrays.asList(chunks));
+        when(mongoTemplate.bulkOps(any(BulkOperations.BulkMode.class), any(Class.class), anyString()))
+                .thenReturn(chunks[0], Arrays.copyOfRange(chunks, 1, chunks.length));
+    }
+
+    private static BulkOperations executing(int inserted) {
+        BulkWriteResult result = mock(BulkWriteResult.class);
+        when(result.getInsertedCount()).thenReturn(inserted);
+        BulkOperations operations = mock(BulkOperations.class);
+        when(operations.execute()).thenReturn(result);
+        return operations;
+    }
+
+    private static BulkOperations failing(RuntimeException error) {
+        BulkOperations operations = mock(BulkOperations.class);
+        when(operations.execute()).thenThrow(error);
+        return operations;
+    }
+
+    public static class Doc {
+        @Id
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+
+        public void setId(String id) {
+            this.id = id;
+        }
+    }
+
+    public static class ObjectIdDoc {
+        @Id
+        private ObjectId id;
+
+        public ObjectId getId() {
+            return id;
+        }
+
+        public void setId(ObjectId id) {
+            this.id = id;
+        }
+    }
+
+    public static class BigIntegerDoc {
+        @Id
+        private BigInteger id;
+
+        public BigInteger getId() {
+            return id;
+        }
+
+        public void setId(BigInteger id) {
+            this.id = id;
+        }
+    }
+
+    public static class LongDoc {
+        @Id
+        private Long id;
+
+        public Long getId() {
+            return id;
+        }
+
+        public void setId(Long id) {
+            this.id = id;
+        }
+    }
+
+}
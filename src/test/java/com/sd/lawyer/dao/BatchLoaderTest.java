@@ -0,0 +1,92 @@
+package com.sd.lawyer.dao;
+
+import org.junit.Test;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 按主键批量加载器的合并查询、去重及失败传播
+ */
+public class BatchLoaderTest {
+
+    private final List<List<Serializable>> batches = new ArrayList<List<Serializable>>();
+
+    private final BatchLoader<String> loader = new BatchLoader<String>(ids -> {
+        batches.add(ids);
+        List<String> entities = new ArrayList<String>();
+        for (Serializable id : ids) {
+            entities.add("missing".equals(id) ? null : "entity-" + id);
+        }
+        return entities;
+    });
+
+    @Test
+    public void dispatchesPendingIdsInOneBatch() throws Exception {
+        CompletableFuture<String> a = loader.load("a");
+        List<CompletableFuture<String>> many = loader.loadMany(Arrays.asList("b", "a", "missing"));
+        assertFalse(a.isDone());
+        assertSame(a, many.get(1));
+
+        assertEquals(3, loader.dispatch());
+        assertEquals(Collections.singletonList(Arrays.<Serializable>asList("a", "b", "missing")), batches);
+        assertEquals("entity-a", a.get());
+        assertEquals("entity-b", many.get(0).get());
+        assertNull(many.get(2).get());
+        assertEquals(0, loader.dispatch());
+    }
+
+    @Test
+    public void loadedIdsAreNotQueriedAgainUntilCleared() throws Exception {
+        CompletableFuture<String> first = loader.load("a");
+        loader.dispatch();
+        assertSame(first, loader.load("a"));
+        assertEquals(0, loader.dispatch());
+
+        loader.clear();
+        CompletableFuture<String> second = loader.load("a");
+        assertTrue(second != first);
+        assertEquals(1, loader.dispatch());
+        assertEquals(2, batches.size());
+        assertEquals("entity-a", second.get());
+    }
+
+    @Test
+    public void clearKeepsPendingIds() {
+        loader.load("a");
+        loader.clear();
+        assertEquals(1, loader.dispatch());
+    }
+
+    @Test
+    public void failureCompletesBatchExceptionally() throws Exception {
+        IllegalStateException error = new IllegalStateException("query");
+        BatchLoader<String> failing = new BatchLoader<String>(ids -> {
+            throw error;
+        });
+        CompletableFuture<String> a = failing.load("a");
+        CompletableFuture<String> b = failing.load("b");
+        assertEquals(2, failing.dispatch());
+        for (CompletableFuture<String> future : Arrays.asList(a, b)) {
+            try {
+                future.get();
+                fail();
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,163 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 变更跟踪的字段比较（不访问数据库）
+ */
+public class ChangeTrackerTest {
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    private ChangeTracker<Doc> tracker;
+
+    @BeforeClass
+    public static void setUpClass() {
+        // 客户端在首次操作时才连接，这里只使用转换器
+        client = new MongoClient("localhost");
+        mongoTemplate = new MongoTemplate(new SimpleMongoDbFactory(client, "change-tracker-test"));
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        client.close();
+    }
+
+    @Before
+    public void setUp() {
+        tracker = new ChangeTracker<Doc>(EntityMetadata.build(Doc.class, "doc"), mongoTemplate.getConverter());
+    }
+
+    @Test
+    public void untrackedEntityHasNoDiff() {
+        assertNull(tracker.diff(new Doc()));
+    }
+
+    @Test
+    public void unchangedEntityGivesEmptyUpdate() {
+        Doc doc = tracker.snapshot(newDoc());
+        assertTrue(ChangeTracker.isEmpty(tracker.diff(doc)));
+        assertEquals(1, tracker.getSkippedUpdates());
+        assertEquals(5, tracker.getSkippedFields());
+    }
+
+    @Test
+    public void onlyChangedFieldsAreSet() {
+        Doc doc = tracker.snapshot(newDoc());
+        doc.name = "b";
+        assertEquals(set("name", "b"), tracker.diff(doc).getUpdateObject());
+        assertEquals(1, tracker.getPartialUpdates());
+    }
+
+    @Test
+    public void nullValueIsUnset() {
+        Doc doc = tracker.snapshot(newDoc());
+        doc.name = null;
+        DBObject update = tracker.diff(doc).getUpdateObject();
+        assertEquals(1, update.keySet().size());
+        assertTrue(((DBObject) update.get("$unset")).containsField("name"));
+    }
+
+    @Test
+    public void collisionsOfHashCodeAreDetected() {
+        // [0,31]与[1,0]的hashCode相同
+        Doc doc = newDoc();
+        doc.scores = new ArrayList<Integer>(Arrays.asList(0, 31));
+        tracker.snapshot(doc);
+        doc.scores = new ArrayList<Integer>(Arrays.asList(1, 0));
+        assertEquals(Arrays.hashCode(new Object[]{0, 31}), Arrays.hashCode(new Object[]{1, 0}));
+        assertTrue(tracker.diff(doc).getUpdateObject().toString().contains("scores"));
+    }
+
+    @Test
+    public void inPlaceChangesOfMutableValuesAreDetected() {
+        Doc doc = tracker.snapshot(newDoc());
+        doc.scores.add(3);
+        doc.tags.put("k", "changed");
+        doc.at.setTime(0);
+        doc.inner.value = 2;
+        DBObject set = (DBObject) tracker.diff(doc).getUpdateObject().get("$set");
+        assertEquals(4, set.keySet().size());
+        assertTrue(set.keySet().containsAll(Arrays.asList("scores", "tags", "at", "inner")));
+    }
+
+    private static Doc newDoc() {
+        Doc doc = new Doc();
+        doc.name = "a";
+        doc.scores = new ArrayList<Integer>(Arrays.asList(1, 2));
+        doc.tags = new LinkedHashMap<String, String>();
+        doc.tags.put("k", "v");
+        doc.at = new Date(1000L);
+        doc.inner = new Inner();
+        doc.inner.value = 1;
+        return doc;
+    }
+
+    private static DBObject set(String key, Object value) {
+        return new Update().set(key, value).getUpdateObject();
+    }
+
+    public static class Doc {
+        @Id
+        private String id;
+        private String name;
+        private List<Integer> scores;
+        private Map<String, String> tags;
+        private Date at;
+        private Inner inner;
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public List<Integer> getScores() {
+            return scores;
+        }
+
+        public Map<String, String> getTags() {
+            return tags;
+        }
+
+        public Date getAt() {
+            return at;
+        }
+
+        public Inner getInner() {
+            return inner;
+        }
+    }
+
+    public static class Inner {
+        private int value;
+
+        public int getValue() {
+            return value;
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBCursor;
+import com.mongodb.DBObject;
+import com.mongodb.WriteResult;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 去重文件存储的引用计数、回收及按存储桶共享（以Mockito模拟数据库）
+ */
+public class DedupFileStoreTest {
+
+    private DB db;
+    private DBCollection files;
+    private DBCollection chunks;
+    private DBCollection aliases;
+
+    @Before
+    public void setUp() {
+        db = mock(DB.class);
+        files = mock(DBCollection.class);
+        chunks = mock(DBCollection.class);
+        aliases = mock(DBCollection.class);
+        when(db.getName()).thenReturn("dedup-" + new ObjectId());
+        when(db.getCollection("fs.files")).thenReturn(files);
+        when(db.getCollection("fs.chunks")).thenReturn(chunks);
+        when(db.getCollection(DedupFileStore.ALIASES_COLLECTION)).thenReturn(aliases);
+        when(files.getDB()).thenReturn(db);
+    }
+
+    @Test
+    public void deleteReleasesBlobReference() {
+        DedupFileStore store = new DedupFileStore(db, 1024, 0);
+        ObjectId aliasId = new ObjectId();
+        ObjectId blobId = new ObjectId();
+        when(aliases.findAndRemove(new BasicDBObject("_id", aliasId))).thenReturn(new BasicDBObject("blobId", blobId));
+
+        assertTrue(store.delete(aliasId.toHexString()));
+        verify(files).update(new BasicDBObject("_id", blobId),
+                new BasicDBObject("$inc", new BasicDBObject(DedupFileStore.REF_COUNT_FIELD, -1)));
+        assertFalse(store.delete(new ObjectId()));
+    }
+
+    @Test
+    public void collectsOnlyBlobsStillUnreferenced() {
+        DedupFileStore store = new DedupFileStore(db, 1024, 0);
+        ObjectId orphan = new ObjectId();
+        ObjectId revived = new ObjectId();
+        DBCursor cursor = mock(DBCursor.class);
+        when(files.find(any(DBObject.class), any(DBObject.class))).thenReturn(cursor);
+        when(cursor.hasNext()).thenReturn(true, true, false);
+        when(cursor.next()).thenReturn(new BasicDBObject("_id", orphan), new BasicDBObject("_id", revived));
+        BasicDBObject unreferenced = new BasicDBObject("$lte", 0);
+        WriteResult removed = writeResult(1);
+        WriteResult kept = writeResult(0);
+        when(files.remove(new BasicDBObject("_id", orphan).append(DedupFileStore.REF_COUNT_FIELD, unreferenced))).thenReturn(removed);
+        // 查出后又被新上传引用：带条件的删除不生效，分块保留
+        when(files.remove(new BasicDBObject("_id", revived).append(DedupFileStore.REF_COUNT_FIELD, unreferenced))).thenReturn(kept);
+
+        assertEquals(1, store.collectOrphans());
+        verify(chunks).remove(new BasicDBObject("files_id", orphan));
+        verify(chunks, never()).remove(new BasicDBObject("files_id", revived));
+        assertEquals(1, store.getCollected());
+    }
+
+    @Test
+    public void daosShareOneStorePerBucket() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getDb()).thenReturn(db);
+        FileDao first = new FileDao();
+        FileDao second = new FileDao();
+        first.mongoTemplate = mongoTemplate;
+        second.mongoTemplate = mongoTemplate;
+        first.gridFsDedupGcIntervalSeconds = 0;
+
+        DedupFileStore store = first.getDedupFileStore();
+        assertSame(store, second.getDedupFileStore());
+        // 索引只在创建共享存储时建立一次
+        verify(files, times(1)).createIndex(new BasicDBObject(DedupFileStore.SHA256_FIELD, 1));
+
+        first.destroy();
+        second.destroy();
+        FileDao third = new FileDao();
+        third.mongoTemplate = mongoTemplate;
+        third.gridFsDedupGcIntervalSeconds = 0;
+        assertNotSame(store, third.getDedupFileStore());
+        third.destroy();
+    }
+
+    private static WriteResult writeResult(int n) {
+        WriteResult result = mock(WriteResult.class);
+        when(result.getN()).thenReturn(n);
+        return result;
+    }
+
+    public static class FileDao extends MongoDaoImpl<Object> {
+        @Override
+        protected Class<Object> getEntityClass() {
+            return Object.class;
+        }
+    }
+
+}
@@ -0,0 +1,128 @@
+package com.sd.lawyer.dao;
+
+import com.sd.lawyer.beans.DeleteResult;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 批量删除的去重、分块及按块汇总（删除块由子类模拟）
+ */
+public class DeleteBatchTest {
+
+    private final ObjectId a = new ObjectId();
+    private final ObjectId b = new ObjectId();
+    private final ObjectId c = new ObjectId();
+
+    private RecordingDao dao;
+
+    @Before
+    public void setUp() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getCollectionName(any(Class.class))).thenReturn("doc");
+        dao = new RecordingDao();
+        dao.mongoTemplate = mongoTemplate;
+        dao.deleteChunkSize = 2;
+        dao.bulkParallelism = 1;
+    }
+
+    @Test
+    public void deduplicatesAndChunksIds() {
+        DeleteResult<Doc> result = dao.deleteBatch(Arrays.asList(a.toHexString(), b, a, c), false);
+        assertEquals(Arrays.asList(Arrays.<Object>asList(a, b), Collections.<Object>singletonList(c)), dao.chunks);
+        assertEquals(3, result.getDeletedCount());
+        assertNull(result.getDeleted());
+        assertTrue(result.isSuccess());
+    }
+
+    @Test
+    public void recordsFailedChunks() {
+        dao.failing = c;
+        DeleteResult<Doc> result = dao.deleteBatch(Arrays.asList(a, b, c), true);
+        assertEquals(2, result.getDeletedCount());
+        assertEquals(2, result.getDeleted().size());
+        assertFalse(result.isSuccess());
+        assertEquals(1, result.getFailures().size());
+        assertEquals(1, result.getFailures().get(0).getChunk());
+        assertEquals(Collections.<Object>singletonList(c), result.getFailures().get(0).getIds());
+    }
+
+    @Test
+    public void deleteReturnsEntitiesInIdOrder() {
+        dao.missing = b;
+        List<Doc> deleted = dao.delete(c, b, a);
+        assertEquals(3, deleted.size());
+        assertEquals(c, deleted.get(0).id);
+        assertNull(deleted.get(1));
+        assertEquals(a, deleted.get(2).id);
+    }
+
+    @Test
+    public void deleteThrowsOnFailedChunk() {
+        IllegalStateException error = new IllegalStateException("chunk");
+        dao.failing = a;
+        dao.failure = error;
+        try {
+            dao.delete(a, b);
+        } catch (IllegalStateException e) {
+            assertSame(error, e.getCause());
+            return;
+        }
+        throw new AssertionError();
+    }
+
+    public static class Doc {
+        @Id
+        private ObjectId id;
+
+        Doc(ObjectId id) {
+            this.id = id;
+        }
+
+        public ObjectId getId() {
+            return id;
+        }
+    }
+
+    static class RecordingDao extends MongoDaoImpl<Doc> {
+        final List<List<Object>> chunks = new ArrayList<List<Object>>();
+        Object failing;
+        Object missing;
+        RuntimeException failure = new IllegalStateException("failed");
+
+        @Override
+        protected DeleteResult<Doc> deleteChunk(List<Object> ids, boolean returnDeleted) {
+            chunks.add(ids);
+            if (ids.contains(failing)) {
+                throw failure;
+            }
+            DeleteResult<Doc> result = new DeleteResult<Doc>();
+            List<Doc> deleted = new ArrayList<Doc>();
+            for (Object id : ids) {
+                if (!id.equals(missing)) {
+                    deleted.add(new Doc((ObjectId) id));
+                }
+            }
+            result.setDeletedCount(deleted.size());
+            result.setDeleted(returnDeleted ? deleted : null);
+            return result;
+        }
+    }
+
+}
@@ -0,0 +1,134 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.AggregationOptions;
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoClient;
+import com.mongodb.ReadPreference;
+import com.sd.lawyer.beans.DistinctCount;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.mapping.Field;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.data.mongodb.core.query.Criteria.where;
+
+/**
+ * 聚合实现的去重查询生成的管道及结果读取（集合为模拟对象，不需要MongoDB）
+ */
+public class DistinctPipelineTest {
+
+    private static MongoClient client;
+
+    private DBCollection collection;
+    private Cursor cursor;
+    private MongoDaoImpl<Tagged> dao;
+
+    @BeforeClass
+    public static void setUpClient() {
+        // 客户端在首次操作时才连接，这里只使用转换器
+        client = new MongoClient("localhost");
+    }
+
+    @AfterClass
+    public static void tearDownClient() {
+        client.close();
+    }
+
+    @Before
+    public void setUp() {
+        collection = mock(DBCollection.class);
+        cursor = mock(Cursor.class);
+        Iterator<DBObject> rows = Arrays.<DBObject>asList(new BasicDBObject("_id", "a").append("count", 2L),
+                new BasicDBObject("_id", null).append("count", 1)).iterator();
+        when(cursor.hasNext()).thenAnswer(invocation -> rows.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> rows.next());
+        when(collection.aggregate(any(List.class), any(AggregationOptions.class), any(ReadPreference.class))).thenReturn(cursor);
+        dao = new MongoDaoImpl<Tagged>() {
+        };
+        dao.mongoTemplate = new MongoTemplate(new SimpleMongoDbFactory(client, "distinct-pipeline-test")) {
+            @Override
+            public DBCollection getCollection(String collectionName) {
+                return collection;
+            }
+        };
+    }
+
+    @Test
+    public void keepsNullValuesAndExcludesMissingFields() {
+        List<Object> values = dao.distinctByQuery("tag", new Query(where("owner").is("u1")), "tag desc,other", 5, 10);
+        assertEquals(Arrays.<Object>asList("a", null), values);
+        verify(cursor).close();
+
+        List<DBObject> pipeline = pipeline();
+        assertEquals(Arrays.<DBObject>asList(
+                new BasicDBObject("$match", new BasicDBObject("owner_id", "u1")),
+                new BasicDBObject("$unwind", new BasicDBObject("path", "$tag_list").append("preserveNullAndEmptyArrays", true)),
+                new BasicDBObject("$match", new BasicDBObject("tag_list", new BasicDBObject("$exists", true))),
+                new BasicDBObject("$group", new BasicDBObject("_id", "$tag_list")),
+                // 不支持的排序字段被忽略
+                new BasicDBObject("$sort", new BasicDBObject("_id", -1)),
+                new BasicDBObject("$skip", 5),
+                new BasicDBObject("$limit", 10)), pipeline);
+    }
+
+    @Test
+    public void sortingByCountCountsValues() {
+        List<DistinctCount> counts = dao.distinctWithCount("tag", new Query(), "count desc", 0, 0);
+        assertEquals(2, counts.size());
+        assertEquals(2L, counts.get(0).getCount());
+        assertEquals(1L, counts.get(1).getCount());
+
+        List<DBObject> pipeline = pipeline();
+        assertEquals(5, pipeline.size());
+        assertEquals(new BasicDBObject("$group", new BasicDBObject("_id", "$tag_list").append("count", new BasicDBObject("$sum", 1))),
+                pipeline.get(3));
+        assertEquals(new BasicDBObject("$sort", new BasicDBObject("count", -1)), pipeline.get(4));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<DBObject> pipeline() {
+        ArgumentCaptor<List> pipeline = ArgumentCaptor.forClass(List.class);
+        verify(collection).aggregate(pipeline.capture(), any(AggregationOptions.class), any(ReadPreference.class));
+        return pipeline.getValue();
+    }
+
+    public static class Tagged {
+        @Id
+        private String id;
+        @Field("tag_list")
+        private List<String> tag;
+        @Field("owner_id")
+        private String owner;
+
+        public String getId() {
+            return id;
+        }
+
+        public List<String> getTag() {
+            return tag;
+        }
+
+        public String getOwner() {
+            return owner;
+        }
+    }
+
+}
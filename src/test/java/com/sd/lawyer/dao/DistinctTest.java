@@ -0,0 +1,88 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.MongoException;
+import com.mongodb.ServerAddress;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 聚合实现的去重查询与distinct命令结果一致（需要本机MongoDB，连接不上时跳过）
+ */
+public class DistinctTest {
+
+    private static MongoClient client;
+    private static TagDao dao;
+
+    @BeforeClass
+    public static void setUp() {
+        client = new MongoClient(new ServerAddress("localhost", 27017),
+                MongoClientOptions.builder().serverSelectionTimeout(500).build());
+        try {
+            client.getDB("admin").command("ping");
+        } catch (MongoException e) {
+            client.close();
+            client = null;
+        }
+        Assume.assumeNotNull(client);
+        dao = new TagDao();
+        dao.mongoTemplate = new MongoTemplate(new SimpleMongoDbFactory(client, "lawyer-distinct-test"));
+        DBCollection collection = dao.mongoTemplate.getCollection(dao.getMetadata().getCollectionName());
+        collection.drop();
+        collection.insert(new BasicDBObject("tag", "a"));
+        collection.insert(new BasicDBObject("tag", Arrays.asList("a", "b")));
+        collection.insert(new BasicDBObject("tag", null));
+        collection.insert(new BasicDBObject("tag", Arrays.asList()));
+        collection.insert(new BasicDBObject("other", 1));
+        collection.insert(new BasicDBObject("tag", Arrays.asList("c", null)));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        if (client != null) {
+            client.dropDatabase("lawyer-distinct-test");
+            client.close();
+        }
+    }
+
+    @Test
+    public void matchesDistinctCommand() {
+        List<?> expected = dao.mongoTemplate.getCollection(dao.getMetadata().getCollectionName()).distinct("tag");
+        List<Object> actual = dao.distinctByQuery("tag", new Query(), null, 0, 0);
+        assertEquals(expected.size(), actual.size());
+        assertEquals(new HashSet<Object>(expected), new HashSet<Object>(actual));
+    }
+
+    public static class Tag {
+        @Id
+        private String id;
+        private Object tag;
+
+        public String getId() {
+            return id;
+        }
+
+        public Object getTag() {
+            return tag;
+        }
+    }
+
+    public static class TagDao extends MongoDaoImpl<Tag> {
+    }
+
+}
@@ -0,0 +1,153 @@
+package com.sd.lawyer.dao;
+
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * update()生成$set参数的性能对比：原逐次反射解析 vs 实体元数据注册表
+ * 运行方式：mvn test-compile 后执行本类的main方法
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntityMetadataBenchmark {
+
+    private final SampleEntity entity = new SampleEntity();
+
+    private final EntityMetadata<SampleEntity> metadata = EntityMetadata.build(SampleEntity.class, "sampleEntity");
+
+    /**
+     * 原实现：每次调用都反射解析字段与getter
+     */
+    @Benchmark
+    public Update reflection() throws Exception {
+        Update update = new Update();
+        Map<String, Object> map = legacyParseEntity(entity);
+        for (String key : map.keySet()) {
+            if (key.indexOf("{") == -1) {
+                update.set(key, map.get(key));
+            }
+        }
+        return update;
+    }
+
+    /**
+     * 新实现：使用启动时生成的访问器
+     */
+    @Benchmark
+    public Update registry() {
+        Update update = new Update();
+        metadata.getIdValue(entity);
+        for (EntityMetadata.Property property : metadata.getProperties()) {
+            update.set(property.getName(), property.get(entity));
+        }
+        return update;
+    }
+
+    /**
+     * 原MongoDaoImpl.parseEntity的实现
+     */
+    private Map<String, Object> legacyParseEntity(SampleEntity t) throws Exception {
+        Map<String, Object> map = new HashMap<String, Object>();
+        String idName = "";
+        for (Field field : SampleEntity.class.getDeclaredFields()) {
+            if (field.isAnnotationPresent(Id.class)) {
+                field.setAccessible(true);
+                map.put("{" + field.getName() + "}", field.get(t));
+                idName = field.getName();
+                break;
+            }
+        }
+        for (Method method : SampleEntity.class.getDeclaredMethods()) {
+            if ((method.getName().startsWith("get") && method.getModifiers() == Modifier.PUBLIC)
+                    || (method.getName().startsWith("is") && method.getModifiers() == Modifier.PUBLIC)) {
+                String name = method.getName().startsWith("is")
+                        ? method.getName().replace("is", "") : method.getName().replace("get", "");
+                String fieldName = name.substring(0, 1).toLowerCase() + name.substring(1);
+                if ((!fieldName.equals(idName))
+                        && (!SampleEntity.class.getDeclaredField(fieldName).isAnnotationPresent(Transient.class))) {
+                    map.put(fieldName, method.invoke(t));
+                }
+            }
+        }
+        return map;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(EntityMetadataBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /**
+     * 测试实体
+     */
+    public static class SampleEntity {
+        @Id
+        private String id = new ObjectId().toString();
+        private String name = "张三";
+        private String phone = "13800000000";
+        private String address = "山东省济南市";
+        private int age = 30;
+        private boolean enabled = true;
+        private Date createTime = new Date();
+        @Transient
+        private String remark = "不持久化";
+
+        public String getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getPhone() {
+            return phone;
+        }
+
+        public String getAddress() {
+            return address;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public Date getCreateTime() {
+            return createTime;
+        }
+
+        public String getRemark() {
+            return remark;
+        }
+    }
+
+}
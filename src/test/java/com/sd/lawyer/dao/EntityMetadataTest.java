@@ -0,0 +1,114 @@
+package com.sd.lawyer.dao;
+
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Transient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * 实体元数据的解析及属性读取
+ */
+public class EntityMetadataTest {
+
+    @Test
+    public void resolvesPersistentProperties() {
+        EntityMetadata<Child> metadata = EntityMetadata.build(Child.class, "child");
+        assertEquals("child", metadata.getCollectionName());
+        assertEquals("id", metadata.getIdProperty().getName());
+        // 子类字段在前，父类同名字段忽略；静态、@Transient及没有getter的字段不持久化
+        assertEquals(Arrays.asList("name", "active", "createTime"), names(metadata));
+        assertEquals(boolean.class, metadata.getProperties().get(1).getType());
+    }
+
+    @Test
+    public void readsPropertiesThroughAccessors() {
+        EntityMetadata<Child> metadata = EntityMetadata.build(Child.class, "child");
+        Child child = new Child();
+        child.name = "child";
+        child.active = true;
+        child.createTime = 5L;
+        List<Object> values = new ArrayList<Object>();
+        for (EntityMetadata.Property property : metadata.getProperties()) {
+            values.add(property.get(child));
+        }
+        assertEquals(Arrays.<Object>asList("child", true, 5L), values);
+    }
+
+    @Test
+    public void idValueConvertsObjectIdStrings() {
+        EntityMetadata<Child> metadata = EntityMetadata.build(Child.class, "child");
+        Child child = new Child();
+        assertNull(metadata.getIdValue(child));
+        ObjectId id = new ObjectId();
+        child.id = id.toHexString();
+        assertEquals(id, metadata.getIdValue(child));
+        child.id = "custom";
+        assertEquals("custom", metadata.getIdValue(child));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void propertiesAreReadOnly() {
+        EntityMetadata.build(Child.class, "child").getProperties().get(0).set(new Child(), "x");
+    }
+
+    @Test
+    public void registryResolvesOnce() {
+        EntityMetadata<Child> metadata = EntityMetadataRegistry.register(Child.class, "child");
+        assertSame(metadata, EntityMetadataRegistry.register(Child.class, "other"));
+        assertSame(metadata, EntityMetadataRegistry.get(Child.class));
+    }
+
+    private static List<String> names(EntityMetadata<?> metadata) {
+        List<String> names = new ArrayList<String>();
+        for (EntityMetadata.Property property : metadata.getProperties()) {
+            names.add(property.getName());
+        }
+        return names;
+    }
+
+    public static class Parent {
+        @Id
+        protected String id;
+        protected String name;
+        protected Long createTime;
+
+        public String getName() {
+            return "parent";
+        }
+
+        public Long getCreateTime() {
+            return createTime;
+        }
+    }
+
+    public static class Child extends Parent {
+        private static final String TYPE = "child";
+        private String name;
+        private boolean active;
+        @Transient
+        private String cached;
+        private String secret;
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        public boolean isActive() {
+            return active;
+        }
+
+        public String getCached() {
+            return cached;
+        }
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.MongoClient;
+import com.mongodb.MongoClientOptions;
+import com.mongodb.ServerAddress;
+import org.bson.types.ObjectId;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+
+/**
+ * findById在缓存、非缓存路径上都转换驱动异常（连接不存在的服务器）
+ */
+public class FindByIdTest {
+
+    private static MongoClient client;
+    private static MongoTemplate mongoTemplate;
+
+    @BeforeClass
+    public static void setUp() {
+        client = new MongoClient(new ServerAddress("localhost", 1),
+                MongoClientOptions.builder().serverSelectionTimeout(100).build());
+        mongoTemplate = new MongoTemplate(new SimpleMongoDbFactory(client, "find-by-id-test"));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        client.close();
+    }
+
+    @Test(expected = DataAccessResourceFailureException.class)
+    public void uncachedReadTranslatesExceptions() {
+        PlainDao dao = new PlainDao();
+        dao.mongoTemplate = mongoTemplate;
+        dao.findById(new ObjectId().toHexString());
+    }
+
+    @Test(expected = DataAccessResourceFailureException.class)
+    public void cachedReadTranslatesExceptions() {
+        CachedDao dao = new CachedDao();
+        dao.mongoTemplate = mongoTemplate;
+        dao.findById(new ObjectId().toHexString());
+    }
+
+    public static class Plain {
+        @Id
+        private ObjectId id;
+
+        public ObjectId getId() {
+            return id;
+        }
+    }
+
+    @CachedEntity
+    public static class Cached {
+        @Id
+        private ObjectId id;
+
+        public ObjectId getId() {
+            return id;
+        }
+    }
+
+    public static class PlainDao extends MongoDaoImpl<Plain> {
+    }
+
+    public static class CachedDao extends MongoDaoImpl<Cached> {
+    }
+
+}
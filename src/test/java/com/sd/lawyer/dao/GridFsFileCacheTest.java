@@ -0,0 +1,112 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.gridfs.GridFSDBFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Date;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * GridFS文件本地缓存的命中、作废及引用计数释放（加载在调用线程中同步执行）
+ */
+public class GridFsFileCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private final byte[] content = "0123456789abcdefghij".getBytes();
+
+    @Test
+    public void memoryTierServesRanges() throws IOException {
+        GridFsFileCache cache = newCache(1024, 64, 0);
+        GridFSDBFile file = file("a", "md5");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(cache.write(file, 0, 19, out));
+        assertEquals(1, cache.getLoads());
+        assertTrue(cache.write(file, 2, 5, out));
+        assertArrayEquals("2345".getBytes(), out.toByteArray());
+        assertEquals(content.length, cache.getMemoryBytes());
+    }
+
+    @Test
+    public void changedFileIsStale() throws IOException {
+        GridFsFileCache cache = newCache(1024, 64, 0);
+        cache.write(file("a", "md5"), 0, 19, new ByteArrayOutputStream());
+        assertFalse(cache.write(file("a", "other"), 0, 19, new ByteArrayOutputStream()));
+        assertEquals(1, cache.getStale());
+    }
+
+    @Test
+    public void diskFileIsDeletedOnInvalidate() throws IOException {
+        GridFsFileCache cache = newCache(0, 0, 1024);
+        GridFSDBFile file = file("a", "md5");
+        cache.write(file, 0, 19, new ByteArrayOutputStream());
+        assertEquals(1, cacheFiles());
+        cache.invalidate("a");
+        assertEquals(0, cacheFiles());
+    }
+
+    @Test
+    public void releaseWaitsForInFlightRead() throws IOException {
+        GridFsFileCache cache = newCache(0, 0, 1024);
+        GridFSDBFile file = file("a", "md5");
+        cache.write(file, 0, 19, new ByteArrayOutputStream());
+        final int[] filesDuringRead = {-1};
+        ByteArrayOutputStream copy = new ByteArrayOutputStream();
+        assertTrue(cache.write(file, 0, 19, new OutputStream() {
+            @Override
+            public void write(int b) {
+                copy.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                // 读取过程中条目被作废，映射缓冲区及磁盘文件仍需保留到读取结束
+                cache.invalidate("a");
+                filesDuringRead[0] = cacheFiles();
+                copy.write(b, off, len);
+            }
+        }));
+        assertEquals(1, filesDuringRead[0]);
+        assertArrayEquals(content, copy.toByteArray());
+        assertEquals(0, cacheFiles());
+        assertFalse(cache.write(file, 0, 19, new ByteArrayOutputStream()));
+    }
+
+    private GridFsFileCache newCache(long memoryBytes, long memoryFileBytes, long diskBytes) throws IOException {
+        return new GridFsFileCache(memoryBytes, memoryFileBytes, diskBytes, 1024, folder.getRoot().toPath(),
+                (file, out) -> out.write(content), Runnable::run);
+    }
+
+    private GridFSDBFile file(Object id, String md5) {
+        GridFSDBFile file = mock(GridFSDBFile.class);
+        when(file.getId()).thenReturn(id);
+        when(file.getLength()).thenReturn((long) content.length);
+        when(file.getMD5()).thenReturn(md5);
+        when(file.getUploadDate()).thenReturn(new Date(1000L));
+        return file;
+    }
+
+    private int cacheFiles() {
+        try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+            return (int) files.count();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
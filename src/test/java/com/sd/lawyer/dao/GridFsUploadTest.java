@@ -0,0 +1,106 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 从输入流分块写入GridFS及失败时关闭输入流（以Mockito模拟数据库）
+ */
+public class GridFsUploadTest {
+
+    private DBCollection files;
+    private DBCollection chunks;
+    private MongoDaoImpl<Object> dao;
+
+    @Before
+    public void setUp() {
+        DB db = mock(DB.class);
+        files = mock(DBCollection.class);
+        chunks = mock(DBCollection.class);
+        when(db.getCollection("fs.files")).thenReturn(files);
+        when(db.getCollection("fs.chunks")).thenReturn(chunks);
+        when(files.getDB()).thenReturn(db);
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getDb()).thenReturn(db);
+        dao = new DedupFileStoreTest.FileDao();
+        dao.mongoTemplate = mongoTemplate;
+    }
+
+    @Test
+    public void writesInputInChunks() {
+        TrackingInputStream input = new TrackingInputStream("0123456789".getBytes());
+        Object id = dao.saveFileToMongo(input, "a.txt", "text/plain", Collections.singletonMap("caseId", "c1"), 4);
+
+        ArgumentCaptor<DBObject> chunk = ArgumentCaptor.forClass(DBObject.class);
+        verify(chunks, times(3)).save(chunk.capture());
+        List<DBObject> saved = chunk.getAllValues();
+        assertEquals(2, ((byte[]) saved.get(2).get("data")).length);
+        assertEquals(id, saved.get(0).get("files_id"));
+
+        ArgumentCaptor<DBObject> file = ArgumentCaptor.forClass(DBObject.class);
+        verify(files).save(file.capture());
+        assertEquals(10L, ((Number) file.getValue().get("length")).longValue());
+        assertEquals("text/plain", file.getValue().get("contentType"));
+        assertEquals(new BasicDBObject("caseId", "c1"), file.getValue().get("metadata"));
+        assertTrue(input.closed);
+    }
+
+    @Test
+    public void closesInputWhenSaveFails() {
+        when(chunks.save(any(DBObject.class))).thenThrow(new IllegalStateException("down"));
+        TrackingInputStream input = new TrackingInputStream(new byte[8]);
+        try {
+            dao.saveFileToMongo(input, "a.bin");
+            fail();
+        } catch (IllegalStateException e) {
+            assertTrue(input.closed);
+        }
+    }
+
+    @Test
+    public void savesMultipartWithoutTempFile() throws IOException {
+        dao.gridFsChunkSize = 1024;
+        dao.saveFileToMongo(new MockMultipartFile("file", "b.pdf", "application/pdf", new byte[100]), null);
+        verify(chunks, times(1)).save(any(DBObject.class));
+        ArgumentCaptor<DBObject> file = ArgumentCaptor.forClass(DBObject.class);
+        verify(files).save(file.capture());
+        assertEquals("b.pdf", file.getValue().get("filename"));
+        assertEquals("application/pdf", file.getValue().get("contentType"));
+    }
+
+    private static class TrackingInputStream extends ByteArrayInputStream {
+        private boolean closed;
+
+        TrackingInputStream(byte[] bytes) {
+            super(bytes);
+        }
+
+        @Override
+        public void close() throws IOException {
+            closed = true;
+            super.close();
+        }
+    }
+
+}
@@ -0,0 +1,123 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.apache.commons.codec.binary.Base64;
+import org.bson.BasicBSONEncoder;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+import org.springframework.data.domain.Sort.Direction;
+import org.springframework.data.domain.Sort.Order;
+
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 键集分页游标的编码、解析
+ */
+public class KeysetCursorTest {
+
+    private final List<Order> orders = KeysetCursor.withIdTiebreaker(
+            Collections.singletonList(new Order(Direction.DESC, "createTime")));
+
+    @Test
+    public void appendsIdWithLastDirection() {
+        assertEquals(2, orders.size());
+        assertEquals(KeysetCursor.ID_FIELD, orders.get(1).getProperty());
+        assertEquals(Direction.DESC, orders.get(1).getDirection());
+    }
+
+    @Test
+    public void roundTrip() {
+        Date createTime = new Date(1500000000000L);
+        ObjectId id = new ObjectId();
+        DBObject row = new BasicDBObject(KeysetCursor.ID_FIELD, id).append("createTime", createTime);
+
+        KeysetCursor cursor = KeysetCursor.decode(KeysetCursor.encode(orders, row, true), orders);
+        assertTrue(cursor.isForward());
+        assertFalse(KeysetCursor.decode(KeysetCursor.encode(orders, row, false), orders).isForward());
+
+        BasicDBList or = new BasicDBList();
+        or.add(new BasicDBObject("createTime", new BasicDBObject("$lt", createTime)));
+        or.add(new BasicDBObject("createTime", createTime).append(KeysetCursor.ID_FIELD, new BasicDBObject("$lt", id)));
+        assertEquals(new BasicDBObject("$or", or), cursor.toCriteria(orders));
+    }
+
+    @Test
+    public void emptyTokenIsFirstPage() {
+        assertNull(KeysetCursor.decode(null, orders));
+        assertNull(KeysetCursor.decode("", orders));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsGarbage() {
+        KeysetCursor.decode("not-a-cursor", orders);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMissingFields() {
+        KeysetCursor.decode(token(new BasicDBObject("x", 1)), orders);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongFieldTypes() {
+        BasicDBList fields = new BasicDBList();
+        fields.add(1);
+        fields.add(2);
+        KeysetCursor.decode(token(new BasicDBObject("f", fields).append("v", new BasicDBList())), orders);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOtherOrder() {
+        DBObject row = new BasicDBObject(KeysetCursor.ID_FIELD, new ObjectId()).append("createTime", new Date());
+        String token = KeysetCursor.encode(orders, row, true);
+        KeysetCursor.decode(token, KeysetCursor.withIdTiebreaker(
+                Collections.singletonList(new Order(Direction.DESC, "updateTime"))));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOperatorValues() {
+        // 伪造游标 {createTime: {$ne: null}} 会使相等分支匹配所有文档
+        KeysetCursor.decode(forged(new BasicDBObject("$ne", null)), orders);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNestedOperatorValues() {
+        BasicDBList list = new BasicDBList();
+        list.add(new BasicDBObject("a", new BasicDBObject("$gt", 0)));
+        KeysetCursor.decode(forged(list), orders);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRegexValues() {
+        KeysetCursor.decode(forged(Pattern.compile(".*")), orders);
+    }
+
+    @Test
+    public void acceptsEmbeddedDocumentValues() {
+        assertTrue(KeysetCursor.decode(forged(new BasicDBObject("a", 1)), orders).isForward());
+    }
+
+    private static String forged(Object createTime) {
+        BasicDBList fields = new BasicDBList();
+        fields.add("createTime");
+        fields.add(KeysetCursor.ID_FIELD);
+        BasicDBList values = new BasicDBList();
+        values.add(createTime);
+        values.add(new ObjectId());
+        return token(new BasicDBObject("f", fields).append("v", values).append("n", true));
+    }
+
+    private static String token(DBObject object) {
+        return Base64.encodeBase64URLSafeString(new BasicBSONEncoder().encode(object));
+    }
+
+}
@@ -0,0 +1,94 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.Cursor;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 服务端游标迭代器的读取与关闭
+ */
+public class MongoCursorIteratorTest {
+
+    @Test
+    public void closesCursorWhenExhausted() {
+        Cursor cursor = cursor(doc(1), doc(2));
+        MongoCursorIterator<Object> iterator = new MongoCursorIterator<Object>(cursor, dbObject -> dbObject.get("n"));
+        assertEquals(1, iterator.next());
+        verify(cursor, never()).close();
+        assertEquals(2, iterator.next());
+        assertFalse(iterator.hasNext());
+        assertFalse(iterator.hasNext());
+        verify(cursor, times(1)).close();
+        try {
+            iterator.next();
+            fail();
+        } catch (NoSuchElementException e) {
+            // 已读取完毕
+        }
+    }
+
+    @Test
+    public void closesCursorOnce() {
+        Cursor cursor = cursor(doc(1), doc(2));
+        MongoCursorIterator<Object> iterator = new MongoCursorIterator<Object>(cursor, dbObject -> dbObject.get("n"));
+        iterator.close();
+        iterator.close();
+        assertFalse(iterator.hasNext());
+        verify(cursor, times(1)).close();
+    }
+
+    @Test
+    public void closesCursorWhenReaderFails() {
+        Cursor cursor = cursor(doc(1));
+        MongoCursorIterator<Object> iterator = new MongoCursorIterator<Object>(cursor, dbObject -> {
+            throw new IllegalStateException("read");
+        });
+        try {
+            iterator.next();
+            fail();
+        } catch (IllegalStateException e) {
+            verify(cursor).close();
+        }
+    }
+
+    @Test
+    public void streamClosesCursor() {
+        Cursor cursor = cursor(doc(1), doc(2), doc(3));
+        try (Stream<Object> stream = new MongoCursorIterator<Object>(cursor, dbObject -> dbObject.get("n")).stream()) {
+            List<Object> first = stream.limit(2).collect(Collectors.toList());
+            assertEquals(Arrays.<Object>asList(1, 2), first);
+            verify(cursor, never()).close();
+        }
+        verify(cursor).close();
+    }
+
+    private static DBObject doc(int n) {
+        return new BasicDBObject("n", n);
+    }
+
+    private static Cursor cursor(DBObject... docs) {
+        Iterator<DBObject> iterator = Arrays.asList(docs).iterator();
+        Cursor cursor = mock(Cursor.class);
+        when(cursor.hasNext()).thenAnswer(invocation -> iterator.hasNext());
+        when(cursor.next()).thenAnswer(invocation -> iterator.next());
+        return cursor;
+    }
+
+}
@@ -0,0 +1,80 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 分页查询能否合并为$facet的判断
+ */
+public class PageSliceTest {
+
+    private final List<DBObject> indexes = Arrays.<DBObject>asList(
+            new BasicDBObject("_id", 1),
+            new BasicDBObject("createTime", -1),
+            new BasicDBObject("status", 1).append("createTime", -1).append("_id", -1),
+            new BasicDBObject("title", "text"));
+
+    @Test
+    public void matchableCriteria() {
+        assertTrue(MongoDaoImpl.isMatchable(new BasicDBObject("a", 1).append("b", new BasicDBObject("$gt", 2))));
+        BasicDBList or = new BasicDBList();
+        or.add(new BasicDBObject("a", 1));
+        or.add(new BasicDBObject("b", new BasicDBObject("$in", Arrays.asList(1, 2))));
+        assertTrue(MongoDaoImpl.isMatchable(new BasicDBObject("$or", or)));
+    }
+
+    @Test
+    public void unmatchableCriteria() {
+        assertFalse(MongoDaoImpl.isMatchable(new BasicDBObject("$where", "this.a > 1")));
+        assertFalse(MongoDaoImpl.isMatchable(new BasicDBObject("loc", new BasicDBObject("$near", Arrays.asList(0, 0)))));
+        BasicDBList and = new BasicDBList();
+        and.add(new BasicDBObject("a", 1));
+        and.add(new BasicDBObject("loc", new BasicDBObject("$nearSphere", Arrays.asList(0, 0))));
+        assertFalse(MongoDaoImpl.isMatchable(new BasicDBObject("$and", and)));
+    }
+
+    @Test
+    public void sortOnIndexPrefix() {
+        assertTrue(indexed(new BasicDBObject("createTime", -1), new BasicDBObject()));
+        // 方向全部相反同样可以使用索引
+        assertTrue(indexed(new BasicDBObject("createTime", 1), new BasicDBObject()));
+        assertTrue(indexed(new BasicDBObject("_id", -1), new BasicDBObject()));
+    }
+
+    @Test
+    public void sortAfterEqualityPrefix() {
+        DBObject sort = new BasicDBObject("createTime", -1).append("_id", -1);
+        assertTrue(indexed(sort, new BasicDBObject("status", 1)));
+        assertTrue(indexed(new BasicDBObject("createTime", 1).append("_id", 1), new BasicDBObject("status", 1)));
+        // 前缀字段为范围条件、正则或缺失时不能跳过
+        assertFalse(indexed(sort, new BasicDBObject("status", new BasicDBObject("$gt", 1))));
+        assertFalse(indexed(sort, new BasicDBObject("status", Pattern.compile("^a"))));
+        assertFalse(indexed(sort, new BasicDBObject()));
+    }
+
+    @Test
+    public void sortNotIndexed() {
+        assertFalse(indexed(new BasicDBObject("updateTime", -1), new BasicDBObject()));
+        // 方向部分相反
+        assertFalse(indexed(new BasicDBObject("createTime", -1).append("_id", 1), new BasicDBObject("status", 1)));
+        // 文本索引不支持排序
+        assertFalse(indexed(new BasicDBObject("title", 1), new BasicDBObject()));
+        assertFalse(MongoDaoImpl.isSortIndexed(new BasicDBObject("createTime", -1), new BasicDBObject(),
+                Collections.<DBObject>emptyList()));
+    }
+
+    private boolean indexed(DBObject sort, DBObject criteria) {
+        return MongoDaoImpl.isSortIndexed(sort, criteria, indexes);
+    }
+
+}
@@ -0,0 +1,110 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.MongoClient;
+import org.bson.types.ObjectId;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.SimpleMongoDbFactory;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 按DTO类、接口生成投影及读取接口投影（不访问数据库）
+ */
+public class ProjectionTest {
+
+    private static MongoClient client;
+    private static PersonDao dao;
+
+    @BeforeClass
+    public static void setUp() {
+        // 客户端在首次操作时才连接，这里只使用转换器
+        client = new MongoClient("localhost");
+        dao = new PersonDao();
+        dao.mongoTemplate = new MongoTemplate(new SimpleMongoDbFactory(client, "projection-test"));
+    }
+
+    @AfterClass
+    public static void tearDown() {
+        client.close();
+    }
+
+    @Test
+    public void classProjectionUsesFields() {
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("name", "age")), Projection.of(NameAndAge.class).getIncludes());
+    }
+
+    @Test
+    public void interfaceProjectionUsesGetters() {
+        assertEquals(new LinkedHashSet<String>(Arrays.asList("name", "adult")), Projection.of(NameOnly.class).getIncludes());
+        Query query = Projection.of(NameOnly.class).applyTo(new Query());
+        assertEquals(new BasicDBObject("name", 1).append("adult", 1), query.getFieldsObject());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTypeWithoutFields() {
+        Projection.of(Runnable.class);
+    }
+
+    @Test
+    public void readsInterfaceProjection() {
+        NameOnly row = dao.read(NameOnly.class, new BasicDBObject("_id", new ObjectId()).append("name", "张三").append("adult", true));
+        assertEquals("张三", row.getName());
+        assertTrue(row.isAdult());
+        assertEquals("张三!", row.getGreeting());
+    }
+
+    public interface NameOnly {
+
+        String getName();
+
+        boolean isAdult();
+
+        default String getGreeting() {
+            return getName() + "!";
+        }
+    }
+
+    public static class NameAndAge {
+        private String name;
+        private int age;
+        private static final int IGNORED = 0;
+    }
+
+    public static class Person {
+        @Id
+        private ObjectId id;
+        private String name;
+        private int age;
+        private boolean adult;
+
+        public ObjectId getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public int getAge() {
+            return age;
+        }
+
+        public boolean isAdult() {
+            return adult;
+        }
+    }
+
+    public static class PersonDao extends MongoDaoImpl<Person> {
+    }
+
+}
@@ -0,0 +1,53 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 查询结果缓存键
+ */
+public class QueryResultCacheTest {
+
+    @Test
+    public void unserializableValueHasNoKey() {
+        BasicDBObject query = new BasicDBObject("unit", TimeUnit.SECONDS);
+        assertNull(QueryResultCache.keyOf("find", query, null, null, 0, 0, 1));
+    }
+
+    @Test
+    public void dateValuesAreKeyed() {
+        BasicDBObject query = new BasicDBObject("createTime", new BasicDBObject("$gte", new Date(1000L)));
+        String key = QueryResultCache.keyOf("find", query, null, null, 0, 10, 1);
+        assertNotNull(key);
+        assertEquals(key, QueryResultCache.keyOf("find",
+                new BasicDBObject("createTime", new BasicDBObject("$gte", new Date(1000L))), null, null, 0, 10, 1));
+        assertNotEquals(key, QueryResultCache.keyOf("find",
+                new BasicDBObject("createTime", new BasicDBObject("$gte", new Date(2000L))), null, null, 0, 10, 1));
+    }
+
+    @Test
+    public void fieldOrderDoesNotMatter() {
+        BasicDBObject first = new BasicDBObject("a", 1).append("b", "x");
+        BasicDBObject second = new BasicDBObject("b", "x").append("a", 1);
+        assertEquals(QueryResultCache.keyOf("find", first, null, null, 0, 0, 1),
+                QueryResultCache.keyOf("find", second, null, null, 0, 0, 1));
+    }
+
+    @Test
+    public void versionAndPagingAreKeyed() {
+        BasicDBObject query = new BasicDBObject("a", 1);
+        String key = QueryResultCache.keyOf("find", query, null, null, 0, 10, 1);
+        assertNotEquals(key, QueryResultCache.keyOf("find", query, null, null, 0, 10, 2));
+        assertNotEquals(key, QueryResultCache.keyOf("find", query, null, null, 10, 10, 1));
+        assertNotEquals(key, QueryResultCache.keyOf("find", query, new BasicDBObject("a", -1), null, 0, 10, 1));
+    }
+
+}
@@ -0,0 +1,99 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBList;
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 查询模板的参数绑定及构造校验
+ */
+public class QueryTemplateTest {
+
+    private static final QueryTemplate BY_TYPE_AND_TIME = QueryTemplate.builder()
+            .eq("type").gte("createTime").lt("createTime")
+            .sort("createTime desc, _id")
+            .projection(Projection.include("type", "createTime"))
+            .build();
+
+    @Test
+    public void bindsOperatorsOnOneField() {
+        Query query = BY_TYPE_AND_TIME.bind("civil", 1, 9);
+        DBObject expected = new BasicDBObject("type", "civil")
+                .append("createTime", new BasicDBObject("$gte", 1).append("$lt", 9));
+        assertEquals(expected, query.getQueryObject());
+        assertEquals(new BasicDBObject("createTime", -1).append("_id", 1), query.getSortObject());
+        assertEquals(new BasicDBObject("type", 1).append("createTime", 1), query.getFieldsObject());
+    }
+
+    @Test
+    public void boundQueriesDoNotShareSortAndFields() {
+        Query first = BY_TYPE_AND_TIME.bind("civil", 1, 9);
+        first.getSortObject().put("other", 1);
+        first.getFieldsObject().put("other", 1);
+        Query second = BY_TYPE_AND_TIME.bind("civil", 1, 9);
+        assertEquals(new BasicDBObject("createTime", -1).append("_id", 1), second.getSortObject());
+        assertEquals(new BasicDBObject("type", 1).append("createTime", 1), second.getFieldsObject());
+    }
+
+    @Test
+    public void convertsParameters() {
+        QueryTemplate template = QueryTemplate.builder()
+                .in("type").regex("name", Pattern.CASE_INSENSITIVE).exists("deleted").build();
+        DBObject criteria = template.bind(new String[]{"a", "b"}, "^z", "false").getQueryObject();
+        assertEquals(Arrays.asList("a", "b"), ((DBObject) criteria.get("type")).get("$in"));
+        Pattern pattern = (Pattern) ((DBObject) criteria.get("name")).get("$regex");
+        assertEquals("^z", pattern.pattern());
+        assertEquals(Pattern.CASE_INSENSITIVE, pattern.flags());
+        assertEquals(Boolean.FALSE, ((DBObject) criteria.get("deleted")).get("$exists"));
+        assertEquals(Collections.singletonList("a"),
+                ((DBObject) template.bind("a", "^z", true).getQueryObject().get("type")).get("$in"));
+    }
+
+    @Test
+    public void skipsNullParameters() {
+        QueryTemplate template = QueryTemplate.builder().eq("type").gte("createTime").skipNulls().build();
+        assertEquals(new BasicDBObject("createTime", new BasicDBObject("$gte", 1)), template.bind(null, 1).getQueryObject());
+        assertTrue(template.bind(null, null).getQueryObject().keySet().isEmpty());
+    }
+
+    @Test
+    public void joinsWithOr() {
+        QueryTemplate template = QueryTemplate.builder().eq("type").eq("type").or().build();
+        BasicDBList or = new BasicDBList();
+        or.add(new BasicDBObject("type", "a"));
+        or.add(new BasicDBObject("type", "b"));
+        assertEquals(new BasicDBObject("$or", or), template.bind("a", "b").getQueryObject());
+        assertNull(template.bind("a", "b").getFieldsObject());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsWrongParameterCount() {
+        BY_TYPE_AND_TIME.bind("civil", 1);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsEqualityWithOtherOperator() {
+        QueryTemplate.builder().eq("type").ne("type").build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsRepeatedOperator() {
+        QueryTemplate.builder().gte("createTime").gte("createTime").build();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsBadSort() {
+        QueryTemplate.builder().sort("createTime desc x");
+    }
+
+}
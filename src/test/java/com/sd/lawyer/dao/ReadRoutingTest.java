@@ -0,0 +1,105 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.DBCollection;
+import com.mongodb.ReadPreference;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 读操作按实体注解或全局配置路由，写入后的读操作回到主节点
+ */
+public class ReadRoutingTest {
+
+    private static final ReadPreference ROUTED = ReadPreference.secondary(120, TimeUnit.SECONDS);
+
+    private final ReadPreference collectionDefault = ReadPreference.primaryPreferred();
+
+    private MongoTemplate mongoTemplate;
+
+    @Before
+    public void setUp() {
+        mongoTemplate = mock(MongoTemplate.class);
+        DBCollection collection = mock(DBCollection.class);
+        when(mongoTemplate.getCollectionName(any(Class.class))).thenReturn("doc");
+        when(mongoTemplate.getCollection("doc")).thenReturn(collection);
+        when(collection.getReadPreference()).thenReturn(collectionDefault);
+    }
+
+    @After
+    public void clear() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void annotationRoutesListedOperations() {
+        MongoDaoImpl<Routed> dao = dao(new MongoDaoImpl<Routed>() {
+        });
+        dao.readPreferenceMode = "nearest";
+        assertEquals(ROUTED, dao.readPreference(ReadOperation.COUNT));
+        assertEquals(ROUTED, dao.readPreference(ReadOperation.DISTINCT));
+        // 未列出的操作使用集合默认读偏好
+        assertSame(collectionDefault, dao.readPreference(ReadOperation.PAGE));
+    }
+
+    @Test
+    public void globalModeRoutesAllOperations() {
+        MongoDaoImpl<Plain> dao = dao(new MongoDaoImpl<Plain>() {
+        });
+        dao.readPreferenceMode = "secondaryPreferred";
+        dao.readMaxStalenessSeconds = 0;
+        for (ReadOperation operation : ReadOperation.values()) {
+            assertEquals(ReadPreference.secondaryPreferred(), dao.readPreference(operation));
+        }
+
+        MongoDaoImpl<Plain> primary = dao(new MongoDaoImpl<Plain>() {
+        });
+        assertSame(collectionDefault, primary.readPreference(ReadOperation.PAGE));
+    }
+
+    @Test
+    public void readsAfterWriteStayOnPrimary() {
+        MongoDaoImpl<Routed> dao = dao(new MongoDaoImpl<Routed>() {
+        });
+        ReadYourWrites.markWrite("doc");
+        assertEquals(ReadPreference.primary(), dao.readPreference(ReadOperation.COUNT));
+
+        dao.readYourWritesWindowMs = 0;
+        assertEquals(ROUTED, dao.readPreference(ReadOperation.COUNT));
+    }
+
+    private <T> MongoDaoImpl<T> dao(MongoDaoImpl<T> dao) {
+        dao.mongoTemplate = mongoTemplate;
+        return dao;
+    }
+
+    @ReadRouting(mode = "secondary", operations = {ReadOperation.COUNT, ReadOperation.DISTINCT}, maxStalenessSeconds = 120)
+    public static class Routed {
+        @Id
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public static class Plain {
+        @Id
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.sd.lawyer.dao;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 读己之写记录在并行分块、异步任务中的传递
+ */
+public class ReadYourWritesTest {
+
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(1);
+
+    @After
+    public void clear() {
+        ReadYourWrites.clear();
+    }
+
+    @Test
+    public void chunkWritesAreRecordedForCaller() throws Exception {
+        MongoDaoImpl<Object> dao = new MongoDaoImpl<Object>();
+        dao.bulkParallelism = 4;
+        ReadYourWrites.markWrite("before");
+        List<Future<Boolean>> futures = dao.runChunks(Arrays.asList("a", "b", "c").iterator(), chunk -> {
+            ReadYourWrites.markWrite("chunk-" + chunk);
+            return ReadYourWrites.isSticky("before", WINDOW);
+        });
+        for (Future<Boolean> future : futures) {
+            assertTrue("工作线程应看到调用线程的写入记录", future.get(5, TimeUnit.SECONDS));
+        }
+        assertTrue(ReadYourWrites.isSticky("chunk-a", WINDOW));
+        assertTrue(ReadYourWrites.isSticky("chunk-b", WINDOW));
+        assertTrue(ReadYourWrites.isSticky("chunk-c", WINDOW));
+
+        // 工作线程不保留调用线程的记录
+        assertFalse(DaoExecutors.bulk().submit(() -> ReadYourWrites.isSticky("chunk-a", WINDOW)).get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void asyncWritesAreRecordedForCaller() throws Exception {
+        // 不访问数据库，只需要一个DAO实例
+        MongoDao<Object> dao = (MongoDao<Object>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[]{MongoDao.class}, (proxy, method, args) -> null);
+        AsyncMongoDaoImpl<Object> async = new AsyncMongoDaoImpl<Object>(dao);
+        ReadYourWrites.markWrite("before");
+        boolean sawCallerWrites = async.execute(d -> {
+            ReadYourWrites.markWrite("async");
+            return ReadYourWrites.isSticky("before", WINDOW);
+        }).get(5, TimeUnit.SECONDS);
+        assertTrue(sawCallerWrites);
+        assertTrue(ReadYourWrites.isSticky("async", WINDOW));
+        assertEquals(Boolean.FALSE, async.execute(d -> ReadYourWrites.isSticky("unrelated", WINDOW)).get(5, TimeUnit.SECONDS));
+    }
+
+}
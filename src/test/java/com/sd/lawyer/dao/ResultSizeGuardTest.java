@@ -0,0 +1,107 @@
+package com.sd.lawyer.dao;
+
+import org.junit.Test;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 查询结果条数保护的限制下推、截断、失败及实体注解覆盖
+ */
+public class ResultSizeGuardTest {
+
+    private static final List<Integer> FOUR = Arrays.asList(1, 2, 3, 4);
+
+    @Test
+    public void limitsUnboundedAndLargerQueries() {
+        ResultSizeGuard guard = new ResultSizeGuard("doc", 3, ResultSizeLimit.Action.FAIL, 0);
+        assertEquals(4, guard.limit(new Query()).getLimit());
+        assertEquals(4, guard.limit(new Query().limit(10)).getLimit());
+        assertEquals(2, guard.limit(new Query().limit(2)).getLimit());
+        assertEquals(0, new ResultSizeGuard("doc", 0, ResultSizeLimit.Action.FAIL, 0).limit(new Query()).getLimit());
+    }
+
+    @Test
+    public void rejectsOversizedResult() {
+        ResultSizeGuard guard = new ResultSizeGuard("doc", 3, ResultSizeLimit.Action.FAIL, 0);
+        List<Integer> three = FOUR.subList(0, 3);
+        assertSame(three, guard.check(three, new Query()));
+        try {
+            guard.check(FOUR, new Query());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals(1, guard.getRejected());
+            assertEquals(0, guard.getTruncated());
+        }
+    }
+
+    @Test
+    public void truncatesOversizedResult() {
+        ResultSizeGuard guard = new ResultSizeGuard("doc", 3, ResultSizeLimit.Action.TRUNCATE, 0);
+        assertEquals(Arrays.asList(1, 2, 3), guard.check(FOUR, new Query()));
+        assertEquals(1, guard.getTruncated());
+        assertEquals(0, guard.getRejected());
+    }
+
+    @Test
+    public void countsWarnings() {
+        ResultSizeGuard guard = new ResultSizeGuard("doc", 0, ResultSizeLimit.Action.FAIL, 3);
+        assertSame(FOUR, guard.check(FOUR, new Query()));
+        guard.check(FOUR.subList(0, 3), new Query());
+        assertEquals(1, guard.getWarnings());
+    }
+
+    @Test
+    public void annotationOverridesGlobalSettings() {
+        MongoTemplate mongoTemplate = mock(MongoTemplate.class);
+        when(mongoTemplate.getCollectionName(any(Class.class))).thenReturn("doc");
+
+        MongoDaoImpl<Limited> limited = new MongoDaoImpl<Limited>() {
+        };
+        limited.mongoTemplate = mongoTemplate;
+        limited.maxResults = 100;
+        ResultSizeGuard guard = limited.getResultSizeGuard();
+        assertEquals(10, guard.getMaxResults());
+        assertEquals(ResultSizeLimit.Action.TRUNCATE, guard.getAction());
+        assertEquals(5, guard.getWarnThreshold());
+        assertSame(guard, limited.getResultSizeGuard());
+
+        MongoDaoImpl<Plain> plain = new MongoDaoImpl<Plain>() {
+        };
+        plain.mongoTemplate = mongoTemplate;
+        plain.maxResults = 100;
+        plain.maxResultsAction = ResultSizeLimit.Action.FAIL;
+        assertEquals(100, plain.getResultSizeGuard().getMaxResults());
+        assertEquals(ResultSizeLimit.Action.FAIL, plain.getResultSizeGuard().getAction());
+    }
+
+    @ResultSizeLimit(maxResults = 10, action = ResultSizeLimit.Action.TRUNCATE, warnThreshold = 5)
+    public static class Limited {
+        @Id
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+    }
+
+    public static class Plain {
+        @Id
+        private String id;
+
+        public String getId() {
+            return id;
+        }
+    }
+
+}
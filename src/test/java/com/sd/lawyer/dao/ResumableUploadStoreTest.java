@@ -0,0 +1,139 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DB;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.sd.lawyer.beans.UploadStatus;
+import org.bson.types.ObjectId;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 断点续传的状态计算及分块校验（以Mockito模拟数据库）
+ */
+public class ResumableUploadStoreTest {
+
+    private final ObjectId uploadId = new ObjectId();
+
+    private DBCollection uploads;
+    private DBCollection chunks;
+    private ResumableUploadStore store;
+
+    @Before
+    public void setUp() {
+        DB db = mock(DB.class);
+        uploads = mock(DBCollection.class);
+        chunks = mock(DBCollection.class);
+        when(db.getCollection(ResumableUploadStore.UPLOADS_COLLECTION)).thenReturn(uploads);
+        when(db.getCollection("fs.files")).thenReturn(mock(DBCollection.class));
+        when(db.getCollection("fs.chunks")).thenReturn(chunks);
+        store = new ResumableUploadStore(db, 16, 0);
+    }
+
+    @Test
+    public void mergesReceivedChunksIntoRanges() {
+        // 10字节，每块4字节，共3块，最后一块2字节
+        UploadStatus status = ResumableUploadStore.toStatus(upload(0, 2));
+        assertEquals(2, status.getReceivedChunks());
+        assertEquals(Arrays.asList("0-3", "8-9"), ranges(status));
+        assertFalse(status.isComplete());
+
+        status = ResumableUploadStore.toStatus(upload(2, 1, 0));
+        assertEquals(Arrays.asList("0-9"), ranges(status));
+        assertTrue(status.isComplete());
+
+        status = ResumableUploadStore.toStatus(upload());
+        assertEquals(0, status.getReceivedChunks());
+        assertTrue(status.getReceived().isEmpty());
+    }
+
+    @Test
+    public void statusReadsSession() {
+        when(uploads.findOne(new BasicDBObject("_id", uploadId))).thenReturn(upload(1));
+        UploadStatus status = store.status(uploadId.toHexString());
+        assertEquals(uploadId, status.getUploadId());
+        assertEquals(Arrays.asList("4-7"), ranges(status));
+    }
+
+    @Test
+    public void rejectsChunkOfWrongLength() throws IOException {
+        when(uploads.findOne(new BasicDBObject("_id", uploadId))).thenReturn(upload());
+        for (byte[] data : Arrays.asList(new byte[3], new byte[5])) {
+            try {
+                store.uploadChunk(uploadId, 0, new ByteArrayInputStream(data));
+                fail();
+            } catch (IllegalArgumentException e) {
+                // 长度与分块大小不一致
+            }
+        }
+        try {
+            store.uploadChunk(uploadId, 3, new ByteArrayInputStream(new byte[4]));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // 编号超出范围
+        }
+        verify(chunks, never()).insert(any(DBObject.class));
+    }
+
+    @Test
+    public void replacesChunkUploadedTwice() throws IOException {
+        ObjectId replaced = new ObjectId();
+        BasicDBObject previous = upload();
+        previous.put("chunks", new BasicDBObject("2", replaced));
+        when(uploads.findOne(new BasicDBObject("_id", uploadId))).thenReturn(upload());
+        when(uploads.findAndModify(any(DBObject.class), any(DBObject.class), any(DBObject.class), any(Boolean.class),
+                any(DBObject.class), any(Boolean.class), any(Boolean.class))).thenReturn(previous);
+
+        UploadStatus status = store.uploadChunk(uploadId, 2, new ByteArrayInputStream(new byte[2]));
+        assertEquals(1, status.getReceivedChunks());
+        assertEquals(Arrays.asList("8-9"), ranges(status));
+        verify(chunks).remove(new BasicDBObject("_id", replaced));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsOversizedChunkSize() {
+        store.init("a.bin", null, 10, ResumableUploadStore.MAX_CHUNK_SIZE + 1, null);
+    }
+
+    /**
+     * 10字节、分块大小4字节的上传会话
+     */
+    private BasicDBObject upload(int... received) {
+        BasicDBObject chunkIds = new BasicDBObject();
+        for (int n : received) {
+            chunkIds.put(String.valueOf(n), new ObjectId());
+        }
+        return new BasicDBObject("_id", uploadId)
+                .append("length", 10L)
+                .append("chunkSize", 4)
+                .append("totalChunks", 3)
+                .append("chunks", chunkIds)
+                .append("state", "uploading");
+    }
+
+    private static List<String> ranges(UploadStatus status) {
+        List<String> ranges = new ArrayList<String>();
+        for (long[] range : status.getReceived()) {
+            ranges.add(range[0] + "-" + range[1]);
+        }
+        return ranges;
+    }
+
+}
@@ -0,0 +1,87 @@
+package com.sd.lawyer.dao;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 相同读请求合并
+ */
+public class SingleFlightTest {
+
+    @Test
+    public void concurrentCallsShareOneExecution() throws Exception {
+        SingleFlight flight = new SingleFlight(0);
+        int callers = 8;
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            List<Future<String>> results = new ArrayList<Future<String>>();
+            results.add(executor.submit(() -> flight.execute("k", () -> {
+                executions.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "v";
+            })));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            for (int i = 1; i < callers; i++) {
+                results.add(executor.submit(() -> flight.execute("k", () -> {
+                    executions.incrementAndGet();
+                    return "other";
+                })));
+            }
+            // 等待其他调用都进入等待
+            long deadline = System.currentTimeMillis() + 5000;
+            while (flight.getCollapsed() < callers - 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            release.countDown();
+            for (Future<String> result : results) {
+                assertEquals("v", result.get(5, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, executions.get());
+        assertEquals(callers, flight.getCalls());
+        assertEquals(callers - 1, flight.getCollapsed());
+        assertEquals(0, flight.getInFlight());
+    }
+
+    @Test
+    public void failureIsSharedAndNotCached() {
+        SingleFlight flight = new SingleFlight(0);
+        try {
+            flight.execute("k", () -> {
+                throw new IllegalStateException("boom");
+            });
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("boom", e.getMessage());
+        }
+        assertEquals("v", flight.execute("k", () -> "v"));
+        assertEquals(1, flight.getFailures());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
@@ -0,0 +1,131 @@
+package com.sd.lawyer.dao;
+
+import com.mongodb.BasicDBObject;
+import org.junit.Test;
+import org.springframework.data.mongodb.core.query.Update;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 延迟写入缓冲区的合并规则
+ */
+public class WriteBehindBufferTest {
+
+    @Test
+    public void laterSetWins() {
+        BasicDBObject merged = merge(new Update().set("a", 1).inc("b", 1), new Update().set("a", 2).unset("b"));
+        assertEquals(new BasicDBObject("$set", new BasicDBObject("a", 2)).append("$unset", new BasicDBObject("b", 1)), merged);
+    }
+
+    @Test
+    public void incAccumulates() {
+        BasicDBObject merged = merge(new Update().inc("n", 1), new Update().inc("n", 2), new Update().inc("n", 3L));
+        assertEquals(new BasicDBObject("$inc", new BasicDBObject("n", 6L)), merged);
+        assertEquals(new BasicDBObject("$inc", new BasicDBObject("d", 2.0)), merge(new Update().inc("d", 1), new Update().inc("d", 1.0)));
+    }
+
+    @Test
+    public void maxAndMinKeepExtremes() {
+        assertEquals(new BasicDBObject("$max", new BasicDBObject("m", 5)),
+                merge(new Update().max("m", 3), new Update().max("m", 5), new Update().max("m", 4)));
+        assertEquals(new BasicDBObject("$min", new BasicDBObject("m", 3)),
+                merge(new Update().min("m", 3), new Update().min("m", 5)));
+    }
+
+    @Test
+    public void foldsIntoSetValue() {
+        assertEquals(new BasicDBObject("$set", new BasicDBObject("n", 11)), merge(new Update().set("n", 10), new Update().inc("n", 1)));
+        assertEquals(new BasicDBObject("$set", new BasicDBObject("n", 10)), merge(new Update().set("n", 10), new Update().max("n", 5)));
+        assertEquals(new BasicDBObject("$set", new BasicDBObject("n", 5)), merge(new Update().unset("n"), new Update().inc("n", 5)));
+    }
+
+    @Test
+    public void detectsOperatorConflicts() {
+        BasicDBObject merged = merge(new Update().inc("f", 1));
+        assertTrue(WriteBehindBuffer.conflicts(merged, new Update().max("f", 5).getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merged, new Update().max("g", 5).getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merged, new Update().inc("f", 5).getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merge(new Update().set("f", 1)), new Update().max("f", 5).getUpdateObject()));
+    }
+
+    @Test
+    public void detectsPathConflicts() {
+        BasicDBObject merged = merge(new Update().set("a", new BasicDBObject("b", 1)));
+        assertTrue(WriteBehindBuffer.conflicts(merged, new Update().inc("a.b", 1).getUpdateObject()));
+        assertTrue(WriteBehindBuffer.conflicts(merge(new Update().inc("a.b", 1)), new Update().unset("a").getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merged, new Update().inc("ab", 1).getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merged, new Update().set("a", 2).getUpdateObject()));
+    }
+
+    @Test
+    public void detectsValueConflicts() {
+        assertTrue(WriteBehindBuffer.conflicts(merge(new Update().set("n", "x")), new Update().inc("n", 1).getUpdateObject()));
+        assertTrue(WriteBehindBuffer.conflicts(merge(new Update().set("n", null)), new Update().inc("n", 1).getUpdateObject()));
+        assertTrue(WriteBehindBuffer.conflicts(merge(new Update().max("m", 1)), new Update().max("m", "x").getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merge(new Update().max("m", "a")), new Update().max("m", "b").getUpdateObject()));
+        assertFalse(WriteBehindBuffer.conflicts(merge(new Update().max("m", 1)), new Update().max("m", 2L).getUpdateObject()));
+    }
+
+    @Test
+    public void comparesMixedNumbersByValue() {
+        assertEquals(new BasicDBObject("$max", new BasicDBObject("m", 5L)),
+                merge(new Update().max("m", 3), new Update().max("m", 5L), new Update().max("m", 4.5)));
+        assertEquals(new BasicDBObject("$min", new BasicDBObject("m", 2.5)),
+                merge(new Update().min("m", 3L), new Update().min("m", 2.5), new Update().min("m", 4)));
+        assertEquals(new BasicDBObject("$set", new BasicDBObject("m", 7L)), merge(new Update().set("m", 6), new Update().max("m", 7L)));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonNumericInc() {
+        WriteBehindBuffer.validate(new BasicDBObject("$inc", new BasicDBObject("n", "x")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsUnsupportedOperator() {
+        WriteBehindBuffer.validate(new Update().push("list", 1).getUpdateObject());
+    }
+
+    @Test
+    public void conflictingUpdateFlushesFirst() {
+        List<Map<Object, Update>> batches = new ArrayList<Map<Object, Update>>();
+        WriteBehindBuffer buffer = new WriteBehindBuffer("test", 1, 100, 60000, batch -> {
+            batches.add(batch);
+            return 0;
+        });
+        try {
+            buffer.submit(1, new Update().inc("f", 1));
+            buffer.submit(1, new Update().max("f", 5));
+            assertEquals(1, batches.size());
+            assertEquals(new BasicDBObject("$inc", new BasicDBObject("f", 1)), batches.get(0).get(1).getUpdateObject());
+            try {
+                buffer.submit(2, new Update().push("list", 1));
+                fail();
+            } catch (IllegalArgumentException e) {
+                // 不占用许可，缓冲区容量为1时仍可提交已有主键
+            }
+            buffer.submit(1, new Update().inc("g", 1));
+            assertEquals(1, buffer.getPending());
+            assertEquals(1, buffer.flush());
+            assertEquals(new BasicDBObject("$max", new BasicDBObject("f", 5)).append("$inc", new BasicDBObject("g", 1)),
+                    batches.get(1).get(1).getUpdateObject());
+        } finally {
+            buffer.close();
+        }
+    }
+
+    private static BasicDBObject merge(Update... updates) {
+        BasicDBObject merged = new BasicDBObject();
+        for (Update update : updates) {
+            WriteBehindBuffer.merge(merged, update.getUpdateObject());
+        }
+        return merged;
+    }
+
+}
@@ -0,0 +1,51 @@
+package com.sd.lawyer.web;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Range请求头解析
+ */
+public class GridFsDownloadsTest {
+
+    private static final long LENGTH = 1000;
+
+    @Test
+    public void closedRange() {
+        assertArrayEquals(new long[]{0, 499}, GridFsDownloads.parseRange("bytes=0-499", LENGTH));
+        assertArrayEquals(new long[]{500, 999}, GridFsDownloads.parseRange("bytes=500-999", LENGTH));
+        assertArrayEquals(new long[]{10, 10}, GridFsDownloads.parseRange("bytes= 10 - 10 ", LENGTH));
+    }
+
+    @Test
+    public void openAndSuffixRanges() {
+        assertArrayEquals(new long[]{900, 999}, GridFsDownloads.parseRange("bytes=900-", LENGTH));
+        assertArrayEquals(new long[]{900, 999}, GridFsDownloads.parseRange("bytes=-100", LENGTH));
+        assertArrayEquals(new long[]{0, 999}, GridFsDownloads.parseRange("bytes=-5000", LENGTH));
+    }
+
+    @Test
+    public void endIsClampedToLength() {
+        assertArrayEquals(new long[]{500, 999}, GridFsDownloads.parseRange("bytes=500-5000", LENGTH));
+    }
+
+    @Test
+    public void unsatisfiableRanges() {
+        assertNull(GridFsDownloads.parseRange("bytes=1000-", LENGTH));
+        assertNull(GridFsDownloads.parseRange("bytes=1000-2000", LENGTH));
+        assertNull(GridFsDownloads.parseRange("bytes=-0", LENGTH));
+    }
+
+    @Test
+    public void invalidRangesServeWholeFile() {
+        long[] whole = {0, 999};
+        assertArrayEquals(whole, GridFsDownloads.parseRange("items=0-10", LENGTH));
+        assertArrayEquals(whole, GridFsDownloads.parseRange("bytes=0-10,20-30", LENGTH));
+        assertArrayEquals(whole, GridFsDownloads.parseRange("bytes=abc", LENGTH));
+        assertArrayEquals(whole, GridFsDownloads.parseRange("bytes=a-b", LENGTH));
+        assertArrayEquals(whole, GridFsDownloads.parseRange("bytes=500-100", LENGTH));
+    }
+
+}